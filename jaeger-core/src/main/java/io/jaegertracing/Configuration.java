@@ -21,9 +21,12 @@ import io.jaegertracing.internal.metrics.NoopMetricsFactory;
 import io.jaegertracing.internal.propagation.B3TextMapCodec;
 import io.jaegertracing.internal.propagation.CompositeCodec;
 import io.jaegertracing.internal.propagation.TextMapCodec;
+import io.jaegertracing.internal.propagation.TraceContextCodec;
 import io.jaegertracing.internal.reporters.CompositeReporter;
 import io.jaegertracing.internal.reporters.LoggingReporter;
 import io.jaegertracing.internal.reporters.RemoteReporter;
+import io.jaegertracing.internal.reporters.ShardedRemoteReporter;
+import io.jaegertracing.internal.samplers.AdaptiveSampler;
 import io.jaegertracing.internal.samplers.ConstSampler;
 import io.jaegertracing.internal.samplers.HttpSamplingManager;
 import io.jaegertracing.internal.samplers.ProbabilisticSampler;
@@ -40,6 +43,7 @@ import io.opentracing.propagation.Format;
 import io.opentracing.propagation.TextMap;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -103,11 +107,21 @@ public class Configuration {
    */
   public static final String JAEGER_REPORTER_MAX_QUEUE_SIZE = JAEGER_PREFIX + "REPORTER_MAX_QUEUE_SIZE";
 
+  /**
+   * The maximum estimated size in bytes of the spans queued when reporting spans remotely.
+   */
+  public static final String JAEGER_REPORTER_MAX_QUEUE_SIZE_BYTES = JAEGER_PREFIX + "REPORTER_MAX_QUEUE_SIZE_BYTES";
+
   /**
    * The flush interval when reporting spans remotely.
    */
   public static final String JAEGER_REPORTER_FLUSH_INTERVAL = JAEGER_PREFIX + "REPORTER_FLUSH_INTERVAL";
 
+  /**
+   * The number of shards, each with its own queue, thread and sender, to spread reported spans over.
+   */
+  public static final String JAEGER_REPORTER_SHARDS = JAEGER_PREFIX + "REPORTER_SHARDS";
+
   /**
    * The sampler type.
    */
@@ -135,7 +149,7 @@ public class Configuration {
 
   /**
    * Comma separated list of formats to use for propagating the trace context. Default will the
-   * standard Jaeger format. Valid values are jaeger and b3.
+   * standard Jaeger format. Valid values are jaeger, b3 and w3c.
    */
   public static final String JAEGER_PROPAGATION = JAEGER_PREFIX + "PROPAGATION";
 
@@ -147,6 +161,11 @@ public class Configuration {
    */
   public static final String JAEGER_SENDER_FACTORY = JAEGER_PREFIX + "SENDER_FACTORY";
 
+  /**
+   * Whether to start new traces with 128-bit trace IDs, false by default.
+   */
+  public static final String JAEGER_TRACEID_128BIT = JAEGER_PREFIX + "TRACEID_128BIT";
+
   /**
    * The supported trace context propagation formats.
    */
@@ -160,7 +179,12 @@ public class Configuration {
     /**
      * The Zipkin B3 trace context propagation format.
      */
-    B3
+    B3,
+
+    /**
+     * The W3C Trace Context propagation format, with the traceparent and tracestate headers.
+     */
+    W3C
   }
 
   /**
@@ -172,6 +196,7 @@ public class Configuration {
   private CodecConfiguration codecConfig;
   private MetricsFactory metricsFactory;
   private Map<String, String> tracerTags;
+  private boolean useTraceId128Bit;
 
   /**
    * lazy singleton JaegerTracer initialized in getTracer() method.
@@ -193,6 +218,7 @@ public class Configuration {
   public static Configuration fromEnv(String serviceName) {
     return new Configuration(serviceName)
             .withTracerTags(tracerTagsFromEnv())
+            .withTraceId128Bit(getPropertyAsBool(JAEGER_TRACEID_128BIT))
             .withReporter(ReporterConfiguration.fromEnv())
             .withSampler(SamplerConfiguration.fromEnv())
             .withCodec(CodecConfiguration.fromEnv());
@@ -219,6 +245,9 @@ public class Configuration {
         .withReporter(reporter)
         .withMetrics(metrics)
         .withTags(tracerTags);
+    if (useTraceId128Bit) {
+      builder.withTraceId128Bit();
+    }
     codecConfig.apply(builder);
     return builder;
   }
@@ -292,6 +321,11 @@ public class Configuration {
     return this;
   }
 
+  public Configuration withTraceId128Bit(boolean useTraceId128Bit) {
+    this.useTraceId128Bit = useTraceId128Bit;
+    return this;
+  }
+
   public String getServiceName() {
     return serviceName;
   }
@@ -316,13 +350,17 @@ public class Configuration {
     return tracerTags == null ? null : Collections.unmodifiableMap(tracerTags);
   }
 
+  public boolean isTraceId128Bit() {
+    return useTraceId128Bit;
+  }
+
   /**
    * SamplerConfiguration allows to configure which sampler the tracer will use.
    */
   public static class SamplerConfiguration {
     /**
      * The type of sampler to use in the tracer. Optional. Valid values: remote (default),
-     * ratelimiting, probabilistic, const.
+     * adaptive, ratelimiting, probabilistic, const.
      */
     private String type;
 
@@ -373,6 +411,15 @@ public class Configuration {
             .build();
       }
 
+      if (samplerType.equals(AdaptiveSampler.TYPE)) {
+        return new RemoteControlledSampler.Builder(serviceName)
+            .withSamplingManager(new HttpSamplingManager(hostPort))
+            .withAdaptiveSampling(numberOrDefault(this.getParam(), AdaptiveSampler.DEFAULT_TARGET_TRACES_PER_SECOND)
+                .doubleValue())
+            .withMetrics(metrics)
+            .build();
+      }
+
       throw new IllegalStateException(String.format("Invalid sampling strategy %s", samplerType));
     }
 
@@ -434,6 +481,10 @@ public class Configuration {
                 addCodec(codecs, Format.Builtin.HTTP_HEADERS, new B3TextMapCodec.Builder().build());
                 addCodec(codecs, Format.Builtin.TEXT_MAP, new B3TextMapCodec.Builder().build());
                 break;
+              case W3C:
+                addCodec(codecs, Format.Builtin.HTTP_HEADERS, new TraceContextCodec.Builder().build());
+                addCodec(codecs, Format.Builtin.TEXT_MAP, new TraceContextCodec.Builder().build());
+                break;
               default:
                 log.error("Unhandled propagation format '" + format + "'");
                 break;
@@ -486,6 +537,8 @@ public class Configuration {
     private Boolean logSpans;
     private Integer flushIntervalMs;
     private Integer maxQueueSize;
+    private Integer maxQueueSizeBytes;
+    private Integer shards;
     private SenderConfiguration senderConfiguration = new SenderConfiguration();
 
     public ReporterConfiguration() {
@@ -496,6 +549,8 @@ public class Configuration {
           .withLogSpans(getPropertyAsBool(JAEGER_REPORTER_LOG_SPANS))
           .withFlushInterval(getPropertyAsInt(JAEGER_REPORTER_FLUSH_INTERVAL))
           .withMaxQueueSize(getPropertyAsInt(JAEGER_REPORTER_MAX_QUEUE_SIZE))
+          .withMaxQueueSizeBytes(getPropertyAsInt(JAEGER_REPORTER_MAX_QUEUE_SIZE_BYTES))
+          .withShards(getPropertyAsInt(JAEGER_REPORTER_SHARDS))
           .withSender(SenderConfiguration.fromEnv());
     }
 
@@ -514,18 +569,53 @@ public class Configuration {
       return this;
     }
 
+    public ReporterConfiguration withMaxQueueSizeBytes(Integer maxQueueSizeBytes) {
+      this.maxQueueSizeBytes = maxQueueSizeBytes;
+      return this;
+    }
+
+    public ReporterConfiguration withShards(Integer shards) {
+      this.shards = shards;
+      return this;
+    }
+
     public ReporterConfiguration withSender(SenderConfiguration senderConfiguration) {
       this.senderConfiguration = senderConfiguration;
       return this;
     }
 
     private Reporter getReporter(Metrics metrics) {
-      Reporter reporter = new RemoteReporter.Builder()
-          .withMetrics(metrics)
-          .withSender(senderConfiguration.getSender())
-          .withFlushInterval(numberOrDefault(this.flushIntervalMs, RemoteReporter.DEFAULT_FLUSH_INTERVAL_MS).intValue())
-          .withMaxQueueSize(numberOrDefault(this.maxQueueSize, RemoteReporter.DEFAULT_MAX_QUEUE_SIZE).intValue())
-          .build();
+      Reporter reporter;
+      int flushInterval = numberOrDefault(this.flushIntervalMs, RemoteReporter.DEFAULT_FLUSH_INTERVAL_MS).intValue();
+      int maxQueueSize = numberOrDefault(this.maxQueueSize, RemoteReporter.DEFAULT_MAX_QUEUE_SIZE).intValue();
+      int maxQueueSizeBytes = numberOrDefault(this.maxQueueSizeBytes, 0).intValue();
+      int shards = numberOrDefault(this.shards, 1).intValue();
+      if (shards > 1 && senderConfiguration.sender != null) {
+        log.warn("A custom sender can't be shared between reporter shards, using a single shard");
+        shards = 1;
+      }
+
+      if (shards > 1) {
+        List<Sender> senders = new ArrayList<Sender>(shards);
+        for (int i = 0; i < shards; i++) {
+          senders.add(senderConfiguration.getSender());
+        }
+        reporter = new ShardedRemoteReporter.Builder()
+            .withMetrics(metrics)
+            .withSenders(senders)
+            .withFlushInterval(flushInterval)
+            .withMaxQueueSize(maxQueueSize)
+            .withMaxQueueSizeBytes(maxQueueSizeBytes)
+            .build();
+      } else {
+        reporter = new RemoteReporter.Builder()
+            .withMetrics(metrics)
+            .withSender(senderConfiguration.getSender())
+            .withFlushInterval(flushInterval)
+            .withMaxQueueSize(maxQueueSize)
+            .withMaxQueueSizeBytes(maxQueueSizeBytes)
+            .build();
+      }
 
       if (Boolean.TRUE.equals(this.logSpans)) {
         Reporter loggingReporter = new LoggingReporter();
@@ -546,6 +636,14 @@ public class Configuration {
       return maxQueueSize;
     }
 
+    public Integer getMaxQueueSizeBytes() {
+      return maxQueueSizeBytes;
+    }
+
+    public Integer getShards() {
+      return shards;
+    }
+
     public SenderConfiguration getSenderConfiguration() {
       return senderConfiguration;
     }
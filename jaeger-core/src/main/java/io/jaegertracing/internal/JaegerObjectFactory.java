@@ -14,6 +14,7 @@
 
 package io.jaegertracing.internal;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -66,7 +67,67 @@ public class JaegerObjectFactory {
     return new JaegerSpanContext(traceId, spanId, parentId, flags, baggage, debugId, this);
   }
 
+  /**
+   * Creates a span context whose trace ID may have 128 bits. Delegates to
+   * {@link #createSpanContext(long, long, long, byte, Map, String)} for 64-bit trace IDs. A subclass which
+   * creates its own contexts should override this method as well, to create them for 128-bit trace IDs.
+   */
+  public JaegerSpanContext createSpanContext(
+      long traceIdHigh,
+      long traceIdLow,
+      long spanId,
+      long parentId,
+      byte flags,
+      Map<String, String> baggage,
+      String debugId) {
+    if (traceIdHigh == 0) {
+      return createSpanContext(traceIdLow, spanId, parentId, flags, baggage, debugId);
+    }
+    return new JaegerSpanContext(traceIdHigh, traceIdLow, spanId, parentId, flags, baggage, debugId, this);
+  }
+
+  /**
+   * Creates a span context which carries the W3C tracestate header of its trace. Delegates to
+   * {@link #createSpanContext(long, long, long, long, byte, Map, String)} when there is none. A subclass which
+   * creates its own contexts should override this method as well, to create them with a trace state.
+   */
+  public JaegerSpanContext createSpanContext(
+      long traceIdHigh,
+      long traceIdLow,
+      long spanId,
+      long parentId,
+      byte flags,
+      Map<String, String> baggage,
+      String debugId,
+      String traceState) {
+    if (traceState == null) {
+      return createSpanContext(traceIdHigh, traceIdLow, spanId, parentId, flags, baggage, debugId);
+    }
+    return new JaegerSpanContext(
+        traceIdHigh, traceIdLow, spanId, parentId, flags, baggage, debugId, traceState, this);
+  }
+
   public JaegerTracer.SpanBuilder createSpanBuilder(JaegerTracer tracer, String operationName) {
     return tracer.new SpanBuilder(operationName);
   }
+
+  /*
+   * The methods below create and recycle the buffers of a span, see RecyclingJaegerObjectFactory.
+   * They are called with the lock of the span held.
+   */
+
+  boolean isRecycling() {
+    return false;
+  }
+
+  JaegerSpanTags createTags(JaegerSpan span) {
+    return new JaegerSpanTags();
+  }
+
+  List<LogData> createLogs(JaegerSpan span) {
+    return new ArrayList<LogData>();
+  }
+
+  void recycle(JaegerSpan span, JaegerSpanTags tags, List<LogData> logs) {
+  }
 }
@@ -15,6 +15,7 @@
 
 package io.jaegertracing.internal;
 
+import io.jaegertracing.internal.clock.Clock;
 import io.opentracing.Span;
 import io.opentracing.log.Fields;
 import io.opentracing.tag.Tags;
@@ -25,6 +26,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -32,20 +34,46 @@ import lombok.extern.slf4j.Slf4j;
  * are not part of the standard.
  *
  * Should be used wisely by instrumented applications: always prefer OpenTracing's approach when available.
+ *
+ * <p>The thread which starts a span owns it, and reads and mutates it without taking its monitor. Once another
+ * thread touches the span, it waits for the owner to leave the span and marks the span as shared, after which
+ * every thread, the owner included, takes the monitor. Finishing the span shares it as well, which safely
+ * publishes it to the reporter.</p>
+ *
+ * <p>The other thread spins, yielding, for as long as the owner is inside a call. Some calls run pluggable
+ * code meanwhile, such as {@link JaegerObjectFactory#createTags} and {@link JaegerObjectFactory#createLogs} on
+ * the first tag and log, or the baggage setter, so a slow implementation stalls every other thread touching the
+ * span.</p>
+ *
+ * <p>Each method reading or mutating the span does so in a private {@code ...Locked} method, which it calls
+ * either as the owner or with the monitor held.</p>
  */
 @Slf4j
 public class JaegerSpan implements Span {
+  private static final AtomicIntegerFieldUpdater<JaegerSpan> OWNER_DEPTH =
+      AtomicIntegerFieldUpdater.newUpdater(JaegerSpan.class, "ownerDepth");
+
   private final JaegerTracer tracer;
-  private final long startTimeMicroseconds;
-  private final long startTimeNanoTicks;
-  private final boolean computeDurationViaNanoTicks;
-  private final Map<String, Object> tags;
+  // not read from the clock for a span which isn't sampled, until it gets sampled
+  private long startTimeMicroseconds;
+  private long startTimeNanoTicks;
+  private boolean computeDurationViaNanoTicks;
+  // created with the first tag, which a span that isn't sampled never has
+  private JaegerSpanTags tags;
   private long durationMicroseconds; // span durationMicroseconds
   private String operationName;
   private final List<Reference> references;
   private JaegerSpanContext context;
   private List<LogData> logs;
   private boolean finished = false; // to prevent the same span from getting reported multiple times
+  private boolean recycled;
+  // set by a RecyclingJaegerObjectFactory which detects leaks
+  Object leakTracker;
+  // the thread which may access the span without its monitor until the span is shared
+  private final Thread owner;
+  private volatile boolean shared;
+  // how many calls of the owner access the span without the monitor; only the owner writes it
+  private volatile int ownerDepth;
 
   protected JaegerSpan(
       JaegerTracer tracer,
@@ -62,24 +90,103 @@ public class JaegerSpan implements Span {
     this.startTimeMicroseconds = startTimeMicroseconds;
     this.startTimeNanoTicks = startTimeNanoTicks;
     this.computeDurationViaNanoTicks = computeDurationViaNanoTicks;
-    this.tags = new HashMap<String, Object>();
-    this.references = references != null ? new ArrayList<Reference>(references) : null;
+    this.references = copyOf(references);
+    this.owner = Thread.currentThread();
 
     for (Map.Entry<String, Object> tag : tags.entrySet()) {
-      setTagAsObject(tag.getKey(), tag.getValue());
+      setTagLocked(tag.getKey(), tag.getValue());
+    }
+  }
+
+  private static List<Reference> copyOf(List<Reference> references) {
+    if (references == null || references.isEmpty()) {
+      return null;
+    }
+    if (references.size() == 1) {
+      return Collections.singletonList(references.get(0));
+    }
+    return new ArrayList<Reference>(references);
+  }
+
+  /**
+   * Lets the owner access the span without the monitor, until it calls {@link #exitOwner()}.
+   *
+   * @return false if the caller has to take the monitor instead, because it isn't the owner or the span is shared
+   */
+  private boolean enterOwner() {
+    if (Thread.currentThread() != owner) {
+      share();
+      return false;
+    }
+    int depth = ownerDepth;
+    if (depth > 0) {
+      // a nested call, the outer one already excludes the other threads
+      ownerDepth = depth + 1;
+      return true;
+    }
+    if (shared) {
+      return false;
+    }
+    ownerDepth = 1;
+    // pairs with share(): either the owner sees the span shared here, or the other thread waits for it
+    if (shared) {
+      OWNER_DEPTH.lazySet(this, 0);
+      return false;
+    }
+    return true;
+  }
+
+  private void exitOwner() {
+    OWNER_DEPTH.lazySet(this, ownerDepth - 1);
+  }
+
+  /**
+   * Makes the owner take the monitor from now on, and waits for it to leave the span, so that the monitor guards
+   * everything the owner wrote.
+   */
+  private void share() {
+    if (!shared) {
+      shared = true;
+    }
+    while (ownerDepth != 0) {
+      Thread.yield();
     }
   }
 
   public long getStart() {
+    if (enterOwner()) {
+      try {
+        return getStartLocked();
+      } finally {
+        exitOwner();
+      }
+    }
+    synchronized (this) {
+      return getStartLocked();
+    }
+  }
+
+  private long getStartLocked() {
     return startTimeMicroseconds;
   }
 
   public long getDuration() {
+    if (enterOwner()) {
+      try {
+        return getDurationLocked();
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      return durationMicroseconds;
+      return getDurationLocked();
     }
   }
 
+  private long getDurationLocked() {
+    return durationMicroseconds;
+  }
+
   public JaegerTracer getTracer() {
     return tracer;
   }
@@ -92,121 +199,336 @@ public class JaegerSpan implements Span {
   }
 
   public Map<String, Object> getTags() {
+    if (enterOwner()) {
+      try {
+        return getTagsLocked();
+      } finally {
+        exitOwner();
+      }
+    }
+    synchronized (this) {
+      return getTagsLocked();
+    }
+  }
+
+  private Map<String, Object> getTagsLocked() {
+    if (tags == null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(tags.toMap());
+  }
+
+  /**
+   * @return the value of the tag, or null if the span has no such tag. Unlike {@link #getTags()} it
+   *     doesn't copy the tags.
+   */
+  public Object getTag(String key) {
+    if (enterOwner()) {
+      try {
+        return getTagLocked(key);
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      return Collections.unmodifiableMap(new HashMap<String, Object>(tags));
+      return getTagLocked(key);
     }
   }
 
+  private Object getTagLocked(String key) {
+    return tags != null ? tags.get(key) : null;
+  }
+
   @Override
   public JaegerSpan setOperationName(String operationName) {
+    if (enterOwner()) {
+      try {
+        return setOperationNameLocked(operationName);
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      this.operationName = operationName;
+      return setOperationNameLocked(operationName);
     }
+  }
+
+  private JaegerSpan setOperationNameLocked(String operationName) {
+    this.operationName = operationName;
     return this;
   }
 
   public String getOperationName() {
+    if (enterOwner()) {
+      try {
+        return getOperationNameLocked();
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      return operationName;
+      return getOperationNameLocked();
     }
   }
 
+  private String getOperationNameLocked() {
+    return operationName;
+  }
+
   public String getServiceName() {
+    return this.getTracer().getServiceName();
+  }
+
+  public List<LogData> getLogs() {
+    if (enterOwner()) {
+      try {
+        return getLogsLocked();
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      return this.getTracer().getServiceName();
+      return getLogsLocked();
     }
   }
 
-  public List<LogData> getLogs() {
+  private List<LogData> getLogsLocked() {
+    if (logs == null) {
+      return null;
+    }
+    return Collections.unmodifiableList(new ArrayList<LogData>(logs));
+  }
+
+  /**
+   * Passes the tags and then the logs of this span to the visitor, without copying them. The span is
+   * locked meanwhile, so the visitor sees a consistent state but must not call back into the span.
+   */
+  public <E extends Exception> void accept(JaegerSpanVisitor<E> visitor) throws E {
+    if (enterOwner()) {
+      try {
+        acceptLocked(visitor);
+      } finally {
+        exitOwner();
+      }
+      return;
+    }
     synchronized (this) {
-      if (logs == null) {
-        return null;
+      acceptLocked(visitor);
+    }
+  }
+
+  private <E extends Exception> void acceptLocked(JaegerSpanVisitor<E> visitor) throws E {
+    if (tags != null) {
+      tags.accept(visitor);
+    } else {
+      visitor.visitTags(0);
+    }
+    if (logs == null) {
+      visitor.visitLogs(0);
+      return;
+    }
+    visitor.visitLogs(logs.size());
+    for (int i = 0; i < logs.size(); i++) {
+      visitor.visitLog(logs.get(i));
+    }
+  }
+
+  /**
+   * Gives the tag and log buffers of the span back to the tracer's {@link RecyclingJaegerObjectFactory},
+   * to be reused by the spans started next. Called by {@link io.jaegertracing.internal.reporters.RemoteReporter}
+   * once its sender has encoded the span. Afterwards the span has no tags or logs, and ignores new ones.
+   * Does nothing unless the tracer recycles spans.
+   */
+  public void recycle() {
+    JaegerObjectFactory objectFactory = tracer.objectFactory();
+    if (!objectFactory.isRecycling()) {
+      return;
+    }
+    if (enterOwner()) {
+      try {
+        recycleLocked(objectFactory);
+      } finally {
+        exitOwner();
       }
-      return Collections.unmodifiableList(new ArrayList<LogData>(logs));
+      return;
+    }
+    synchronized (this) {
+      recycleLocked(objectFactory);
     }
   }
 
+  private void recycleLocked(JaegerObjectFactory objectFactory) {
+    if (recycled) {
+      log.warn("Span has already been recycled");
+      return;
+    }
+    recycled = true;
+    objectFactory.recycle(this, tags, logs);
+    tags = null;
+    logs = null;
+  }
+
   @Override
   public JaegerSpan setBaggageItem(String key, String value) {
-    if (key == null || (value == null && context.getBaggageItem(key) == null)) {
+    if (key == null || (value == null && context().getBaggageItem(key) == null)) {
       //Ignore attempts to add new baggage items with null values, they're not accessible anyway
       return this;
     }
+    if (enterOwner()) {
+      try {
+        return setBaggageItemLocked(key, value);
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      context = tracer.setBaggage(this, key, value);
-      return this;
+      return setBaggageItemLocked(key, value);
     }
   }
 
+  private JaegerSpan setBaggageItemLocked(String key, String value) {
+    context = tracer.setBaggage(this, key, value);
+    return this;
+  }
+
   @Override
   public String getBaggageItem(String key) {
-    synchronized (this) {
-      return this.context.getBaggageItem(key);
-    }
+    return context().getBaggageItem(key);
   }
 
   @Override
   public String toString() {
+    if (enterOwner()) {
+      try {
+        return toStringLocked();
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      return context.toString() + " - " + operationName;
+      return toStringLocked();
     }
   }
 
+  private String toStringLocked() {
+    return context.toString() + " - " + operationName;
+  }
+
   @Override
   public JaegerSpanContext context() {
+    if (enterOwner()) {
+      try {
+        return contextLocked();
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      // doesn't need to be a copy since all fields are final
-      return context;
+      return contextLocked();
     }
   }
 
+  private JaegerSpanContext contextLocked() {
+    // doesn't need to be a copy since all fields are final
+    return context;
+  }
+
   @Override
   public void finish() {
-    if (computeDurationViaNanoTicks) {
-      long nanoDuration = tracer.clock().currentNanoTicks() - startTimeNanoTicks;
-      finishWithDuration(nanoDuration / 1000);
+    long durationMicros;
+    if (enterOwner()) {
+      try {
+        durationMicros = durationUntilNowLocked();
+      } finally {
+        exitOwner();
+      }
     } else {
-      finish(tracer.clock().currentTimeMicros());
+      synchronized (this) {
+        durationMicros = durationUntilNowLocked();
+      }
+    }
+    finishWithDuration(durationMicros);
+  }
+
+  private long durationUntilNowLocked() {
+    if (!context.isSampled()) {
+      // the span isn't reported, so its duration doesn't need the clock
+      return 0;
+    }
+    if (computeDurationViaNanoTicks) {
+      return (tracer.clock().currentNanoTicks() - startTimeNanoTicks) / 1000;
     }
+    return tracer.clock().currentTimeMicros() - startTimeMicroseconds;
   }
 
   @Override
   public void finish(long finishMicros) {
-    finishWithDuration(finishMicros - startTimeMicroseconds);
+    finishWithDuration(finishMicros - getStart());
   }
 
   private void finishWithDuration(long durationMicros) {
-    synchronized (this) {
-      if (finished) {
-        log.warn("Span has already been finished; will not be reported again.");
-        return;
+    boolean first;
+    if (enterOwner()) {
+      try {
+        first = setFinishedLocked(durationMicros);
+      } finally {
+        exitOwner();
       }
-      finished = true;
-
-      this.durationMicroseconds = durationMicros;
+    } else {
+      synchronized (this) {
+        first = setFinishedLocked(durationMicros);
+      }
+    }
+    if (!first) {
+      log.warn("Span has already been finished; will not be reported again.");
+      return;
     }
 
-    if (context.isSampled()) {
+    // publishes the span to the reporter, which reads it with the monitor from now on, as do we
+    shared = true;
+    if (context().isSampled()) {
       tracer.reportSpan(this);
     }
   }
 
+  private boolean setFinishedLocked(long durationMicros) {
+    if (finished) {
+      return false;
+    }
+    finished = true;
+    this.durationMicroseconds = durationMicros;
+    return true;
+  }
+
   @Override
-  public synchronized JaegerSpan setTag(String key, String value) {
-    return setTagAsObject(key, value);
+  public JaegerSpan setTag(String key, String value) {
+    return setTagWithOwnership(key, value);
   }
 
   @Override
-  public synchronized JaegerSpan setTag(String key, boolean value) {
-    return setTagAsObject(key, value);
+  public JaegerSpan setTag(String key, boolean value) {
+    return setTagWithOwnership(key, value);
   }
 
   @Override
-  public synchronized JaegerSpan setTag(String key, Number value) {
-    return setTagAsObject(key, value);
+  public JaegerSpan setTag(String key, Number value) {
+    return setTagWithOwnership(key, value);
   }
 
-  private JaegerSpan setTagAsObject(String key, Object value) {
+  private JaegerSpan setTagWithOwnership(String key, Object value) {
+    if (enterOwner()) {
+      try {
+        return setTagLocked(key, value);
+      } finally {
+        exitOwner();
+      }
+    }
+    synchronized (this) {
+      return setTagLocked(key, value);
+    }
+  }
+
+  private JaegerSpan setTagLocked(String key, Object value) {
     if (key.equals(Tags.SAMPLING_PRIORITY.getKey()) && (value instanceof Number)) {
       int priority = ((Number) value).intValue();
       byte newFlags;
@@ -216,18 +538,42 @@ public class JaegerSpan implements Span {
         newFlags = (byte) (context.getFlags() & (~JaegerSpanContext.flagSampled));
       }
 
+      if (!context.isSampled() && (newFlags & JaegerSpanContext.flagSampled) != 0 && startTimeMicroseconds == 0) {
+        // the span is going to be reported, so it needs a start time after all
+        readStartTime();
+      }
       context = context.withFlags(newFlags);
     }
 
     if (context.isSampled()) {
+      if (recycled) {
+        log.debug("Span has already been reported and recycled, ignoring tag {}", key);
+        return this;
+      }
+      if (tags == null) {
+        tags = tracer.objectFactory().createTags(this);
+      }
       tags.put(key, value);
     }
 
     return this;
   }
 
+  private void readStartTime() {
+    Clock clock = tracer.clock();
+    startTimeMicroseconds = clock.currentTimeMicros();
+    if (!clock.isMicrosAccurate()) {
+      startTimeNanoTicks = clock.currentNanoTicks();
+      computeDurationViaNanoTicks = true;
+    }
+  }
+
   @Override
   public JaegerSpan log(Map<String, ?> fields) {
+    if (!context().isSampled()) {
+      // the log would be dropped, so the clock isn't read
+      return this;
+    }
     return log(tracer.clock().currentTimeMicros(), null, fields);
   }
 
@@ -238,6 +584,9 @@ public class JaegerSpan implements Span {
 
   @Override
   public JaegerSpan log(String event) {
+    if (!context().isSampled()) {
+      return this;
+    }
     return log(tracer.clock().currentTimeMicros(), event, null);
   }
 
@@ -247,21 +596,36 @@ public class JaegerSpan implements Span {
   }
 
   private JaegerSpan log(long timestampMicroseconds, String event, Map<String, ?> fields) {
+    if (fields == null && event == null) {
+      return this;
+    }
+    if (enterOwner()) {
+      try {
+        return addLogLocked(timestampMicroseconds, event, fields);
+      } finally {
+        exitOwner();
+      }
+    }
     synchronized (this) {
-      if (fields == null && event == null) {
+      return addLogLocked(timestampMicroseconds, event, fields);
+    }
+  }
+
+  private JaegerSpan addLogLocked(long timestampMicroseconds, String event, Map<String, ?> fields) {
+    if (context.isSampled()) {
+      if (recycled) {
+        log.debug("Span has already been reported and recycled, ignoring log");
         return this;
       }
-      if (context.isSampled()) {
-        if (fields != null && tracer.isExpandExceptionLogs()) {
-          fields = addExceptionLogs(fields);
-        }
-        if (logs == null) {
-          this.logs = new ArrayList<LogData>();
-        }
-        logs.add(new LogData(timestampMicroseconds, event, fields));
+      if (fields != null && tracer.isExpandExceptionLogs()) {
+        fields = addExceptionLogs(fields);
       }
-      return this;
+      if (logs == null) {
+        this.logs = tracer.objectFactory().createLogs(this);
+      }
+      logs.add(new LogData(timestampMicroseconds, event, fields));
     }
+    return this;
   }
 
   /**
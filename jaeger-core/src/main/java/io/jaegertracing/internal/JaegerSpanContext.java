@@ -25,17 +25,27 @@ public class JaegerSpanContext implements SpanContext {
   protected static final byte flagSampled = 1;
   protected static final byte flagDebug = 2;
 
-  private final long traceId;
+  private final long traceIdHigh;
+  private final long traceIdLow;
   private final long spanId;
   private final long parentId;
   private final byte flags;
   private final Map<String, String> baggage;
   private final String debugId;
   private final JaegerObjectFactory objectFactory;
+  // the W3C tracestate header of the trace
+  private final String traceState;
+  // see setEncodedHeaders, written without synchronization
+  private TextMapCodec.EncodedHeaders encodedHeaders;
 
   public JaegerSpanContext(long traceId, long spanId, long parentId, byte flags) {
+    this(0, traceId, spanId, parentId, flags);
+  }
+
+  public JaegerSpanContext(long traceIdHigh, long traceIdLow, long spanId, long parentId, byte flags) {
     this(
-        traceId,
+        traceIdHigh,
+        traceIdLow,
         spanId,
         parentId,
         flags,
@@ -52,15 +62,42 @@ public class JaegerSpanContext implements SpanContext {
       Map<String, String> baggage,
       String debugId,
       JaegerObjectFactory objectFactory) {
+    this(0, traceId, spanId, parentId, flags, baggage, debugId, objectFactory);
+  }
+
+  protected JaegerSpanContext(
+      long traceIdHigh,
+      long traceIdLow,
+      long spanId,
+      long parentId,
+      byte flags,
+      Map<String, String> baggage,
+      String debugId,
+      JaegerObjectFactory objectFactory) {
+    this(traceIdHigh, traceIdLow, spanId, parentId, flags, baggage, debugId, null, objectFactory);
+  }
+
+  protected JaegerSpanContext(
+      long traceIdHigh,
+      long traceIdLow,
+      long spanId,
+      long parentId,
+      byte flags,
+      Map<String, String> baggage,
+      String debugId,
+      String traceState,
+      JaegerObjectFactory objectFactory) {
     if (baggage == null) {
       baggage = Collections.<String, String>emptyMap();
     }
-    this.traceId = traceId;
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
     this.spanId = spanId;
     this.parentId = parentId;
     this.flags = flags;
     this.baggage = baggage;
     this.debugId = debugId;
+    this.traceState = traceState;
     this.objectFactory = objectFactory;
   }
 
@@ -77,8 +114,25 @@ public class JaegerSpanContext implements SpanContext {
     return this.baggage;
   }
 
+  /**
+   * @return the lower 64 bits of the trace ID, which is all of it unless the trace has a 128-bit ID
+   */
   public long getTraceId() {
-    return traceId;
+    return traceIdLow;
+  }
+
+  /**
+   * @return the upper 64 bits of the trace ID, or zero for a 64-bit trace ID
+   */
+  public long getTraceIdHigh() {
+    return traceIdHigh;
+  }
+
+  /**
+   * @return the lower 64 bits of the trace ID, same as {@link #getTraceId()}
+   */
+  public long getTraceIdLow() {
+    return traceIdLow;
   }
 
   public long getSpanId() {
@@ -101,6 +155,24 @@ public class JaegerSpanContext implements SpanContext {
     return (flags & flagDebug) == flagDebug;
   }
 
+  /**
+   * For internal use by {@link TextMapCodec} only, not part of the public API.
+   *
+   * @return the headers a codec last encoded this context to, or null
+   */
+  public TextMapCodec.EncodedHeaders getEncodedHeaders() {
+    return encodedHeaders;
+  }
+
+  /**
+   * For internal use by {@link TextMapCodec} only, not part of the public API. Memoizes the headers the context was
+   * encoded to, so that injecting it again only costs the puts into the carrier. The context is immutable, so the
+   * headers never get stale. They only have final fields, so they are safe to publish without synchronization.
+   */
+  public void setEncodedHeaders(TextMapCodec.EncodedHeaders encodedHeaders) {
+    this.encodedHeaders = encodedHeaders;
+  }
+
   @Override
   public String toString() {
     return TextMapCodec.contextAsString(this);
@@ -113,15 +185,34 @@ public class JaegerSpanContext implements SpanContext {
     } else {
       newBaggage.put(key, val);
     }
-    return objectFactory.createSpanContext(traceId, spanId, parentId, flags, newBaggage, debugId);
+    return objectFactory.createSpanContext(
+        traceIdHigh, traceIdLow, spanId, parentId, flags, newBaggage, debugId, traceState);
   }
 
   public JaegerSpanContext withBaggage(Map<String, String> newBaggage) {
-    return objectFactory.createSpanContext(traceId, spanId, parentId, flags, newBaggage, debugId);
+    return objectFactory.createSpanContext(
+        traceIdHigh, traceIdLow, spanId, parentId, flags, newBaggage, debugId, traceState);
   }
 
   public JaegerSpanContext withFlags(byte flags) {
-    return objectFactory.createSpanContext(traceId, spanId, parentId, flags, baggage, debugId);
+    return objectFactory.createSpanContext(
+        traceIdHigh, traceIdLow, spanId, parentId, flags, baggage, debugId, traceState);
+  }
+
+  /**
+   * @return a copy of this context with the W3C tracestate header, which the context carries for
+   *     {@link io.jaegertracing.internal.propagation.TraceContextCodec}
+   */
+  public JaegerSpanContext withTraceState(String traceState) {
+    return objectFactory.createSpanContext(
+        traceIdHigh, traceIdLow, spanId, parentId, flags, baggage, debugId, traceState);
+  }
+
+  /**
+   * @return the W3C tracestate header of the trace, or null if it had none
+   */
+  public String getTraceState() {
+    return traceState;
   }
 
   /**
@@ -133,7 +224,7 @@ public class JaegerSpanContext implements SpanContext {
    * @see Constants#BAGGAGE_HEADER_KEY
    */
   boolean hasTrace() {
-    return traceId != 0 && spanId != 0;
+    return (traceIdHigh != 0 || traceIdLow != 0) && spanId != 0;
   }
 
   /**
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The tags of a {@link JaegerSpan}, kept in parallel arrays in the order they were first set.
+ * Setting a tag again replaces its value. Booleans, integers, longs, floats and doubles are stored
+ * unboxed, other values by reference.
+ *
+ * <p>Spans have few tags, so keys are looked up by a linear scan. Not thread-safe, the span guards
+ * it with its own lock.</p>
+ */
+final class JaegerSpanTags {
+  private static final int INITIAL_CAPACITY = 8;
+
+  private static final byte TYPE_OBJECT = 0;
+  private static final byte TYPE_BOOLEAN = 1;
+  private static final byte TYPE_INT = 2;
+  private static final byte TYPE_LONG = 3;
+  private static final byte TYPE_FLOAT = 4;
+  private static final byte TYPE_DOUBLE = 5;
+
+  private String[] keys;
+  private byte[] types;
+  // booleans as 0 or 1, floats and doubles as their raw long bits
+  private long[] primitives;
+  private Object[] objects;
+  private int size;
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return keys == null ? 0 : keys.length;
+  }
+
+  /**
+   * Removes the tags, but keeps the arrays for reuse.
+   */
+  void clear() {
+    for (int i = 0; i < size; i++) {
+      keys[i] = null;
+      objects[i] = null;
+    }
+    size = 0;
+  }
+
+  void put(String key, Object value) {
+    int index = indexOf(key);
+    if (index < 0) {
+      index = size;
+      ensureCapacity(size + 1);
+      keys[index] = key;
+      size++;
+    }
+
+    if (value instanceof Boolean) {
+      setPrimitive(index, TYPE_BOOLEAN, (Boolean) value ? 1 : 0);
+    } else if (value instanceof Integer) {
+      setPrimitive(index, TYPE_INT, (Integer) value);
+    } else if (value instanceof Long) {
+      setPrimitive(index, TYPE_LONG, (Long) value);
+    } else if (value instanceof Float) {
+      setPrimitive(index, TYPE_FLOAT, Double.doubleToRawLongBits((Float) value));
+    } else if (value instanceof Double) {
+      setPrimitive(index, TYPE_DOUBLE, Double.doubleToRawLongBits((Double) value));
+    } else {
+      types[index] = TYPE_OBJECT;
+      objects[index] = value;
+    }
+  }
+
+  /**
+   * @return the value of the tag, boxed to the type it was set with, or null if there is no such tag
+   */
+  Object get(String key) {
+    int index = indexOf(key);
+    return index < 0 ? null : valueAt(index);
+  }
+
+  Map<String, Object> toMap() {
+    Map<String, Object> map = new HashMap<String, Object>(size * 2);
+    for (int i = 0; i < size; i++) {
+      map.put(keys[i], valueAt(i));
+    }
+    return map;
+  }
+
+  <E extends Exception> void accept(JaegerSpanVisitor<E> visitor) throws E {
+    visitor.visitTags(size);
+    for (int i = 0; i < size; i++) {
+      switch (types[i]) {
+        case TYPE_BOOLEAN:
+          visitor.visitTag(keys[i], primitives[i] != 0);
+          break;
+        case TYPE_INT:
+        case TYPE_LONG:
+          visitor.visitTag(keys[i], primitives[i]);
+          break;
+        case TYPE_DOUBLE:
+          visitor.visitTag(keys[i], Double.longBitsToDouble(primitives[i]));
+          break;
+        default:
+          // floats are rare, and some converters format them differently from doubles
+          visitor.visitTag(keys[i], valueAt(i));
+          break;
+      }
+    }
+  }
+
+  private Object valueAt(int index) {
+    long primitive = primitives[index];
+    switch (types[index]) {
+      case TYPE_BOOLEAN:
+        return primitive != 0;
+      case TYPE_INT:
+        return (int) primitive;
+      case TYPE_LONG:
+        return primitive;
+      case TYPE_FLOAT:
+        return (float) Double.longBitsToDouble(primitive);
+      case TYPE_DOUBLE:
+        return Double.longBitsToDouble(primitive);
+      default:
+        return objects[index];
+    }
+  }
+
+  private void setPrimitive(int index, byte type, long value) {
+    types[index] = type;
+    primitives[index] = value;
+    // drops the reference to a previous value
+    objects[index] = null;
+  }
+
+  private int indexOf(String key) {
+    for (int i = 0; i < size; i++) {
+      if (keys[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (keys == null) {
+      int initialCapacity = Math.max(capacity, INITIAL_CAPACITY);
+      keys = new String[initialCapacity];
+      types = new byte[initialCapacity];
+      primitives = new long[initialCapacity];
+      objects = new Object[initialCapacity];
+    } else if (capacity > keys.length) {
+      int newCapacity = Math.max(capacity, keys.length * 2);
+      keys = Arrays.copyOf(keys, newCapacity);
+      types = Arrays.copyOf(types, newCapacity);
+      primitives = Arrays.copyOf(primitives, newCapacity);
+      objects = Arrays.copyOf(objects, newCapacity);
+    }
+  }
+}
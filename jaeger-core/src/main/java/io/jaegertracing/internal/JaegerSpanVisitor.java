@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal;
+
+/**
+ * Reads the tags and logs of a {@link JaegerSpan} without copying them, see
+ * {@link JaegerSpan#accept(JaegerSpanVisitor)}. Used by converters and encoders of finished spans.
+ *
+ * @param <E> the exception the visitor may throw
+ */
+public interface JaegerSpanVisitor<E extends Exception> {
+
+  /**
+   * Called once before the tags.
+   *
+   * @param count the number of tags which are going to be visited
+   */
+  void visitTags(int count) throws E;
+
+  /**
+   * Called for the tags whose value is not a boolean, integer, long or double.
+   */
+  void visitTag(String key, Object value) throws E;
+
+  void visitTag(String key, boolean value) throws E;
+
+  /**
+   * Called for the tags whose value is an integer or a long.
+   */
+  void visitTag(String key, long value) throws E;
+
+  void visitTag(String key, double value) throws E;
+
+  /**
+   * Called once after the tags and before the logs.
+   *
+   * @param count the number of logs which are going to be visited
+   */
+  void visitLogs(int count) throws E;
+
+  void visitLog(LogData log) throws E;
+}
@@ -24,6 +24,7 @@ import io.jaegertracing.internal.exceptions.NotFourOctetsException;
 import io.jaegertracing.internal.exceptions.UnsupportedFormatException;
 import io.jaegertracing.internal.metrics.Metrics;
 import io.jaegertracing.internal.metrics.NoopMetricsFactory;
+import io.jaegertracing.internal.propagation.BinaryCodec;
 import io.jaegertracing.internal.propagation.TextMapCodec;
 import io.jaegertracing.internal.reporters.RemoteReporter;
 import io.jaegertracing.internal.samplers.RemoteControlledSampler;
@@ -68,6 +69,7 @@ public class JaegerTracer implements Tracer, Closeable {
   private final Map<String, ?> tags;
   private final boolean zipkinSharedRpcSpan;
   private final boolean expandExceptionLogs;
+  private final boolean useTraceId128Bit;
 
   @ToString.Exclude private final PropagationRegistry registry;
   @ToString.Exclude private final Clock clock;
@@ -88,6 +90,7 @@ public class JaegerTracer implements Tracer, Closeable {
     this.scopeManager = builder.scopeManager;
     this.baggageSetter = new BaggageSetter(builder.baggageRestrictionManager, metrics);
     this.expandExceptionLogs = builder.expandExceptionLogs;
+    this.useTraceId128Bit = builder.useTraceId128Bit;
     this.objectFactory = builder.objectFactory;
 
     this.version = loadVersion();
@@ -146,6 +149,10 @@ public class JaegerTracer implements Tracer, Closeable {
     return clock;
   }
 
+  JaegerObjectFactory objectFactory() {
+    return objectFactory;
+  }
+
   Reporter getReporter() {
     return reporter;
   }
@@ -217,7 +224,8 @@ public class JaegerTracer implements Tracer, Closeable {
      */
     private List<Reference> references = Collections.emptyList();
 
-    private final Map<String, Object> tags = new HashMap<String, Object>();
+    // created with the first tag, most spans which aren't sampled don't have any
+    private Map<String, Object> tags;
     private boolean ignoreActiveSpan = false;
 
     protected SpanBuilder(String operationName) {
@@ -267,19 +275,19 @@ public class JaegerTracer implements Tracer, Closeable {
 
     @Override
     public JaegerTracer.SpanBuilder withTag(String key, String value) {
-      tags.put(key, value);
+      tags().put(key, value);
       return this;
     }
 
     @Override
     public JaegerTracer.SpanBuilder withTag(String key, boolean value) {
-      tags.put(key, value);
+      tags().put(key, value);
       return this;
     }
 
     @Override
     public JaegerTracer.SpanBuilder withTag(String key, Number value) {
-      tags.put(key, value);
+      tags().put(key, value);
       return this;
     }
 
@@ -296,14 +304,14 @@ public class JaegerTracer implements Tracer, Closeable {
       byte flags = 0;
       if (debugId != null) {
         flags = (byte) (flags | JaegerSpanContext.flagSampled | JaegerSpanContext.flagDebug);
-        tags.put(Constants.DEBUG_ID_HEADER_KEY, debugId);
+        tags().put(Constants.DEBUG_ID_HEADER_KEY, debugId);
         metrics.traceStartedSampled.inc(1);
       } else {
         // TODO: (prithvi) Don't assume operationName is set on creation
         SamplingStatus samplingStatus = sampler.sample(operationName, id);
         if (samplingStatus.isSampled()) {
           flags |= JaegerSpanContext.flagSampled;
-          tags.putAll(samplingStatus.getTags());
+          tags().putAll(samplingStatus.getTags());
           metrics.traceStartedSampled.inc(1);
         } else {
           metrics.traceStartedNotSampled.inc(1);
@@ -311,6 +319,7 @@ public class JaegerTracer implements Tracer, Closeable {
       }
 
       return getObjectFactory().createSpanContext(
+          useTraceId128Bit ? Utils.uniqueId() : 0,
           id,
           id,
           0,
@@ -356,18 +365,27 @@ public class JaegerTracer implements Tracer, Closeable {
       }
 
       return getObjectFactory().createSpanContext(
-          preferredReference.getTraceId(),
+          preferredReference.getTraceIdHigh(),
+          preferredReference.getTraceIdLow(),
           Utils.uniqueId(),
           preferredReference.getSpanId(),
           // should we do OR across passed references?
           preferredReference.getFlags(),
           getBaggage(),
-          null);
+          null,
+          preferredReference.getTraceState());
     }
 
     //Visible for testing
     boolean isRpcServer() {
-      return Tags.SPAN_KIND_SERVER.equals(tags.get(Tags.SPAN_KIND.getKey()));
+      return tags != null && Tags.SPAN_KIND_SERVER.equals(tags.get(Tags.SPAN_KIND.getKey()));
+    }
+
+    private Map<String, Object> tags() {
+      if (tags == null) {
+        tags = new HashMap<String, Object>();
+      }
+      return tags;
     }
 
     private JaegerSpanContext preferredReference() {
@@ -419,7 +437,8 @@ public class JaegerTracer implements Tracer, Closeable {
       long startTimeNanoTicks = 0;
       boolean computeDurationViaNanoTicks = false;
 
-      if (startTimeMicroseconds == 0) {
+      // a span which isn't sampled reads the clock only if it gets sampled later on
+      if (startTimeMicroseconds == 0 && context.isSampled()) {
         startTimeMicroseconds = clock.currentTimeMicros();
         if (!clock.isMicrosAccurate()) {
           startTimeNanoTicks = clock.currentNanoTicks();
@@ -434,7 +453,7 @@ public class JaegerTracer implements Tracer, Closeable {
               startTimeMicroseconds,
               startTimeNanoTicks,
               computeDurationViaNanoTicks,
-              tags,
+              tags != null ? tags : Collections.<String, Object>emptyMap(),
               references);
       if (context.isSampled()) {
         metrics.spansStartedSampled.inc(1);
@@ -481,13 +500,18 @@ public class JaegerTracer implements Tracer, Closeable {
     private ScopeManager scopeManager = new ThreadLocalScopeManager();
     private BaggageRestrictionManager baggageRestrictionManager = new DefaultBaggageRestrictionManager();
     private boolean expandExceptionLogs;
+    private boolean useTraceId128Bit;
     private final JaegerObjectFactory objectFactory;
 
     public Builder(String serviceName) {
       this(serviceName, new JaegerObjectFactory());
     }
 
-    protected Builder(String serviceName, JaegerObjectFactory objectFactory) {
+    /**
+     * @param objectFactory creates the spans, span contexts and span builders of the tracer, for
+     *     example a {@link RecyclingJaegerObjectFactory}
+     */
+    public Builder(String serviceName, JaegerObjectFactory objectFactory) {
       this.serviceName = checkValidServiceName(serviceName);
       this.objectFactory = objectFactory;
 
@@ -505,7 +529,12 @@ public class JaegerTracer implements Tracer, Closeable {
               .build();
       this.registerInjector(Format.Builtin.HTTP_HEADERS, httpCodec);
       this.registerExtractor(Format.Builtin.HTTP_HEADERS, httpCodec);
-      // TODO binary codec not implemented
+      BinaryCodec binaryCodec =
+          new BinaryCodec.Builder()
+              .withObjectFactory(this.objectFactory)
+              .build();
+      this.registerInjector(Format.Builtin.BINARY, binaryCodec);
+      this.registerExtractor(Format.Builtin.BINARY, binaryCodec);
     }
 
     /**
@@ -564,6 +593,15 @@ public class JaegerTracer implements Tracer, Closeable {
       return this;
     }
 
+    /**
+     * Starts new traces with 128-bit trace IDs instead of 64-bit ones. Either kind is propagated when it's
+     * extracted from an incoming request.
+     */
+    public Builder withTraceId128Bit() {
+      this.useTraceId128Bit = true;
+      return this;
+    }
+
     public Builder withMetrics(Metrics metrics) {
       this.metrics = metrics;
       return this;
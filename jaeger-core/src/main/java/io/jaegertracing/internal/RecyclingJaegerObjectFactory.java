@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Object factory which reuses the tag and log buffers of the spans once they have been reported,
+ * which reduces the garbage created by services tracing most of their requests.
+ *
+ * <p>The buffers of a span are recycled by {@link JaegerSpan#recycle()}, which
+ * {@link io.jaegertracing.internal.reporters.RemoteReporter} calls once its sender has encoded the
+ * span, or dropped it. Recycling is only safe when nothing else reads the spans after they have been
+ * reported: the tracer must report to a single {@code RemoteReporter}, whose sender encodes spans when
+ * they are appended, like the thrift and zipkin senders do.</p>
+ *
+ * <p>With leak detection enabled, spans which are garbage collected without being recycled are
+ * logged with the stack trace of the code which gave them their first buffer. It is meant for
+ * debugging, since it records a stack trace per span.</p>
+ */
+@Slf4j
+public class RecyclingJaegerObjectFactory extends JaegerObjectFactory {
+  public static final int DEFAULT_POOL_SIZE = 1024;
+  // larger buffers are left to the garbage collector, so that an odd span doesn't pin them
+  static final int MAX_RECYCLED_CAPACITY = 64;
+
+  private final RecyclingPool<JaegerSpanTags> tagsPool;
+  private final RecyclingPool<ArrayList<LogData>> logsPool;
+
+  // only used when detecting leaks
+  private final Set<LeakTracker> trackers;
+  private final ReferenceQueue<JaegerSpan> collectedSpans;
+  private final AtomicLong leakedSpans = new AtomicLong();
+
+  public RecyclingJaegerObjectFactory() {
+    this(DEFAULT_POOL_SIZE, false);
+  }
+
+  /**
+   * @param poolSize the number of tag buffers and of log buffers kept for reuse
+   * @param leakDetection whether to log the spans which are never recycled
+   */
+  public RecyclingJaegerObjectFactory(int poolSize, boolean leakDetection) {
+    if (poolSize <= 0) {
+      throw new IllegalArgumentException("Pool size must be positive");
+    }
+    this.tagsPool = new RecyclingPool<JaegerSpanTags>(poolSize);
+    this.logsPool = new RecyclingPool<ArrayList<LogData>>(poolSize);
+    if (leakDetection) {
+      this.trackers = Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+      this.collectedSpans = new ReferenceQueue<JaegerSpan>();
+    } else {
+      this.trackers = null;
+      this.collectedSpans = null;
+    }
+  }
+
+  /**
+   * @return the number of spans which were garbage collected without being recycled, when detecting
+   *     leaks. Spans are counted once the garbage collector has noticed them, and the factory has
+   *     given a buffer to another span.
+   */
+  public long getLeakedSpanCount() {
+    return leakedSpans.get();
+  }
+
+  @Override
+  boolean isRecycling() {
+    return true;
+  }
+
+  @Override
+  JaegerSpanTags createTags(JaegerSpan span) {
+    track(span);
+    JaegerSpanTags tags = tagsPool.take();
+    return tags != null ? tags : new JaegerSpanTags();
+  }
+
+  @Override
+  List<LogData> createLogs(JaegerSpan span) {
+    track(span);
+    ArrayList<LogData> logs = logsPool.take();
+    return logs != null ? logs : new ArrayList<LogData>();
+  }
+
+  @Override
+  void recycle(JaegerSpan span, JaegerSpanTags tags, List<LogData> logs) {
+    if (span.leakTracker != null) {
+      LeakTracker tracker = (LeakTracker) span.leakTracker;
+      span.leakTracker = null;
+      trackers.remove(tracker);
+      tracker.clear();
+    }
+    if (tags != null && tags.capacity() <= MAX_RECYCLED_CAPACITY) {
+      tags.clear();
+      tagsPool.put(tags);
+    }
+    // only the lists created by createLogs, the capacity of an ArrayList isn't known
+    if (logs instanceof ArrayList && logs.size() <= MAX_RECYCLED_CAPACITY) {
+      logs.clear();
+      logsPool.put((ArrayList<LogData>) logs);
+    }
+  }
+
+  private void track(JaegerSpan span) {
+    if (trackers == null || span.leakTracker != null) {
+      return;
+    }
+    reportLeaks();
+    LeakTracker tracker = new LeakTracker(span, collectedSpans);
+    trackers.add(tracker);
+    span.leakTracker = tracker;
+  }
+
+  private void reportLeaks() {
+    LeakTracker tracker;
+    while ((tracker = (LeakTracker) collectedSpans.poll()) != null) {
+      if (trackers.remove(tracker)) {
+        leakedSpans.incrementAndGet();
+        log.warn("A span was garbage collected without being recycled, it got its first buffer here",
+            tracker.creation);
+      }
+    }
+  }
+
+  private static class LeakTracker extends WeakReference<JaegerSpan> {
+    private final Throwable creation = new Throwable("Span buffer created");
+
+    LeakTracker(JaegerSpan span, ReferenceQueue<JaegerSpan> queue) {
+      super(span, queue);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free pool of objects, used like a stack: objects are taken below the slot where the
+ * last one was put, so that recently used objects, which are likely still cached, are reused first.
+ * Objects are put back by the thread which reports the spans, and taken by the threads which create
+ * them.
+ *
+ * <p>The pool is best effort: when a taker or a putter doesn't find a slot within a few probes, it
+ * gives up, and the object is allocated or left to the garbage collector instead.</p>
+ */
+final class RecyclingPool<T> {
+  private static final int PROBES = 8;
+
+  private final AtomicReferenceArray<T> slots;
+  private final int mask;
+  // racy hint of the top of the stack, a lost update only makes a probe start elsewhere
+  private int top;
+
+  /**
+   * @param capacity the number of pooled objects, rounded up to a power of two
+   */
+  RecyclingPool(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, PROBES) - 1) << 1;
+    this.slots = new AtomicReferenceArray<T>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return a pooled object, or null if none was found
+   */
+  T take() {
+    int start = top;
+    for (int i = 1; i <= PROBES; i++) {
+      int index = (start - i) & mask;
+      T object = slots.get(index);
+      if (object != null && slots.compareAndSet(index, object, null)) {
+        top = index;
+        return object;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return whether the object was pooled
+   */
+  boolean put(T object) {
+    int start = top;
+    for (int i = 0; i < PROBES; i++) {
+      int index = (start + i) & mask;
+      if (slots.get(index) == null && slots.compareAndSet(index, null, object)) {
+        top = index + 1;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  int capacity() {
+    return slots.length();
+  }
+}
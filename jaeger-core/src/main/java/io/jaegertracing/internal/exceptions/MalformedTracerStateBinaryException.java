@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.exceptions;
+
+public class MalformedTracerStateBinaryException extends RuntimeException {
+
+  private static final long serialVersionUID = -4587321398264027331L;
+
+  public MalformedTracerStateBinaryException(String message) {
+    super("Buffer does not match binary tracer state format: " + message);
+  }
+}
@@ -182,6 +182,18 @@ public class Metrics {
   // Number of times the Sampler failed to update sampling strategy
   public Counter samplerParsingFailure;
 
+  @Metric(name = "sampler_operations", tags = @Tag(key = "result", value = "hit"))
+  // Number of times an operation was sampled by its own per-operation sampler, counted on every sampler update
+  public Counter samplerOperationHit;
+
+  @Metric(name = "sampler_operations", tags = @Tag(key = "result", value = "miss"))
+  // Number of times an operation had no per-operation sampler yet
+  public Counter samplerOperationMiss;
+
+  @Metric(name = "sampler_operation_evictions")
+  // Number of per-operation samplers evicted to make room for more frequent operations
+  public Counter samplerOperationEvicted;
+
   @Metric(name = "baggage_updates", tags = @Tag(key = "result", value = "ok"))
   // Number of times baggage was successfully written or updated on spans.
   public Counter baggageUpdateSuccess;
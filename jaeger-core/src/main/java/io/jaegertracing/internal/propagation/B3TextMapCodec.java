@@ -77,7 +77,7 @@ public class B3TextMapCodec implements Codec<TextMap> {
 
   @Override
   public void inject(JaegerSpanContext spanContext, TextMap carrier) {
-    carrier.put(TRACE_ID_NAME, HexCodec.toLowerHex(spanContext.getTraceId()));
+    carrier.put(TRACE_ID_NAME, HexCodec.toLowerHex(spanContext.getTraceIdHigh(), spanContext.getTraceIdLow()));
     if (spanContext.getParentId() != 0L) { // Conventionally, parent id == 0 means the root span
       carrier.put(PARENT_SPAN_ID_NAME, HexCodec.toLowerHex(spanContext.getParentId()));
     }
@@ -93,6 +93,7 @@ public class B3TextMapCodec implements Codec<TextMap> {
 
   @Override
   public JaegerSpanContext extract(TextMap carrier) {
+    Long traceIdHigh = 0L;
     Long traceId = null;
     Long spanId = null;
     Long parentId = 0L; // Conventionally, parent id == 0 means the root span
@@ -105,6 +106,7 @@ public class B3TextMapCodec implements Codec<TextMap> {
           flags |= SAMPLED_FLAG;
         }
       } else if (entry.getKey().equalsIgnoreCase(TRACE_ID_NAME)) {
+        traceIdHigh = HexCodec.lowerHexToUnsignedLongHigh(entry.getValue());
         traceId = HexCodec.lowerHexToUnsignedLong(entry.getValue());
       } else if (entry.getKey().equalsIgnoreCase(PARENT_SPAN_ID_NAME)) {
         parentId = HexCodec.lowerHexToUnsignedLong(entry.getValue());
@@ -122,8 +124,9 @@ public class B3TextMapCodec implements Codec<TextMap> {
       }
     }
 
-    if (null != traceId && null != parentId && null != spanId) {
+    if (null != traceIdHigh && null != traceId && null != parentId && null != spanId) {
       JaegerSpanContext spanContext = objectFactory.createSpanContext(
+          traceIdHigh,
           traceId,
           spanId,
           parentId,
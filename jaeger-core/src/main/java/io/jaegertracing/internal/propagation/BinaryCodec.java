@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.propagation;
+
+import io.jaegertracing.internal.JaegerObjectFactory;
+import io.jaegertracing.internal.JaegerSpanContext;
+import io.jaegertracing.internal.exceptions.MalformedTracerStateBinaryException;
+import io.jaegertracing.spi.Codec;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Propagates the span context in a {@link ByteBuffer}, for {@link io.opentracing.propagation.Format.Builtin#BINARY}.
+ * Uses the layout of the other Jaeger clients, in big-endian byte order:
+ *
+ * <pre>
+ * trace ID high (8 bytes), trace ID low (8), span ID (8), parent span ID (8), flags (1),
+ * number of baggage items (4), then for each item: key length (4), key, value length (4), value
+ * </pre>
+ *
+ * <p>Baggage keys and values are UTF-8. Injecting writes at the position of the buffer, which needs enough room
+ * left. Extracting reads from the position, and decodes the baggage straight from the backing array of a heap
+ * buffer.</p>
+ */
+public class BinaryCodec implements Codec<ByteBuffer> {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final JaegerObjectFactory objectFactory;
+
+  private BinaryCodec(Builder builder) {
+    this.objectFactory = builder.objectFactory;
+  }
+
+  @Override
+  public void inject(JaegerSpanContext spanContext, ByteBuffer carrier) {
+    ByteOrder order = carrier.order();
+    carrier.order(ByteOrder.BIG_ENDIAN);
+    try {
+      carrier.putLong(spanContext.getTraceIdHigh());
+      carrier.putLong(spanContext.getTraceIdLow());
+      carrier.putLong(spanContext.getSpanId());
+      carrier.putLong(spanContext.getParentId());
+      carrier.put(spanContext.getFlags());
+
+      // the count goes first, but the baggage is only iterated once
+      int countPosition = carrier.position();
+      carrier.putInt(0);
+      int count = 0;
+      for (Map.Entry<String, String> entry : spanContext.baggageItems()) {
+        putString(carrier, entry.getKey());
+        putString(carrier, entry.getValue());
+        count++;
+      }
+      carrier.putInt(countPosition, count);
+    } finally {
+      carrier.order(order);
+    }
+  }
+
+  private static void putString(ByteBuffer carrier, String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    carrier.putInt(bytes.length);
+    carrier.put(bytes);
+  }
+
+  /**
+   * @return the span context, or null if the buffer has nothing left to read
+   * @throws MalformedTracerStateBinaryException if the buffer ends too early, or has invalid lengths
+   */
+  @Override
+  public JaegerSpanContext extract(ByteBuffer carrier) {
+    if (!carrier.hasRemaining()) {
+      return null;
+    }
+    ByteOrder order = carrier.order();
+    carrier.order(ByteOrder.BIG_ENDIAN);
+    try {
+      long traceIdHigh = carrier.getLong();
+      long traceIdLow = carrier.getLong();
+      long spanId = carrier.getLong();
+      long parentId = carrier.getLong();
+      byte flags = carrier.get();
+
+      int count = carrier.getInt();
+      // every item takes at least the 8 bytes of its two lengths
+      if (count < 0 || count > carrier.remaining() / 8) {
+        throw new MalformedTracerStateBinaryException("invalid baggage count " + count);
+      }
+      Map<String, String> baggage = null;
+      if (count > 0) {
+        baggage = new HashMap<String, String>(count * 2);
+        for (int i = 0; i < count; i++) {
+          String key = getString(carrier);
+          baggage.put(key, getString(carrier));
+        }
+      }
+
+      return objectFactory.createSpanContext(traceIdHigh, traceIdLow, spanId, parentId, flags, baggage, null);
+    } catch (BufferUnderflowException e) {
+      throw new MalformedTracerStateBinaryException("buffer is too short");
+    } finally {
+      carrier.order(order);
+    }
+  }
+
+  private static String getString(ByteBuffer carrier) {
+    int length = carrier.getInt();
+    if (length < 0 || length > carrier.remaining()) {
+      throw new MalformedTracerStateBinaryException("invalid length " + length);
+    }
+
+    String value;
+    if (carrier.hasArray()) {
+      value = new String(carrier.array(), carrier.arrayOffset() + carrier.position(), length, UTF_8);
+      carrier.position(carrier.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      carrier.get(bytes);
+      value = new String(bytes, UTF_8);
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "BinaryCodec{}";
+  }
+
+  public static class Builder {
+    private JaegerObjectFactory objectFactory = new JaegerObjectFactory();
+
+    /**
+     * Specify JaegerSpanContext factory. Used for creating new span contexts. The default factory
+     * is an instance of {@link JaegerObjectFactory}.
+     */
+    public Builder withObjectFactory(JaegerObjectFactory objectFactory) {
+      this.objectFactory = objectFactory;
+      return this;
+    }
+
+    public BinaryCodec build() {
+      return new BinaryCodec(this);
+    }
+  }
+}
@@ -35,6 +35,24 @@ final class HexCodec {
     return lowerHexToUnsignedLong(lowerHex, beginIndex);
   }
 
+  /**
+   * Parses the bits higher than 64 of a 1 to 32 character lower-hex string with no prefix, which
+   * {@link #lowerHexToUnsignedLong(String)} tosses.
+   *
+   * @return the upper 64 bits, zero for a string of 16 characters or less, or null if the string is invalid
+   */
+  static Long lowerHexToUnsignedLongHigh(String lowerHex) {
+    int length = lowerHex.length();
+    if (length < 1 || length > 32) {
+      return null;
+    }
+    if (length <= 16) {
+      return 0L;
+    }
+
+    return lowerHexToUnsignedLong(lowerHex, 0, length - 16);
+  }
+
   /**
    * Parses a 16 character lower-hex string with no prefix into an unsigned long, starting at the
    * spe index.
@@ -42,8 +60,12 @@ final class HexCodec {
    * @return a 64 bit long, meaning that negative values are the overflow of Java's 32 bit long
    */
   static Long lowerHexToUnsignedLong(String lowerHex, int index) {
+    return lowerHexToUnsignedLong(lowerHex, index, Math.min(index + 16, lowerHex.length()));
+  }
+
+  private static Long lowerHexToUnsignedLong(String lowerHex, int index, int endIndex) {
     long result = 0;
-    for (int endIndex = Math.min(index + 16, lowerHex.length()); index < endIndex; index++) {
+    for (; index < endIndex; index++) {
       char c = lowerHex.charAt(index);
       result <<= 4;
       if (c >= '0' && c <= '9') {
@@ -24,10 +24,11 @@ import io.jaegertracing.spi.Codec;
 import io.opentracing.propagation.TextMap;
 
 import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -75,17 +76,67 @@ public class TextMapCodec implements Codec<TextMap> {
       throw new EmptyTracerStateStringException();
     }
 
-    String[] parts = value.split(":");
-    if (parts.length != 4) {
+    // {trace-id}:{span-id}:{parent-span-id}:{flags} in hex, parsed in a single pass without allocating
+    long traceIdHigh = 0;
+    long traceIdLow = 0;
+    long spanId = 0;
+    long parentId = 0;
+    int field = 0;
+    int digits = 0;
+    long current = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ':') {
+        if (digits == 0) {
+          throw new MalformedTracerStateStringException(value);
+        }
+        switch (field) {
+          case 0:
+            traceIdLow = current;
+            break;
+          case 1:
+            spanId = current;
+            break;
+          case 2:
+            parentId = current;
+            break;
+          default:
+            throw new MalformedTracerStateStringException(value);
+        }
+        field++;
+        digits = 0;
+        current = 0;
+        continue;
+      }
+
+      int digit = hexDigit(c);
+      // a 128-bit trace ID has up to 32 digits, everything else fits in 16
+      if (digit < 0 || digits == (field == 0 ? 32 : 16)) {
+        throw new MalformedTracerStateStringException(value);
+      }
+      if (digits >= 16) {
+        // the digits beyond the low 64 bits of the trace ID shift into its high 64 bits
+        traceIdHigh = (traceIdHigh << 4) | (current >>> 60);
+      }
+      current = (current << 4) | digit;
+      digits++;
+    }
+    if (field != 3 || digits == 0) {
       throw new MalformedTracerStateStringException(value);
     }
 
-    // TODO(isaachier): When we drop Java 1.6 support, use Long.parseUnsignedLong instead of using BigInteger.
-    return new JaegerSpanContext(
-        new BigInteger(parts[0], 16).longValue(),
-        new BigInteger(parts[1], 16).longValue(),
-        new BigInteger(parts[2], 16).longValue(),
-        new BigInteger(parts[3], 16).byteValue());
+    return new JaegerSpanContext(traceIdHigh, traceIdLow, spanId, parentId, (byte) current);
+  }
+
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    } else if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    } else if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    return -1;
   }
 
   /**
@@ -95,8 +146,18 @@ public class TextMapCodec implements Codec<TextMap> {
    */
   public static String contextAsString(JaegerSpanContext context) {
     int intFlag = context.getFlags() & 0xFF;
-    return new StringBuilder()
-        .append(Long.toHexString(context.getTraceId())).append(":")
+    StringBuilder builder = new StringBuilder();
+    if (context.getTraceIdHigh() != 0) {
+      builder.append(Long.toHexString(context.getTraceIdHigh()));
+      String traceIdLow = Long.toHexString(context.getTraceIdLow());
+      for (int i = traceIdLow.length(); i < 16; i++) {
+        builder.append('0');
+      }
+      builder.append(traceIdLow);
+    } else {
+      builder.append(Long.toHexString(context.getTraceIdLow()));
+    }
+    return builder.append(":")
         .append(Long.toHexString(context.getSpanId())).append(":")
         .append(Long.toHexString(context.getParentId())).append(":")
         .append(Integer.toHexString(intFlag))
@@ -105,10 +166,33 @@ public class TextMapCodec implements Codec<TextMap> {
 
   @Override
   public void inject(JaegerSpanContext spanContext, TextMap carrier) {
-    carrier.put(contextKey, encodedValue(contextAsString(spanContext)));
+    EncodedHeaders headers = encodedHeaders(spanContext);
+    carrier.put(contextKey, headers.contextValue);
+    for (int i = 0; i < headers.baggageKeys.length; i++) {
+      carrier.put(headers.baggageKeys[i], headers.baggageValues[i]);
+    }
+  }
+
+  /**
+   * @return the headers for the context, encoded the last time this codec injected it if possible
+   */
+  private EncodedHeaders encodedHeaders(JaegerSpanContext spanContext) {
+    EncodedHeaders cached = spanContext.getEncodedHeaders();
+    if (cached != null && cached.codec == this) {
+      return cached;
+    }
+
+    String contextValue = encodedValue(contextAsString(spanContext));
+    List<String> baggageKeys = new ArrayList<String>();
+    List<String> baggageValues = new ArrayList<String>();
     for (Map.Entry<String, String> entry : spanContext.baggageItems()) {
-      carrier.put(keys.prefixedKey(entry.getKey(), baggagePrefix), encodedValue(entry.getValue()));
+      baggageKeys.add(keys.prefixedKey(entry.getKey(), baggagePrefix));
+      baggageValues.add(encodedValue(entry.getValue()));
     }
+    EncodedHeaders headers = new EncodedHeaders(this, contextValue,
+        baggageKeys.toArray(new String[baggageKeys.size()]), baggageValues.toArray(new String[baggageValues.size()]));
+    spanContext.setEncodedHeaders(headers);
+    return headers;
   }
 
   @Override
@@ -117,18 +201,19 @@ public class TextMapCodec implements Codec<TextMap> {
     Map<String, String> baggage = null;
     String debugId = null;
     for (Map.Entry<String, String> entry : carrier) {
-      // TODO there should be no lower-case here
-      String key = entry.getKey().toLowerCase(Locale.ROOT);
-      if (key.equals(contextKey)) {
+      // header names are case-insensitive, compared without lower-casing every key of the carrier
+      String key = entry.getKey();
+      if (key.equalsIgnoreCase(contextKey)) {
         context = contextFromString(decodedValue(entry.getValue()));
-      } else if (key.equals(Constants.DEBUG_ID_HEADER_KEY)) {
+      } else if (key.equalsIgnoreCase(Constants.DEBUG_ID_HEADER_KEY)) {
         debugId = decodedValue(entry.getValue());
-      } else if (key.startsWith(baggagePrefix)) {
+      } else if (key.regionMatches(true, 0, baggagePrefix, 0, baggagePrefix.length())) {
         if (baggage == null) {
           baggage = new HashMap<String, String>();
         }
-        baggage.put(keys.unprefixedKey(key, baggagePrefix), decodedValue(entry.getValue()));
-      } else if (key.equals(Constants.BAGGAGE_HEADER_KEY)) {
+        String baggageKey = keys.unprefixedKey(key, baggagePrefix).toLowerCase(Locale.ROOT);
+        baggage.put(baggageKey, decodedValue(entry.getValue()));
+      } else if (key.equalsIgnoreCase(Constants.BAGGAGE_HEADER_KEY)) {
         baggage = parseBaggageHeader(decodedValue(entry.getValue()), baggage);
       }
     }
@@ -136,7 +221,8 @@ public class TextMapCodec implements Codec<TextMap> {
       return context;
     }
     return objectFactory.createSpanContext(
-      context == null ? 0 : context.getTraceId(),
+      context == null ? 0 : context.getTraceIdHigh(),
+      context == null ? 0 : context.getTraceIdLow(),
       context == null ? 0 : context.getSpanId(),
       context == null ? 0 : context.getParentId(),
       context == null ? (byte)0 : context.getFlags(),
@@ -189,7 +275,8 @@ public class TextMapCodec implements Codec<TextMap> {
   }
 
   private String decodedValue(String value) {
-    if (!urlEncoding) {
+    if (!urlEncoding || (value.indexOf('%') < 0 && value.indexOf('+') < 0)) {
+      // URLDecoder allocates a buffer even when there is nothing to decode
       return value;
     }
     try {
@@ -200,6 +287,24 @@ public class TextMapCodec implements Codec<TextMap> {
     }
   }
 
+  /**
+   * The header values which a codec injects for a span context, cached in the context. Opaque outside of this
+   * class, which alone can create them.
+   */
+  public static final class EncodedHeaders {
+    private final TextMapCodec codec;
+    private final String contextValue;
+    private final String[] baggageKeys;
+    private final String[] baggageValues;
+
+    private EncodedHeaders(TextMapCodec codec, String contextValue, String[] baggageKeys, String[] baggageValues) {
+      this.codec = codec;
+      this.contextValue = contextValue;
+      this.baggageKeys = baggageKeys;
+      this.baggageValues = baggageValues;
+    }
+  }
+
   /**
    * Returns a builder for TextMapCodec.
    *
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.propagation;
+
+import io.jaegertracing.internal.JaegerObjectFactory;
+import io.jaegertracing.internal.JaegerSpanContext;
+import io.jaegertracing.spi.Codec;
+import io.opentracing.propagation.TextMap;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Propagates the trace context in the {@code traceparent} and {@code tracestate} headers of the
+ * <a href="https://www.w3.org/TR/trace-context/">W3C Trace Context</a> format, with 128-bit trace IDs.
+ * The {@code tracestate} header is carried along unchanged, Jaeger doesn't add an entry of its own.
+ *
+ * <p>The {@code traceparent} header has a fixed layout, which is parsed at fixed offsets without allocating.
+ * The format has no baggage and no debug flag, a debug span is propagated as sampled.</p>
+ */
+public class TraceContextCodec implements Codec<TextMap> {
+  static final String TRACE_PARENT = "traceparent";
+  static final String TRACE_STATE = "tracestate";
+
+  // {version}-{trace-id}-{parent-id}-{trace-flags}, e.g. 00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01
+  private static final char DELIMITER = '-';
+  private static final int VERSION_OFFSET = 0;
+  private static final int TRACE_ID_OFFSET = VERSION_OFFSET + 2 + 1;
+  private static final int PARENT_ID_OFFSET = TRACE_ID_OFFSET + 32 + 1;
+  private static final int FLAGS_OFFSET = PARENT_ID_OFFSET + 16 + 1;
+  private static final int TRACE_PARENT_LENGTH = FLAGS_OFFSET + 2;
+  private static final byte FLAG_SAMPLED = 1;
+
+  private final JaegerObjectFactory objectFactory;
+
+  private TraceContextCodec(Builder builder) {
+    this.objectFactory = builder.objectFactory;
+  }
+
+  @Override
+  public void inject(JaegerSpanContext spanContext, TextMap carrier) {
+    char[] traceParent = new char[TRACE_PARENT_LENGTH];
+    traceParent[VERSION_OFFSET] = '0';
+    traceParent[VERSION_OFFSET + 1] = '0';
+    traceParent[TRACE_ID_OFFSET - 1] = DELIMITER;
+    HexCodec.writeHexLong(traceParent, TRACE_ID_OFFSET, spanContext.getTraceIdHigh());
+    HexCodec.writeHexLong(traceParent, TRACE_ID_OFFSET + 16, spanContext.getTraceIdLow());
+    traceParent[PARENT_ID_OFFSET - 1] = DELIMITER;
+    HexCodec.writeHexLong(traceParent, PARENT_ID_OFFSET, spanContext.getSpanId());
+    traceParent[FLAGS_OFFSET - 1] = DELIMITER;
+    HexCodec.writeHexByte(traceParent, FLAGS_OFFSET, spanContext.isSampled() ? FLAG_SAMPLED : 0);
+    carrier.put(TRACE_PARENT, new String(traceParent));
+
+    String traceState = spanContext.getTraceState();
+    if (traceState != null && traceState.length() > 0) {
+      carrier.put(TRACE_STATE, traceState);
+    }
+  }
+
+  @Override
+  public JaegerSpanContext extract(TextMap carrier) {
+    String traceParent = null;
+    String traceState = null;
+    for (Map.Entry<String, String> entry : carrier) {
+      if (entry.getKey().equalsIgnoreCase(TRACE_PARENT)) {
+        traceParent = entry.getValue();
+      } else if (entry.getKey().equalsIgnoreCase(TRACE_STATE)) {
+        // a header split over several fields is joined again
+        traceState = traceState == null ? entry.getValue() : traceState + "," + entry.getValue();
+      }
+    }
+    if (traceParent == null || !isValid(traceParent)) {
+      return null;
+    }
+
+    long traceIdHigh = parseHex(traceParent, TRACE_ID_OFFSET, 16);
+    long traceIdLow = parseHex(traceParent, TRACE_ID_OFFSET + 16, 16);
+    long spanId = parseHex(traceParent, PARENT_ID_OFFSET, 16);
+    if ((traceIdHigh == 0 && traceIdLow == 0) || spanId == 0) {
+      return null;
+    }
+    byte flags = (parseHex(traceParent, FLAGS_OFFSET, 2) & FLAG_SAMPLED) != 0 ? FLAG_SAMPLED : 0;
+
+    return objectFactory.createSpanContext(
+        traceIdHigh,
+        traceIdLow,
+        spanId,
+        0, // the parent of the remote span isn't propagated
+        flags,
+        Collections.<String, String>emptyMap(),
+        null, // debugId
+        traceState);
+  }
+
+  /**
+   * Checks the delimiters and digits of the fields, which later versions of the format may follow with more.
+   */
+  private static boolean isValid(String traceParent) {
+    int length = traceParent.length();
+    if (length < TRACE_PARENT_LENGTH
+        || !isLowerHex(traceParent, VERSION_OFFSET, 2)
+        || !isLowerHex(traceParent, TRACE_ID_OFFSET, 32)
+        || !isLowerHex(traceParent, PARENT_ID_OFFSET, 16)
+        || !isLowerHex(traceParent, FLAGS_OFFSET, 2)
+        || traceParent.charAt(TRACE_ID_OFFSET - 1) != DELIMITER
+        || traceParent.charAt(PARENT_ID_OFFSET - 1) != DELIMITER
+        || traceParent.charAt(FLAGS_OFFSET - 1) != DELIMITER) {
+      return false;
+    }
+    boolean version00 = traceParent.charAt(VERSION_OFFSET) == '0' && traceParent.charAt(VERSION_OFFSET + 1) == '0';
+    boolean versionFf = traceParent.charAt(VERSION_OFFSET) == 'f' && traceParent.charAt(VERSION_OFFSET + 1) == 'f';
+    if (versionFf) {
+      return false;
+    }
+    if (length == TRACE_PARENT_LENGTH) {
+      return true;
+    }
+    return !version00 && traceParent.charAt(TRACE_PARENT_LENGTH) == DELIMITER;
+  }
+
+  private static boolean isLowerHex(String value, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      char c = value.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long parseHex(String value, int offset, int length) {
+    long result = 0;
+    for (int i = offset; i < offset + length; i++) {
+      char c = value.charAt(i);
+      result = (result << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "TraceContextCodec{}";
+  }
+
+  public static class Builder {
+    private JaegerObjectFactory objectFactory = new JaegerObjectFactory();
+
+    /**
+     * Specify JaegerSpanContext factory. Used for creating new span contexts. The default factory
+     * is an instance of {@link JaegerObjectFactory}.
+     */
+    public Builder withObjectFactory(JaegerObjectFactory objectFactory) {
+      this.objectFactory = objectFactory;
+      return this;
+    }
+
+    public TraceContextCodec build() {
+      return new TraceContextCodec(this);
+    }
+  }
+}
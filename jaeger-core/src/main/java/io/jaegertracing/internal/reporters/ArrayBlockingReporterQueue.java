@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.reporters;
+
+import io.jaegertracing.internal.JaegerSpan;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import lombok.ToString;
+
+/**
+ * {@link ReporterQueue} backed by an {@link ArrayBlockingQueue}. This is the default queue used by
+ * {@link RemoteReporter}.
+ */
+@ToString
+public class ArrayBlockingReporterQueue implements ReporterQueue {
+  @ToString.Exclude private final BlockingQueue<JaegerSpan> queue;
+  private final int capacity;
+
+  public ArrayBlockingReporterQueue(int capacity) {
+    this.queue = new ArrayBlockingQueue<JaegerSpan>(capacity);
+    this.capacity = capacity;
+  }
+
+  @Override
+  public boolean offer(JaegerSpan span) {
+    return queue.offer(span);
+  }
+
+  @Override
+  public JaegerSpan poll() {
+    return queue.poll();
+  }
+
+  @Override
+  public int drainTo(Collection<? super JaegerSpan> spans, int maxSpans) {
+    return queue.drainTo(spans, maxSpans);
+  }
+
+  @Override
+  public int size() {
+    return queue.size();
+  }
+}
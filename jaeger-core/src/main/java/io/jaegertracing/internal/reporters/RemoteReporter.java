@@ -16,16 +16,16 @@ package io.jaegertracing.internal.reporters;
 
 import io.jaegertracing.internal.JaegerSpan;
 import io.jaegertracing.internal.exceptions.SenderException;
+import io.jaegertracing.internal.metrics.Gauge;
 import io.jaegertracing.internal.metrics.InMemoryMetricsFactory;
 import io.jaegertracing.internal.metrics.Metrics;
 import io.jaegertracing.internal.senders.SenderResolver;
 import io.jaegertracing.spi.Reporter;
 import io.jaegertracing.spi.Sender;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
@@ -40,62 +40,52 @@ public class RemoteReporter implements Reporter {
   public static final int DEFAULT_FLUSH_INTERVAL_MS = 1000;
   public static final int DEFAULT_MAX_QUEUE_SIZE = 100;
 
+  /**
+   * Maximum number of spans the reporter thread takes off the queue before checking whether the
+   * sender is due to be flushed.
+   */
+  static final int MAX_BATCH_SIZE = 100;
+
   private final Sender sender;
-  private final int closeEnqueueTimeout;
 
-  @ToString.Exclude private final BlockingQueue<Command> commandQueue;
-  @ToString.Exclude private final Timer flushTimer;
+  @ToString.Exclude private final ReporterQueue queue;
   @ToString.Exclude private final Thread queueProcessorThread;
   @ToString.Exclude private final QueueProcessor queueProcessor;
   @ToString.Exclude private final Metrics metrics;
+  @ToString.Exclude private final Gauge queueLengthGauge;
 
-  private RemoteReporter(Sender sender, int flushInterval, int maxQueueSize, int closeEnqueueTimeout,
-      Metrics metrics) {
+  private RemoteReporter(Sender sender, int flushInterval, ReporterQueue queue, Metrics metrics,
+      Gauge queueLengthGauge) {
     this.sender = sender;
     this.metrics = metrics;
-    this.closeEnqueueTimeout = closeEnqueueTimeout;
-    commandQueue = new ArrayBlockingQueue<Command>(maxQueueSize);
+    this.queue = queue;
+    this.queueLengthGauge = queueLengthGauge;
 
-    // start a thread to append spans
-    queueProcessor = new QueueProcessor();
+    // start a thread to append and flush spans
+    queueProcessor = new QueueProcessor(TimeUnit.MILLISECONDS.toNanos(flushInterval));
     queueProcessorThread = new Thread(queueProcessor, "jaeger.RemoteReporter-QueueProcessor");
     queueProcessorThread.setDaemon(true);
     queueProcessorThread.start();
-
-    flushTimer = new Timer("jaeger.RemoteReporter-FlushTimer", true /* isDaemon */);
-    flushTimer.schedule(
-        new TimerTask() {
-          @Override
-          public void run() {
-            flush();
-          }
-        },
-        flushInterval,
-        flushInterval);
   }
 
   @Override
   public void report(JaegerSpan span) {
     // Its better to drop spans, than to block here
-    boolean added = commandQueue.offer(new AppendCommand(span));
+    boolean added = queue.offer(span);
 
-    if (!added) {
+    if (added) {
+      queueProcessor.wakeUp();
+    } else {
       metrics.reporterDropped.inc(1);
+      span.recycle();
     }
   }
 
   @Override
   public void close() {
     try {
-      // best-effort: if we can't add CloseCommand in this time then it probably will never happen
-      boolean added = commandQueue
-          .offer(new CloseCommand(), closeEnqueueTimeout, TimeUnit.MILLISECONDS);
-      if (added) {
-        queueProcessorThread.join(10000);
-      } else {
-        log.warn("Unable to cleanly close RemoteReporter, command queue is full - probably the"
-            + " sender is stuck");
-      }
+      queueProcessor.close();
+      queueProcessorThread.join(10000);
     } catch (InterruptedException e) {
       log.error("Interrupted", e);
     } finally {
@@ -105,84 +95,123 @@ public class RemoteReporter implements Reporter {
       } catch (SenderException e) {
         metrics.reporterFailure.inc(e.getDroppedSpanCount());
       }
-      flushTimer.cancel();
     }
   }
 
+  /**
+   * Asks the reporter thread to flush the sender as soon as it has appended the batch it is
+   * currently working on, without waiting for the flush interval to elapse.
+   */
   void flush() {
     // to reduce the number of updateGauge stats, we only emit queue length on flush
-    metrics.reporterQueueLength.update(commandQueue.size());
+    queueLengthGauge.update(queue.size());
 
-    // We can safely drop FlushCommand when the queue is full - sender should take care of flushing
-    // in such case
-    commandQueue.offer(new FlushCommand());
+    queueProcessor.requestFlush();
   }
 
   /*
-   * The code below implements the command pattern.  This pattern is useful for
-   * situations where multiple threads would need to synchronize on a resource,
-   * but are fine with executing sequentially.  The advantage is simplified code where
-   * tasks are put onto a blocking queue and processed sequentially by another thread.
+   * Spans are handed over to the processor thread through the queue, while flush and close
+   * requests are passed as flags next to it, so they can never be dropped because the queue is
+   * full. The processor drains up to MAX_BATCH_SIZE spans per iteration and flushes the sender
+   * whenever the flush interval has elapsed, checking the deadline after every batch. This bounds
+   * flush latency to the flush interval plus the time it takes to append one batch, even when the
+   * queue never runs empty. When there is nothing to do, the processor parks until the next flush
+   * deadline, and is unparked early by the next span or request.
    */
-  public interface Command {
-    void execute() throws SenderException;
-  }
-
-  class AppendCommand implements Command {
-    private final JaegerSpan span;
+  @ToString
+  class QueueProcessor implements Runnable {
+    private final long flushIntervalNanos;
+    private volatile boolean open = true;
+    @ToString.Exclude private volatile boolean flushRequested;
+    @ToString.Exclude private volatile boolean parked;
+    @ToString.Exclude private final List<JaegerSpan> batch = new ArrayList<JaegerSpan>(MAX_BATCH_SIZE);
 
-    public AppendCommand(JaegerSpan span) {
-      this.span = span;
+    QueueProcessor(long flushIntervalNanos) {
+      this.flushIntervalNanos = flushIntervalNanos;
     }
 
     @Override
-    public void execute() throws SenderException {
-      sender.append(span);
-    }
-  }
+    public void run() {
+      long lastFlush = System.nanoTime();
+      while (open) {
+        int drained = appendBatch(MAX_BATCH_SIZE);
 
-  class CloseCommand implements Command {
-    @Override
-    public void execute() throws SenderException {
-      queueProcessor.close();
+        long now = System.nanoTime();
+        long sinceLastFlush = now - lastFlush;
+        if (flushRequested || sinceLastFlush >= flushIntervalNanos) {
+          flushRequested = false;
+          if (sinceLastFlush >= flushIntervalNanos) {
+            queueLengthGauge.update(queue.size());
+          }
+          flushSender();
+          lastFlush = now;
+        } else if (drained == 0) {
+          park(flushIntervalNanos - sinceLastFlush);
+        }
+      }
+
+      // append whatever was queued before close was requested, and flush it
+      int remaining = queue.size();
+      while (remaining > 0) {
+        int drained = appendBatch(Math.min(remaining, MAX_BATCH_SIZE));
+        if (drained == 0) {
+          break;
+        }
+        remaining -= drained;
+      }
+      flushSender();
     }
-  }
 
-  class FlushCommand implements Command {
-    @Override
-    public void execute() throws SenderException {
-      int n = sender.flush();
-      metrics.reporterSuccess.inc(n);
+    private int appendBatch(int maxSpans) {
+      int drained = queue.drainTo(batch, maxSpans);
+      for (int i = 0; i < drained; i++) {
+        JaegerSpan span = batch.get(i);
+        try {
+          sender.append(span);
+        } catch (SenderException e) {
+          metrics.reporterFailure.inc(e.getDroppedSpanCount());
+        }
+        // the sender has encoded the span, see RecyclingJaegerObjectFactory
+        span.recycle();
+      }
+      batch.clear();
+      return drained;
     }
-  }
 
-  /*
-   * This class creates a Runnable that is responsible for appending spans using a sender.
-   */
-  @ToString
-  class QueueProcessor implements Runnable {
-    private boolean open = true;
+    private void flushSender() {
+      try {
+        int n = sender.flush();
+        metrics.reporterSuccess.inc(n);
+      } catch (SenderException e) {
+        metrics.reporterFailure.inc(e.getDroppedSpanCount());
+      }
+    }
 
-    @Override
-    public void run() {
-      while (open) {
-        try {
-          RemoteReporter.Command command = commandQueue.take();
+    private void park(long nanos) {
+      parked = true;
+      // re-check after announcing that we are about to park, so that a span or request which
+      // arrived in between is not missed: its sender either sees parked == true and unparks us,
+      // or we see its work here
+      if (open && !flushRequested && queue.size() == 0) {
+        LockSupport.parkNanos(this, nanos);
+      }
+      parked = false;
+    }
 
-          try {
-            command.execute();
-          } catch (SenderException e) {
-            metrics.reporterFailure.inc(e.getDroppedSpanCount());
-          }
-        } catch (InterruptedException e) {
-          log.error("QueueProcessor error:", e);
-          // Do nothing, and try again on next span.
-        }
+    void wakeUp() {
+      if (parked) {
+        LockSupport.unpark(queueProcessorThread);
       }
     }
 
+    void requestFlush() {
+      flushRequested = true;
+      wakeUp();
+    }
+
     public void close() {
       open = false;
+      LockSupport.unpark(queueProcessorThread);
     }
   }
 
@@ -190,8 +219,11 @@ public class RemoteReporter implements Reporter {
     private Sender sender;
     private int flushInterval = DEFAULT_FLUSH_INTERVAL_MS;
     private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+    private long maxQueueSizeBytes;
     private int closeEnqueTimeout = DEFAULT_CLOSE_ENQUEUE_TIMEOUT_MILLIS;
+    private ReporterQueue queue;
     private Metrics metrics;
+    private Gauge queueLengthGauge;
 
     public Builder withFlushInterval(int flushInterval) {
       this.flushInterval = flushInterval;
@@ -203,6 +235,19 @@ public class RemoteReporter implements Reporter {
       return this;
     }
 
+    /**
+     * Additionally bounds the queue by the estimated size of the queued spans, see
+     * {@link SpanSizeEstimator}. Spans which would exceed the budget are dropped. Has no effect
+     * when a queue is set with {@link #withQueue(ReporterQueue)}.
+     *
+     * @param maxQueueSizeBytes the maximum estimated size in bytes of all queued spans, or 0 for no
+     *     limit
+     */
+    public Builder withMaxQueueSizeBytes(long maxQueueSizeBytes) {
+      this.maxQueueSizeBytes = maxQueueSizeBytes;
+      return this;
+    }
+
     public Builder withMetrics(Metrics metrics) {
       this.metrics = metrics;
       return this;
@@ -213,6 +258,32 @@ public class RemoteReporter implements Reporter {
       return this;
     }
 
+    /**
+     * Sets the queue which buffers spans until the reporter thread appends them to the sender, for
+     * example a {@link RingBufferReporterQueue}. When set, {@link #withMaxQueueSize(int)} and
+     * {@link #withMaxQueueSizeBytes(long)} have no effect. Defaults to an
+     * {@link ArrayBlockingReporterQueue} of {@link #withMaxQueueSize(int)} spans, or to a
+     * {@link RingBufferReporterQueue} when bounded in bytes.
+     */
+    public Builder withQueue(ReporterQueue queue) {
+      this.queue = queue;
+      return this;
+    }
+
+    /**
+     * Overrides the gauge the queue length is reported to, which defaults to
+     * {@link Metrics#reporterQueueLength}. Used by {@link ShardedRemoteReporter} to aggregate the
+     * queue lengths of its shards.
+     */
+    Builder withQueueLengthGauge(Gauge queueLengthGauge) {
+      this.queueLengthGauge = queueLengthGauge;
+      return this;
+    }
+
+    /**
+     * @deprecated close requests are no longer put on the span queue, so they can not time out
+     */
+    @Deprecated
     public Builder withCloseEnqueueTimeout(int closeEnqueueTimeoutMs) {
       this.closeEnqueTimeout = closeEnqueueTimeoutMs;
       return this;
@@ -225,7 +296,17 @@ public class RemoteReporter implements Reporter {
       if (metrics == null) {
         metrics = new Metrics(new InMemoryMetricsFactory());
       }
-      return new RemoteReporter(sender, flushInterval, maxQueueSize, closeEnqueTimeout, metrics);
+      if (queue == null) {
+        if (maxQueueSizeBytes > 0) {
+          queue = new RingBufferReporterQueue(maxQueueSize, maxQueueSizeBytes);
+        } else {
+          queue = new ArrayBlockingReporterQueue(maxQueueSize);
+        }
+      }
+      if (queueLengthGauge == null) {
+        queueLengthGauge = metrics.reporterQueueLength;
+      }
+      return new RemoteReporter(sender, flushInterval, queue, metrics, queueLengthGauge);
     }
   }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.reporters;
+
+import io.jaegertracing.internal.JaegerSpan;
+import java.util.Collection;
+
+/**
+ * Holds finished spans between {@link RemoteReporter#report(JaegerSpan)} and the reporter thread
+ * which appends them to the {@link io.jaegertracing.spi.Sender}.
+ *
+ * <p>Any number of threads may call {@link #offer(JaegerSpan)} concurrently, but {@link #poll()} and
+ * {@link #drainTo(Collection, int)} are only ever called from the single reporter thread.</p>
+ */
+public interface ReporterQueue {
+  /**
+   * Adds a span to the tail of the queue without blocking.
+   *
+   * @param span the span to add
+   * @return false if the queue is full and the span was not added
+   */
+  boolean offer(JaegerSpan span);
+
+  /**
+   * @return the span at the head of the queue, or null if the queue is empty
+   */
+  JaegerSpan poll();
+
+  /**
+   * Removes up to {@code maxSpans} spans from the head of the queue and adds them to the given
+   * collection, in queue order.
+   *
+   * @param spans the collection to add the spans to
+   * @param maxSpans the maximum number of spans to remove
+   * @return the number of spans removed
+   */
+  int drainTo(Collection<? super JaegerSpan> spans, int maxSpans);
+
+  /**
+   * @return the number of spans currently in the queue, possibly only an estimate
+   */
+  int size();
+}
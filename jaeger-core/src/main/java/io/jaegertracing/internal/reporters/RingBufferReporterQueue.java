@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.reporters;
+
+import io.jaegertracing.internal.JaegerSpan;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.ToString;
+
+/**
+ * Lock-free, bounded, multi-producer single-consumer {@link ReporterQueue}.
+ *
+ * <p>All slots are allocated up front, so {@link #offer(JaegerSpan)} never allocates and never takes
+ * a lock: producers claim a slot with a single CAS on the tail sequence, and give up immediately
+ * when the queue is full. Each slot carries its own sequence number which tells producers whether
+ * the consumer has released the slot yet, and tells the consumer whether the producer has finished
+ * publishing the span into it.</p>
+ *
+ * <p>Optionally the queue is also bounded by a memory budget: the size of each span is estimated
+ * with {@link SpanSizeEstimator} when it is offered, and the span is rejected when the estimated
+ * size of all queued spans would exceed the budget. This keeps the heap used by the queue
+ * predictable when spans grow large, e.g. when many exceptions are logged.</p>
+ *
+ * <p>{@link #poll()} and {@link #drainTo(Collection, int)} must only be called from a single
+ * thread, which is the case for the reporter thread of {@link RemoteReporter}.</p>
+ */
+@ToString
+public class RingBufferReporterQueue implements ReporterQueue {
+  private final int capacity;
+  private final long maxBytes;
+
+  @ToString.Exclude private final AtomicReferenceArray<JaegerSpan> spans;
+  @ToString.Exclude private final AtomicLongArray sequences;
+  // estimated size of the span in each slot, null when the queue is not bounded in bytes
+  @ToString.Exclude private final AtomicLongArray spanBytes;
+  @ToString.Exclude private final AtomicLong queuedBytes = new AtomicLong();
+  @ToString.Exclude private final AtomicLong tail = new AtomicLong();
+  // only written by the consumer thread; volatile so that size() can be called from any thread
+  @ToString.Exclude private volatile long head;
+
+  public RingBufferReporterQueue(int capacity) {
+    this(capacity, 0);
+  }
+
+  /**
+   * @param capacity the maximum number of queued spans
+   * @param maxBytes the maximum estimated size in bytes of all queued spans, or 0 for no limit
+   */
+  public RingBufferReporterQueue(int capacity, long maxBytes) {
+    if (capacity < 2) {
+      // a single slot cannot tell "published" apart from "free for the next lap"
+      throw new IllegalArgumentException("Capacity must be at least 2");
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Maximum size in bytes must not be negative");
+    }
+    this.capacity = capacity;
+    this.maxBytes = maxBytes;
+    this.spanBytes = maxBytes > 0 ? new AtomicLongArray(capacity) : null;
+    this.spans = new AtomicReferenceArray<JaegerSpan>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  @Override
+  public boolean offer(JaegerSpan span) {
+    long bytes = 0;
+    if (spanBytes != null) {
+      bytes = SpanSizeEstimator.estimate(span);
+      if (queuedBytes.addAndGet(bytes) > maxBytes) {
+        queuedBytes.addAndGet(-bytes);
+        return false;
+      }
+    }
+
+    long position = tail.get();
+    while (true) {
+      int index = index(position);
+      long available = sequences.get(index) - position;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          spans.lazySet(index, span);
+          if (spanBytes != null) {
+            spanBytes.lazySet(index, bytes);
+          }
+          // publishes the span to the consumer
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (available < 0) {
+        // the consumer has not yet released this slot, i.e. the queue is full
+        if (spanBytes != null) {
+          queuedBytes.addAndGet(-bytes);
+        }
+        return false;
+      } else {
+        // another producer claimed this position first
+        position = tail.get();
+      }
+    }
+  }
+
+  @Override
+  public JaegerSpan poll() {
+    long position = head;
+    int index = index(position);
+    if (sequences.get(index) != position + 1) {
+      // empty, or the producer which claimed this slot has not yet published its span
+      return null;
+    }
+    JaegerSpan span = spans.get(index);
+    spans.lazySet(index, null);
+    if (spanBytes != null) {
+      queuedBytes.addAndGet(-spanBytes.get(index));
+    }
+    // releases the slot to producers for the next lap around the ring
+    sequences.set(index, position + capacity);
+    head = position + 1;
+    return span;
+  }
+
+  @Override
+  public int drainTo(Collection<? super JaegerSpan> spans, int maxSpans) {
+    int drained = 0;
+    while (drained < maxSpans) {
+      JaegerSpan span = poll();
+      if (span == null) {
+        break;
+      }
+      spans.add(span);
+      drained++;
+    }
+    return drained;
+  }
+
+  @Override
+  public int size() {
+    long size = tail.get() - head;
+    if (size < 0) {
+      return 0;
+    }
+    return (int) Math.min(size, capacity);
+  }
+
+  /**
+   * @return the estimated size in bytes of the queued spans, always 0 when the queue is not
+   *     bounded in bytes
+   */
+  public long sizeInBytes() {
+    return queuedBytes.get();
+  }
+
+  private int index(long position) {
+    return (int) (position % capacity);
+  }
+}
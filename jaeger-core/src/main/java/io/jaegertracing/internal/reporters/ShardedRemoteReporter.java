@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.reporters;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.metrics.Gauge;
+import io.jaegertracing.internal.metrics.InMemoryMetricsFactory;
+import io.jaegertracing.internal.metrics.Metrics;
+import io.jaegertracing.internal.senders.SenderResolver;
+import io.jaegertracing.spi.Reporter;
+import io.jaegertracing.spi.Sender;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.ToString;
+
+/**
+ * ShardedRemoteReporter spreads spans over several {@link RemoteReporter}s, each with its own queue,
+ * reporter thread and {@link Sender}. This is useful on hosts with many cores, where a single
+ * reporter thread can't keep up with converting and sending all spans.
+ *
+ * <p>Spans are partitioned by trace ID, so all spans of a trace created by this tracer end up in the
+ * same shard. All shards report to the same {@link Metrics}, and the queue length gauge reports the
+ * sum of the queue lengths of all shards.</p>
+ */
+@ToString
+public class ShardedRemoteReporter implements Reporter {
+  public static final int DEFAULT_SHARDS = 2;
+
+  private final RemoteReporter[] shards;
+
+  private ShardedRemoteReporter(RemoteReporter[] shards) {
+    this.shards = shards;
+  }
+
+  @Override
+  public void report(JaegerSpan span) {
+    shards[shardIndex(span.context().getTraceId(), shards.length)].report(span);
+  }
+
+  @Override
+  public void close() {
+    for (RemoteReporter shard : shards) {
+      shard.close();
+    }
+  }
+
+  List<RemoteReporter> getShards() {
+    return Arrays.asList(shards);
+  }
+
+  static int shardIndex(long traceId, int shardCount) {
+    // trace IDs are random, folding the upper half in is enough to spread them evenly
+    int hash = (int) (traceId ^ (traceId >>> 32));
+    return (hash & Integer.MAX_VALUE) % shardCount;
+  }
+
+  /**
+   * Sums up the queue lengths reported by each shard.
+   */
+  private static class QueueLengthAggregator {
+    private final AtomicLongArray queueLengths;
+    private final Gauge gauge;
+
+    QueueLengthAggregator(int shardCount, Gauge gauge) {
+      this.queueLengths = new AtomicLongArray(shardCount);
+      this.gauge = gauge;
+    }
+
+    Gauge shardGauge(final int shard) {
+      return new Gauge() {
+        @Override
+        public void update(long amount) {
+          queueLengths.set(shard, amount);
+          long total = 0;
+          for (int i = 0; i < queueLengths.length(); i++) {
+            total += queueLengths.get(i);
+          }
+          gauge.update(total);
+        }
+      };
+    }
+  }
+
+  public static class Builder {
+    private final List<Sender> senders = new ArrayList<Sender>();
+    private int shardCount = DEFAULT_SHARDS;
+    private int flushInterval = RemoteReporter.DEFAULT_FLUSH_INTERVAL_MS;
+    private int maxQueueSize = RemoteReporter.DEFAULT_MAX_QUEUE_SIZE;
+    private long maxQueueSizeBytes;
+    private Metrics metrics;
+
+    /**
+     * Sets the number of shards. Has no effect when senders are given with
+     * {@link #withSenders(List)}. Defaults to {@value ShardedRemoteReporter#DEFAULT_SHARDS}.
+     */
+    public Builder withShards(int shardCount) {
+      this.shardCount = shardCount;
+      return this;
+    }
+
+    /**
+     * Uses one shard per sender. Senders are not thread-safe, so each one must be a distinct
+     * instance. When not set, a sender is resolved with {@link SenderResolver#resolve()} for each
+     * shard.
+     */
+    public Builder withSenders(List<Sender> senders) {
+      this.senders.clear();
+      this.senders.addAll(senders);
+      return this;
+    }
+
+    public Builder withFlushInterval(int flushInterval) {
+      this.flushInterval = flushInterval;
+      return this;
+    }
+
+    /**
+     * @param maxQueueSize the maximum number of spans queued in each shard
+     */
+    public Builder withMaxQueueSize(int maxQueueSize) {
+      this.maxQueueSize = maxQueueSize;
+      return this;
+    }
+
+    /**
+     * @param maxQueueSizeBytes the maximum estimated size in bytes of the spans queued in each
+     *     shard, or 0 for no limit
+     * @see RemoteReporter.Builder#withMaxQueueSizeBytes(long)
+     */
+    public Builder withMaxQueueSizeBytes(long maxQueueSizeBytes) {
+      this.maxQueueSizeBytes = maxQueueSizeBytes;
+      return this;
+    }
+
+    public Builder withMetrics(Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    public ShardedRemoteReporter build() {
+      if (senders.isEmpty()) {
+        if (shardCount < 1) {
+          throw new IllegalArgumentException("Number of shards must be greater than 0");
+        }
+        for (int i = 0; i < shardCount; i++) {
+          senders.add(SenderResolver.resolve());
+        }
+      }
+      if (metrics == null) {
+        metrics = new Metrics(new InMemoryMetricsFactory());
+      }
+
+      QueueLengthAggregator queueLengths =
+          new QueueLengthAggregator(senders.size(), metrics.reporterQueueLength);
+      RemoteReporter[] shards = new RemoteReporter[senders.size()];
+      for (int i = 0; i < shards.length; i++) {
+        shards[i] = new RemoteReporter.Builder()
+            .withSender(senders.get(i))
+            .withFlushInterval(flushInterval)
+            .withMaxQueueSize(maxQueueSize)
+            .withMaxQueueSizeBytes(maxQueueSizeBytes)
+            .withMetrics(metrics)
+            .withQueueLengthGauge(queueLengths.shardGauge(i))
+            .build();
+      }
+      return new ShardedRemoteReporter(shards);
+    }
+  }
+}
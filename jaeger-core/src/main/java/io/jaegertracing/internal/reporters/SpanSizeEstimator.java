@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.reporters;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerSpanVisitor;
+import io.jaegertracing.internal.LogData;
+import java.util.Map;
+
+/**
+ * Cheap estimate of the heap retained by a finished {@link JaegerSpan}, used to bound the memory of
+ * a {@link RingBufferReporterQueue} in bytes rather than in spans.
+ *
+ * <p>The estimate only looks at string lengths and collection sizes, it does not walk the object
+ * graph. It is dominated by what makes spans balloon in practice, i.e. many tags and logs, and
+ * exceptions, which are charged for their messages and stack frames whether they are logged as
+ * strings or as {@link Throwable}s. Other values are charged for their string form, which is how
+ * they are reported.</p>
+ */
+public final class SpanSizeEstimator {
+  // object headers and fields of the span, its context and its collections
+  static final int SPAN_OVERHEAD = 256;
+  // a map entry or list element, plus the boxed value when it's not a string
+  static final int ENTRY_OVERHEAD = 48;
+  static final int LOG_OVERHEAD = 64;
+  static final int REFERENCE_OVERHEAD = 32;
+  // header and fields of a String and its backing array
+  static final int STRING_OVERHEAD = 40;
+  // a StackTraceElement and its strings, which mostly are interned
+  static final int FRAME_OVERHEAD = 64;
+  // bounds the walk of the causes of an exception, which may contain cycles
+  private static final int MAX_CAUSES = 8;
+
+  // reused, as spans are estimated on the reporting hot path
+  private static final ThreadLocal<SizeVisitor> visitors =
+      new ThreadLocal<SizeVisitor>() {
+        @Override
+        protected SizeVisitor initialValue() {
+          return new SizeVisitor();
+        }
+      };
+
+  private SpanSizeEstimator() {
+  }
+
+  /**
+   * @return the estimated size of the span in bytes
+   */
+  public static long estimate(JaegerSpan span) {
+    SizeVisitor visitor = visitors.get();
+    visitor.size = 0;
+    span.accept(visitor);
+    return SPAN_OVERHEAD + estimate(span.getOperationName())
+        + (long) span.getReferences().size() * REFERENCE_OVERHEAD
+        + visitor.size;
+  }
+
+  private static long estimate(Map<String, ?> fields) {
+    if (fields == null) {
+      return 0;
+    }
+    long size = 0;
+    for (Map.Entry<String, ?> field : fields.entrySet()) {
+      size += ENTRY_OVERHEAD + estimate(field.getKey()) + estimateValue(field.getValue());
+    }
+    return size;
+  }
+
+  private static long estimateValue(Object value) {
+    if (value == null || value instanceof Number || value instanceof Boolean) {
+      // the boxed value is part of the entry overhead
+      return 0;
+    }
+    if (value instanceof String) {
+      return estimate((String) value);
+    }
+    if (value instanceof Throwable) {
+      return estimate((Throwable) value);
+    }
+    return estimate(String.valueOf(value));
+  }
+
+  private static long estimate(Throwable throwable) {
+    long size = 0;
+    Throwable cause = throwable;
+    for (int i = 0; cause != null && i < MAX_CAUSES; i++) {
+      size += estimate(cause.getMessage())
+          + (long) cause.getStackTrace().length * FRAME_OVERHEAD;
+      cause = cause.getCause();
+    }
+    return size;
+  }
+
+  private static long estimate(String value) {
+    if (value == null) {
+      return 0;
+    }
+    return STRING_OVERHEAD + 2L * value.length();
+  }
+
+  // adds up the tags and logs without copying them
+  private static class SizeVisitor implements JaegerSpanVisitor<RuntimeException> {
+    private long size;
+
+    @Override
+    public void visitTags(int count) {
+    }
+
+    @Override
+    public void visitTag(String key, Object value) {
+      size += ENTRY_OVERHEAD + estimate(key) + estimateValue(value);
+    }
+
+    @Override
+    public void visitTag(String key, boolean value) {
+      size += ENTRY_OVERHEAD + estimate(key);
+    }
+
+    @Override
+    public void visitTag(String key, long value) {
+      size += ENTRY_OVERHEAD + estimate(key);
+    }
+
+    @Override
+    public void visitTag(String key, double value) {
+      size += ENTRY_OVERHEAD + estimate(key);
+    }
+
+    @Override
+    public void visitLogs(int count) {
+    }
+
+    @Override
+    public void visitLog(LogData log) {
+      size += LOG_OVERHEAD + estimate(log.getMessage()) + estimate(log.getFields());
+    }
+  }
+}
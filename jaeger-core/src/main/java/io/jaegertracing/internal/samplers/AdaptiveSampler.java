@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.samplers;
+
+import io.jaegertracing.internal.clock.Clock;
+import io.jaegertracing.internal.clock.SystemClock;
+import io.jaegertracing.spi.Sampler;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Samples about {@link #getTargetTracesPerSecond()} traces per second for each operation, without
+ * waiting for a new strategy from the agent when traffic changes.
+ *
+ * Each operation counts its calls over windows of about one second, and smooths the resulting rates
+ * with an exponentially weighted moving average. At the end of each window, its sampling probability is
+ * set to the target divided by the measured rate. The calls are counted with a {@link StripedCounter},
+ * so that the threads sampling a busy operation don't contend on a single counter. The clock is only
+ * read every few calls of a busy operation, so a window may last a little longer than a second.
+ * A {@link GuaranteedThroughputSampler} makes the decisions, so at least {@link #getLowerBound()}
+ * traces per second are still sampled for each operation.
+ *
+ * Operations beyond {@code maxOperations} share a single rate and probability.
+ */
+@SuppressWarnings("EqualsHashCode")
+@ToString
+public class AdaptiveSampler implements Sampler {
+  public static final String TYPE = "adaptive";
+  public static final double DEFAULT_TARGET_TRACES_PER_SECOND = 1.0;
+  private static final int DEFAULT_MAX_OPERATIONS = 2000;
+  private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // weight of the last window in the average rate
+  private static final double SMOOTHING = 0.5;
+  // how often the end of the window is checked for a busy operation
+  private static final int CLOCK_CHECKS_PER_WINDOW = 64;
+  // the most calls of a thread between two checks, so that a window ends soon when the rate drops
+  private static final int MAX_CLOCK_CHECK_MASK = 63;
+
+  @Getter
+  private final double targetTracesPerSecond;
+  @Getter
+  private volatile double lowerBound;
+  private final int maxOperations;
+
+  @ToString.Exclude private final Clock clock;
+  @ToString.Exclude private final ConcurrentHashMap<String, OperationSampler> operationNameToSampler;
+  @ToString.Exclude private final AtomicInteger operationCount = new AtomicInteger();
+  @ToString.Exclude private final OperationSampler otherOperationsSampler;
+
+  public AdaptiveSampler(double targetTracesPerSecond, double lowerBound) {
+    this(targetTracesPerSecond, lowerBound, DEFAULT_MAX_OPERATIONS);
+  }
+
+  public AdaptiveSampler(double targetTracesPerSecond, double lowerBound, int maxOperations) {
+    this(targetTracesPerSecond, lowerBound, maxOperations, new SystemClock());
+  }
+
+  AdaptiveSampler(double targetTracesPerSecond, double lowerBound, int maxOperations, Clock clock) {
+    if (targetTracesPerSecond <= 0) {
+      throw new IllegalArgumentException("The target traces per second must be greater than 0");
+    }
+    this.targetTracesPerSecond = targetTracesPerSecond;
+    this.lowerBound = lowerBound;
+    this.maxOperations = maxOperations;
+    this.clock = clock;
+    this.operationNameToSampler = new ConcurrentHashMap<String, OperationSampler>();
+    this.otherOperationsSampler = new OperationSampler();
+  }
+
+  /**
+   * Updates the lower bound, which the operations pick up at the end of their current window.
+   * @param lowerBound the minimum number of traces per second sampled for each operation
+   * @return true iff the lower bound changed
+   */
+  public boolean update(double lowerBound) {
+    if (this.lowerBound == lowerBound) {
+      return false;
+    }
+    this.lowerBound = lowerBound;
+    return true;
+  }
+
+  @Override
+  public SamplingStatus sample(String operation, long id) {
+    OperationSampler sampler = operationNameToSampler.get(operation);
+    if (sampler == null) {
+      sampler = addSampler(operation);
+    }
+    return sampler.sample(operation, id);
+  }
+
+  private OperationSampler addSampler(String operation) {
+    if (operationCount.incrementAndGet() > maxOperations) {
+      operationCount.decrementAndGet();
+      return otherOperationsSampler;
+    }
+    OperationSampler sampler = new OperationSampler();
+    OperationSampler existing = operationNameToSampler.putIfAbsent(operation, sampler);
+    if (existing != null) {
+      operationCount.decrementAndGet();
+      return existing;
+    }
+    return sampler;
+  }
+
+  /**
+   * @return the current sampling probability of the operation, for tests
+   */
+  double getSamplingRate(String operation) {
+    OperationSampler sampler = operationNameToSampler.get(operation);
+    return (sampler == null ? otherOperationsSampler : sampler).sampler.getSamplingRate();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (other instanceof AdaptiveSampler) {
+      AdaptiveSampler otherSampler = (AdaptiveSampler) other;
+      return this.targetTracesPerSecond == otherSampler.targetTracesPerSecond
+          && this.lowerBound == otherSampler.lowerBound
+          && this.maxOperations == otherSampler.maxOperations;
+    }
+    return false;
+  }
+
+  @Override
+  public void close() {
+    otherOperationsSampler.sampler.close();
+    for (OperationSampler sampler : operationNameToSampler.values()) {
+      sampler.sampler.close();
+    }
+  }
+
+  private final class OperationSampler {
+    final GuaranteedThroughputSampler sampler;
+    private final StripedCounter calls = new StripedCounter();
+    private final AtomicLong windowStart;
+    // only written by the thread that ends a window
+    private volatile double callsPerSecond = -1;
+    // the clock is read when the count of the stripe of the calling thread has these bits cleared
+    private volatile int clockCheckMask;
+
+    OperationSampler() {
+      // the rate is unknown until the end of the first window, so start conservatively
+      this.sampler = new GuaranteedThroughputSampler(ProbabilisticSampler.DEFAULT_SAMPLING_PROBABILITY, lowerBound);
+      this.windowStart = new AtomicLong(clock.currentNanoTicks());
+    }
+
+    SamplingStatus sample(String operation, long id) {
+      if ((calls.increment() & clockCheckMask) == 0) {
+        long start = windowStart.get();
+        long now = clock.currentNanoTicks();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+          adjust(calls.sumAndReset(), now - start);
+        }
+      }
+      return sampler.sample(operation, id);
+    }
+
+    private void adjust(long windowCalls, long windowNanos) {
+      double rate = windowCalls * (double) WINDOW_NANOS / windowNanos;
+      if (callsPerSecond >= 0) {
+        rate = SMOOTHING * rate + (1 - SMOOTHING) * callsPerSecond;
+      }
+      callsPerSecond = rate;
+      int callsPerCheck = (int) Math.min(rate / CLOCK_CHECKS_PER_WINDOW, MAX_CLOCK_CHECK_MASK + 1);
+      clockCheckMask = callsPerCheck <= 1 ? 0 : Integer.highestOneBit(callsPerCheck) - 1;
+      double samplingRate = rate <= targetTracesPerSecond ? 1.0 : targetTracesPerSecond / rate;
+      sampler.update(samplingRate, lowerBound);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.samplers;
+
+/**
+ * Estimates how often each operation is sampled with a count-min sketch: an operation increments
+ * four counters picked by hashing its name, and its frequency is the smallest of them. Counters
+ * saturate at {@value #MAX_FREQUENCY}, and are halved by {@link #age()}, so that operations that
+ * stopped being used are eventually forgotten.
+ *
+ * <p>Counters are updated without synchronization. Concurrent updates can be lost, which only makes
+ * the estimates less accurate.</p>
+ */
+final class FrequencySketch {
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+  private static final int COUNTERS_PER_OPERATION = 16;
+  private static final int MAX_TABLE_SIZE = 1 << 24;
+  static final int MAX_FREQUENCY = 15;
+
+  private final byte[] table;
+  private final int mask;
+
+  FrequencySketch(int maxOperations) {
+    int size = (int) Math.min(MAX_TABLE_SIZE, (long) COUNTERS_PER_OPERATION * Math.max(maxOperations, 1));
+    // rounded up to a power of two, so that indexes are computed with a mask
+    size = Integer.highestOneBit(size - 1) << 1;
+    this.table = new byte[size];
+    this.mask = size - 1;
+  }
+
+  void increment(String operation) {
+    int hash = spread(operation.hashCode());
+    for (int i = 0; i < SEEDS.length; i++) {
+      int index = indexOf(hash, i);
+      if (table[index] < MAX_FREQUENCY) {
+        table[index]++;
+      }
+    }
+  }
+
+  int frequency(String operation) {
+    int hash = spread(operation.hashCode());
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < SEEDS.length; i++) {
+      frequency = Math.min(frequency, table[indexOf(hash, i)]);
+    }
+    return frequency;
+  }
+
+  /**
+   * Halves all counters.
+   */
+  void age() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (byte) (table[i] >> 1);
+    }
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return (int) h & mask;
+  }
+
+  private static int spread(int hash) {
+    hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    return (hash >>> 16) ^ hash;
+  }
+}
@@ -14,12 +14,18 @@
 
 package io.jaegertracing.internal.samplers;
 
+import io.jaegertracing.internal.metrics.Metrics;
+import io.jaegertracing.internal.metrics.NoopMetricsFactory;
 import io.jaegertracing.internal.samplers.http.OperationSamplingParameters;
 import io.jaegertracing.internal.samplers.http.PerOperationSamplingParameters;
 import io.jaegertracing.spi.Sampler;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
@@ -28,26 +34,85 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * Computes {@link #sample(String, long)} using the name of the operation, and maintains a specific
  * {@link GuaranteedThroughputSampler} instance for each operation.
+ *
+ * Sampling a known operation doesn't lock, and only increments the usage counter of its sampler,
+ * which is striped across threads. The hits are added to {@link Metrics#samplerOperationHit} from
+ * these counters on every update, rather than on every sample. The samplers of new operations are
+ * added under a lock, at most {@code maxOperations} times, and once all slots are taken a new
+ * operation is only considered for eviction when the lock is free.
+ *
+ * A new operation then replaces the least frequently sampled of a few randomly picked operations,
+ * if the {@link FrequencySketch} of the unknown operations estimates that it's sampled more often.
+ * Operations seen only once are never admitted, so that a burst of unique operation names doesn't
+ * evict the real ones. The operations of the latest strategies are never evicted, and are admitted
+ * by {@link #update(OperationSamplingParameters)} in place of another operation if needed. Usage
+ * counts and estimates are halved on every update, so that old usage is eventually forgotten.
  */
 @Slf4j
 @EqualsAndHashCode
 @ToString
-@AllArgsConstructor(access = AccessLevel.PACKAGE)
 @Getter(AccessLevel.PACKAGE) //Visible for testing
 public class PerOperationSampler implements Sampler {
+  private static final int MIN_ADMISSION_FREQUENCY = 2;
+  private static final int EVICTION_SAMPLE_SIZE = 8;
+
   private final int maxOperations;
-  private final HashMap<String, GuaranteedThroughputSampler> operationNameToSampler;
-  private ProbabilisticSampler defaultSampler;
-  private double lowerBound;
+  private final ConcurrentHashMap<String, GuaranteedThroughputSampler> operationNameToSampler;
+  // the operations with a sampler, by slot, guarded by operationsLock
+  @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE)
+  private final String[] operations;
+  @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE)
+  private volatile int operationCount;
+  @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE)
+  private volatile Set<String> strategyOperations = Collections.emptySet();
+  @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE)
+  private final FrequencySketch sketch;
+  @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE)
+  private final ReentrantLock operationsLock = new ReentrantLock();
+  @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE)
+  private final Random random = new Random();
+  @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE)
+  private final Metrics metrics;
+  private volatile ProbabilisticSampler defaultSampler;
+  private volatile double lowerBound;
 
   public PerOperationSampler(int maxOperations, OperationSamplingParameters strategies) {
+    this(maxOperations, strategies, new Metrics(new NoopMetricsFactory()));
+  }
+
+  public PerOperationSampler(int maxOperations, OperationSamplingParameters strategies, Metrics metrics) {
     this(maxOperations,
-         new HashMap<String, GuaranteedThroughputSampler>(),
+         new ConcurrentHashMap<String, GuaranteedThroughputSampler>(),
          new ProbabilisticSampler(strategies.getDefaultSamplingProbability()),
-         strategies.getDefaultLowerBoundTracesPerSecond());
+         strategies.getDefaultLowerBoundTracesPerSecond(),
+         metrics);
     update(strategies);
   }
 
+  PerOperationSampler(int maxOperations,
+      ConcurrentHashMap<String, GuaranteedThroughputSampler> operationNameToSampler,
+      ProbabilisticSampler defaultSampler, double lowerBound) {
+    this(maxOperations, operationNameToSampler, defaultSampler, lowerBound, new Metrics(new NoopMetricsFactory()));
+  }
+
+  PerOperationSampler(int maxOperations,
+      ConcurrentHashMap<String, GuaranteedThroughputSampler> operationNameToSampler,
+      ProbabilisticSampler defaultSampler, double lowerBound, Metrics metrics) {
+    this.maxOperations = maxOperations;
+    this.operationNameToSampler = operationNameToSampler;
+    this.operations = new String[Math.max(maxOperations, 0)];
+    for (String operation : operationNameToSampler.keySet()) {
+      if (operationCount == operations.length) {
+        break;
+      }
+      operations[operationCount++] = operation;
+    }
+    this.sketch = new FrequencySketch(maxOperations);
+    this.metrics = metrics;
+    this.defaultSampler = defaultSampler;
+    this.lowerBound = lowerBound;
+  }
+
   /**
    * Updates the GuaranteedThroughputSampler for each operation
    * @param strategies The parameters for operation sampling
@@ -64,40 +129,165 @@ public class PerOperationSampler implements Sampler {
       isUpdated = true;
     }
 
+    Set<String> strategyOperations = new HashSet<String>();
     for (PerOperationSamplingParameters strategy : strategies.getPerOperationStrategies()) {
-      String operation = strategy.getOperation();
-      double samplingRate = strategy.getProbabilisticSampling().getSamplingRate();
-      GuaranteedThroughputSampler sampler = operationNameToSampler.get(operation);
-      if (sampler != null) {
-        isUpdated = sampler.update(samplingRate, lowerBound) || isUpdated;
-      } else {
-        if (operationNameToSampler.size() < maxOperations) {
-          sampler = new GuaranteedThroughputSampler(samplingRate, lowerBound);
-          operationNameToSampler.put(operation, sampler);
+      strategyOperations.add(strategy.getOperation());
+    }
+    this.strategyOperations = Collections.unmodifiableSet(strategyOperations);
+
+    operationsLock.lock();
+    try {
+      sketch.age();
+      long hits = 0;
+      for (GuaranteedThroughputSampler sampler : operationNameToSampler.values()) {
+        hits += sampler.usage.halve();
+      }
+      metrics.samplerOperationHit.inc(hits);
+
+      for (PerOperationSamplingParameters strategy : strategies.getPerOperationStrategies()) {
+        String operation = strategy.getOperation();
+        double samplingRate = strategy.getProbabilisticSampling().getSamplingRate();
+        GuaranteedThroughputSampler sampler = operationNameToSampler.get(operation);
+        if (sampler != null) {
+          isUpdated = sampler.update(samplingRate, lowerBound) || isUpdated;
+          continue;
+        }
+
+        if (operationCount < maxOperations) {
+          addSampler(operation, samplingRate);
+          isUpdated = true;
+          continue;
+        }
+        int slot = leastFrequentSlot(Long.MAX_VALUE, operationCount);
+        if (slot >= 0) {
+          replaceSampler(slot, operation, samplingRate);
           isUpdated = true;
         } else {
           log.info("Exceeded the maximum number of operations({}) for per operations sampling",
               maxOperations);
         }
       }
+    } finally {
+      operationsLock.unlock();
     }
     return isUpdated;
   }
 
   @Override
-  public synchronized SamplingStatus sample(String operation, long id) {
+  public SamplingStatus sample(String operation, long id) {
     GuaranteedThroughputSampler sampler = operationNameToSampler.get(operation);
     if (sampler != null) {
+      sampler.usage.increment();
       return sampler.sample(operation, id);
     }
 
-    if (operationNameToSampler.size() < maxOperations) {
-      sampler = new GuaranteedThroughputSampler(defaultSampler.getSamplingRate(), lowerBound);
+    metrics.samplerOperationMiss.inc(1);
+    sketch.increment(operation);
+    ProbabilisticSampler defaultSampler = this.defaultSampler;
+    if (operationCount < maxOperations) {
+      sampler = addSampler(operation, defaultSampler.getSamplingRate());
+    } else {
+      sampler = replaceLeastFrequentSampler(operation, defaultSampler.getSamplingRate());
+    }
+    if (sampler == null) {
+      return defaultSampler.sample(operation, id);
+    }
+    return sampler.sample(operation, id);
+  }
+
+  /**
+   * Adds the sampler of an operation, unless {@code maxOperations} are already sampled. Waits for
+   * the lock, which is only taken to add at most {@code maxOperations} samplers, to evict, and to update.
+   * @return the sampler of the operation, which is the existing one if another thread added it first,
+   *     or null if there is no room for the operation
+   */
+  private GuaranteedThroughputSampler addSampler(String operation, double samplingRate) {
+    operationsLock.lock();
+    try {
+      GuaranteedThroughputSampler sampler = operationNameToSampler.get(operation);
+      if (sampler != null || operationCount >= maxOperations) {
+        return sampler;
+      }
+      sampler = new GuaranteedThroughputSampler(samplingRate, lowerBound);
+      operations[operationCount] = operation;
       operationNameToSampler.put(operation, sampler);
-      return sampler.sample(operation, id);
+      operationCount++;
+      return sampler;
+    } finally {
+      operationsLock.unlock();
+    }
+  }
+
+  /**
+   * Evicts the sampler of the least frequently sampled of a few random operations in favor of the
+   * given one, if the latter is sampled more often. Gives up instead of waiting when another thread
+   * holds the lock.
+   * @return the sampler of the operation, or null if it wasn't admitted
+   */
+  private GuaranteedThroughputSampler replaceLeastFrequentSampler(String operation, double samplingRate) {
+    int frequency = sketch.frequency(operation);
+    if (frequency < MIN_ADMISSION_FREQUENCY || !operationsLock.tryLock()) {
+      return null;
+    }
+    try {
+      GuaranteedThroughputSampler sampler = operationNameToSampler.get(operation);
+      if (sampler != null) {
+        return sampler;
+      }
+      int slot = leastFrequentSlot(frequency, EVICTION_SAMPLE_SIZE);
+      return slot < 0 ? null : replaceSampler(slot, operation, samplingRate);
+    } finally {
+      operationsLock.unlock();
+    }
+  }
+
+  /**
+   * Finds the least frequently sampled among some operations, which aren't in the latest strategies.
+   * Must be called with the lock held.
+   * @param frequency the frequency the operation must be sampled less often than
+   * @param sampleSize how many random operations to compare, all of them if there are not more
+   * @return the slot of the operation, or -1 if none was sampled less often
+   */
+  private int leastFrequentSlot(long frequency, int sampleSize) {
+    Set<String> strategyOperations = this.strategyOperations;
+    int count = operationCount;
+    boolean all = count <= sampleSize;
+    int victim = -1;
+    long victimFrequency = frequency;
+    for (int i = 0; i < (all ? count : sampleSize); i++) {
+      int slot = all ? i : random.nextInt(count);
+      String operation = operations[slot];
+      if (strategyOperations.contains(operation)) {
+        continue;
+      }
+      GuaranteedThroughputSampler sampler = operationNameToSampler.get(operation);
+      long usageFrequency = sampler == null ? 0 : sampler.usage.sum();
+      if (usageFrequency < victimFrequency) {
+        victim = slot;
+        victimFrequency = usageFrequency;
+      }
+    }
+    return victim;
+  }
+
+  /**
+   * Replaces the sampler of the operation in a slot with a sampler for the given operation.
+   * Must be called with the lock held.
+   */
+  private GuaranteedThroughputSampler replaceSampler(int slot, String operation, double samplingRate) {
+    String victim = operations[slot];
+    GuaranteedThroughputSampler victimSampler = operationNameToSampler.remove(victim);
+    if (victimSampler != null) {
+      victimSampler.close();
+      metrics.samplerOperationHit.inc(victimSampler.usage.incrementsSinceHalved());
     }
+    metrics.samplerOperationEvicted.inc(1);
 
-    return defaultSampler.sample(operation, id);
+    // the slot of the victim is reused, so the operation count doesn't change
+    GuaranteedThroughputSampler sampler = new GuaranteedThroughputSampler(samplingRate, lowerBound);
+    operations[slot] = operation;
+    operationNameToSampler.put(operation, sampler);
+    return sampler;
   }
 
   @Override
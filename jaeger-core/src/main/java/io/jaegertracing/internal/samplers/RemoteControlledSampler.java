@@ -37,12 +37,16 @@ import lombok.extern.slf4j.Slf4j;
 public class RemoteControlledSampler implements Sampler {
   public static final String TYPE = "remote";
   private static final int DEFAULT_POLLING_INTERVAL_MS = 60000;
+  private static final int DEFAULT_MAX_OPERATIONS = 2000;
 
-  private final int maxOperations = 2000;
+  private final int maxOperations;
+  // when set, the sampling probabilities are computed locally by an AdaptiveSampler
+  @ToString.Exclude private final Double adaptiveTracesPerSecond;
   private final SamplingManager manager;
 
+  // read by sample() without locking; only replaced, under the monitor, by the poll thread
   @Getter(AccessLevel.PACKAGE)
-  private Sampler sampler;
+  private volatile Sampler sampler;
 
   // most of the time, toString here is called from the JaegerTracer, which holds this as well
   @ToString.Exclude private final String serviceName;
@@ -55,6 +59,8 @@ public class RemoteControlledSampler implements Sampler {
     this.serviceName = builder.serviceName;
     this.manager = builder.samplingManager;
     this.metrics = builder.metrics;
+    this.maxOperations = builder.maxOperations;
+    this.adaptiveTracesPerSecond = builder.adaptiveTracesPerSecond;
 
     if (builder.initialSampler != null) {
       this.sampler = builder.initialSampler;
@@ -75,6 +81,10 @@ public class RemoteControlledSampler implements Sampler {
     return;
   }
 
+  /**
+   * @deprecated the sampler is no longer guarded by this lock, which nothing takes any more
+   */
+  @Deprecated
   public ReentrantReadWriteLock getLock() {
     return lock;
   }
@@ -92,7 +102,9 @@ public class RemoteControlledSampler implements Sampler {
       return;
     }
 
-    if (response.getOperationSampling() != null) {
+    if (adaptiveTracesPerSecond != null) {
+      updateAdaptiveSampler(response.getOperationSampling());
+    } else if (response.getOperationSampling() != null) {
       updatePerOperationSampler(response.getOperationSampling());
     } else {
       updateRateLimitingOrProbabilisticSampler(response);
@@ -126,20 +138,37 @@ public class RemoteControlledSampler implements Sampler {
   }
 
   private synchronized void updatePerOperationSampler(OperationSamplingParameters samplingParameters) {
+    Sampler sampler = this.sampler;
     if (sampler instanceof PerOperationSampler) {
+      // PerOperationSampler is thread-safe, so it's updated in place
       if (((PerOperationSampler) sampler).update(samplingParameters)) {
         metrics.samplerUpdated.inc(1);
       }
     } else {
-      sampler = new PerOperationSampler(maxOperations, samplingParameters);
+      this.sampler = new PerOperationSampler(maxOperations, samplingParameters, metrics);
+    }
+  }
+
+  /**
+   * Keeps sampling with an {@link AdaptiveSampler}, whatever the strategy, since the probabilities are
+   * computed locally. Only the lower bound of per-operation strategies is used.
+   */
+  private synchronized void updateAdaptiveSampler(OperationSamplingParameters samplingParameters) {
+    Sampler sampler = this.sampler;
+    if (sampler instanceof AdaptiveSampler) {
+      if (samplingParameters != null
+          && ((AdaptiveSampler) sampler).update(samplingParameters.getDefaultLowerBoundTracesPerSecond())) {
+        metrics.samplerUpdated.inc(1);
+      }
+    } else {
+      double lowerBound = samplingParameters != null ? samplingParameters.getDefaultLowerBoundTracesPerSecond() : 0;
+      this.sampler = new AdaptiveSampler(adaptiveTracesPerSecond, lowerBound, maxOperations);
     }
   }
 
   @Override
   public SamplingStatus sample(String operation, long id) {
-    synchronized (this) {
-      return sampler.sample(operation, id);
-    }
+    return sampler.sample(operation, id);
   }
 
   @Override
@@ -149,15 +178,7 @@ public class RemoteControlledSampler implements Sampler {
     }
     if (sampler instanceof RemoteControlledSampler) {
       RemoteControlledSampler remoteSampler = ((RemoteControlledSampler) sampler);
-      synchronized (this) {
-        ReentrantReadWriteLock.ReadLock readLock = remoteSampler.getLock().readLock();
-        readLock.lock();
-        try {
-          return this.sampler.equals(remoteSampler.sampler);
-        } finally {
-          readLock.unlock();
-        }
-      }
+      return this.sampler.equals(remoteSampler.sampler);
     }
     return false;
   }
@@ -175,6 +196,8 @@ public class RemoteControlledSampler implements Sampler {
     private Sampler initialSampler;
     private Metrics metrics;
     private int poolingIntervalMs = DEFAULT_POLLING_INTERVAL_MS;
+    private int maxOperations = DEFAULT_MAX_OPERATIONS;
+    private Double adaptiveTracesPerSecond;
 
     public Builder(String serviceName) {
       this.serviceName = serviceName;
@@ -200,12 +223,36 @@ public class RemoteControlledSampler implements Sampler {
       return this;
     }
 
+    /**
+     * @param maxOperations the number of operations that get their own sampler when the sampling
+     *     strategy is per operation; less frequent operations are evicted beyond it
+     */
+    public Builder withMaxOperations(int maxOperations) {
+      this.maxOperations = maxOperations;
+      return this;
+    }
+
+    /**
+     * Samples about the given number of traces per second for each operation with an {@link AdaptiveSampler},
+     * instead of using the probabilities of the sampling strategies. The lower bound of per-operation
+     * strategies still applies.
+     */
+    public Builder withAdaptiveSampling(double targetTracesPerSecond) {
+      this.adaptiveTracesPerSecond = targetTracesPerSecond;
+      return this;
+    }
+
     public RemoteControlledSampler build() {
       if (samplingManager == null) {
         samplingManager = new HttpSamplingManager();
       }
       if (initialSampler == null) {
-        initialSampler = new ProbabilisticSampler(0.001);
+        if (adaptiveTracesPerSecond != null) {
+          // the lower bound comes with the first per-operation strategy
+          initialSampler = new AdaptiveSampler(adaptiveTracesPerSecond, 0, maxOperations);
+        } else {
+          initialSampler = new ProbabilisticSampler(0.001);
+        }
       }
       if (metrics == null) {
         metrics = new Metrics(new InMemoryMetricsFactory());
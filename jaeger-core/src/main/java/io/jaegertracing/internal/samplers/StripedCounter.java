@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.samplers;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counts how often an operation is sampled, without the threads sampling it contending on a single
+ * counter: each thread increments one of a few stripes, picked by its ID, and the stripes are padded
+ * so that they don't share a cache line.
+ */
+final class StripedCounter {
+  private static final int STRIPES = 4;
+  // ints per 64 byte cache line
+  private static final int PADDING = 16;
+
+  private final AtomicIntegerArray counts = new AtomicIntegerArray(STRIPES * PADDING);
+  // the sum left by the last halve(), only accessed by the thread halving
+  private long halvedSum;
+
+  /**
+   * @return the count of the stripe of the current thread, which is how often this thread and the
+   *     threads sharing its stripe incremented the counter
+   */
+  int increment() {
+    return counts.incrementAndGet(((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING);
+  }
+
+  long sum() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += counts.get(i * PADDING);
+    }
+    return sum;
+  }
+
+  /**
+   * Resets the count to zero.
+   * @return the count before the reset
+   */
+  long sumAndReset() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += counts.getAndSet(i * PADDING, 0);
+    }
+    return sum;
+  }
+
+  /**
+   * @return how many times the counter was incremented since it was last halved
+   */
+  long incrementsSinceHalved() {
+    return sum() - halvedSum;
+  }
+
+  /**
+   * Halves the count, so that operations that stopped being sampled are eventually forgotten. Must
+   * not be called by several threads at once.
+   * @return how many times the counter was incremented since it was last halved
+   */
+  long halve() {
+    long sum = 0;
+    long halved = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      int count;
+      do {
+        count = counts.get(i * PADDING);
+      } while (!counts.compareAndSet(i * PADDING, count, count >> 1));
+      sum += count;
+      halved += count >> 1;
+    }
+    long increments = sum - halvedSum;
+    halvedSum = halved;
+    return increments;
+  }
+}
@@ -16,13 +16,21 @@ package io.jaegertracing.internal.utils;
 
 import io.jaegertracing.internal.clock.Clock;
 import io.jaegertracing.internal.clock.SystemClock;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * A token bucket, which is safe to share between threads without locking.
+ *
+ * <p>The balance and the time it was computed at are replaced together with a compare-and-set.
+ * Since the balance only depends on the time elapsed since then, a check that is denied credit doesn't
+ * write anything, and objects are only allocated for the checks that are granted it, which are
+ * bounded by the rate.</p>
+ */
 public class RateLimiter {
   private final double creditsPerNanosecond;
   private final Clock clock;
-  private double balance;
-  private double maxBalance;
-  private long lastTick;
+  private final double maxBalance;
+  private final AtomicReference<Balance> balance;
 
   public RateLimiter(double creditsPerSecond, double maxBalance) {
     this(creditsPerSecond, maxBalance, new SystemClock());
@@ -30,23 +38,36 @@ public class RateLimiter {
 
   public RateLimiter(double creditsPerSecond, double maxBalance, Clock clock) {
     this.clock = clock;
-    this.balance = maxBalance;
+    this.balance = new AtomicReference<Balance>(new Balance(maxBalance, 0));
     this.maxBalance = maxBalance;
     this.creditsPerNanosecond = creditsPerSecond / 1.0e9;
   }
 
   public boolean checkCredit(double itemCost) {
-    long currentTime = clock.currentNanoTicks();
-    double elapsedTime = currentTime - lastTick;
-    lastTick = currentTime;
-    balance += elapsedTime * creditsPerNanosecond;
-    if (balance > maxBalance) {
-      balance = maxBalance;
+    while (true) {
+      Balance current = balance.get();
+      long currentTime = clock.currentNanoTicks();
+      double elapsedTime = currentTime - current.lastTick;
+      double credits = current.credits + elapsedTime * creditsPerNanosecond;
+      if (credits > maxBalance) {
+        credits = maxBalance;
+      }
+      if (credits < itemCost) {
+        return false;
+      }
+      if (balance.compareAndSet(current, new Balance(credits - itemCost, currentTime))) {
+        return true;
+      }
     }
-    if (balance >= itemCost) {
-      balance -= itemCost;
-      return true;
+  }
+
+  private static final class Balance {
+    final double credits;
+    final long lastTick;
+
+    Balance(double credits, long lastTick) {
+      this.credits = credits;
+      this.lastTick = lastTick;
     }
-    return false;
   }
 }
@@ -28,9 +28,11 @@ import io.jaegertracing.internal.JaegerTracer;
 import io.jaegertracing.internal.metrics.InMemoryMetricsFactory;
 import io.jaegertracing.internal.metrics.Metrics;
 import io.jaegertracing.internal.metrics.MockMetricsFactory;
+import io.jaegertracing.internal.samplers.AdaptiveSampler;
 import io.jaegertracing.internal.samplers.ConstSampler;
 import io.jaegertracing.internal.samplers.ProbabilisticSampler;
 import io.jaegertracing.internal.samplers.RateLimitingSampler;
+import io.jaegertracing.internal.samplers.RemoteControlledSampler;
 import io.jaegertracing.spi.Codec;
 import io.jaegertracing.spi.Sampler;
 import io.opentracing.propagation.Format;
@@ -59,6 +61,8 @@ public class ConfigurationTest {
     System.clearProperty(Configuration.JAEGER_REPORTER_LOG_SPANS);
     System.clearProperty(Configuration.JAEGER_REPORTER_MAX_QUEUE_SIZE);
     System.clearProperty(Configuration.JAEGER_REPORTER_FLUSH_INTERVAL);
+    System.clearProperty(Configuration.JAEGER_REPORTER_SHARDS);
+    System.clearProperty(Configuration.JAEGER_REPORTER_MAX_QUEUE_SIZE_BYTES);
     System.clearProperty(Configuration.JAEGER_SAMPLER_TYPE);
     System.clearProperty(Configuration.JAEGER_SAMPLER_PARAM);
     System.clearProperty(Configuration.JAEGER_SAMPLER_MANAGER_HOST_PORT);
@@ -69,6 +73,7 @@ public class ConfigurationTest {
     System.clearProperty(Configuration.JAEGER_USER);
     System.clearProperty(Configuration.JAEGER_PASSWORD);
     System.clearProperty(Configuration.JAEGER_PROPAGATION);
+    System.clearProperty(Configuration.JAEGER_TRACEID_128BIT);
 
     System.clearProperty(TEST_PROPERTY);
   }
@@ -117,12 +122,16 @@ public class ConfigurationTest {
     System.setProperty(Configuration.JAEGER_AGENT_PORT, "1234");
     System.setProperty(Configuration.JAEGER_REPORTER_FLUSH_INTERVAL, "500");
     System.setProperty(Configuration.JAEGER_REPORTER_MAX_QUEUE_SIZE, "1000");
+    System.setProperty(Configuration.JAEGER_REPORTER_SHARDS, "4");
+    System.setProperty(Configuration.JAEGER_REPORTER_MAX_QUEUE_SIZE_BYTES, "65536");
     ReporterConfiguration reporterConfig = ReporterConfiguration.fromEnv();
     assertTrue(reporterConfig.getLogSpans());
     assertEquals("MyHost", reporterConfig.getSenderConfiguration().getAgentHost());
     assertEquals(1234, reporterConfig.getSenderConfiguration().getAgentPort().intValue());
     assertEquals(500, reporterConfig.getFlushIntervalMs().intValue());
     assertEquals(1000, reporterConfig.getMaxQueueSize().intValue());
+    assertEquals(4, reporterConfig.getShards().intValue());
+    assertEquals(65536, reporterConfig.getMaxQueueSizeBytes().intValue());
   }
 
   @Test
@@ -206,6 +215,25 @@ public class ConfigurationTest {
     assertEquals(spanId, extractedContext.getSpanId());
   }
 
+  @Test
+  public void testPropagationW3C() {
+    System.setProperty(Configuration.JAEGER_PROPAGATION, "w3c");
+    System.setProperty(Configuration.JAEGER_SERVICE_NAME, "Test");
+
+    TestTextMap textMap = new TestTextMap();
+    JaegerSpanContext spanContext = new JaegerSpanContext(1234, 5678, 0, (byte)1);
+
+    JaegerTracer tracer = Configuration.fromEnv().getTracer();
+    tracer.inject(spanContext, Format.Builtin.HTTP_HEADERS, textMap);
+
+    assertEquals("00-000000000000000000000000000004d2-000000000000162e-01", textMap.get("traceparent"));
+    assertNull(textMap.get("uber-trace-id"));
+
+    JaegerSpanContext extractedContext = tracer.extract(Format.Builtin.HTTP_HEADERS, textMap);
+    assertEquals(1234, extractedContext.getTraceId());
+    assertEquals(5678, extractedContext.getSpanId());
+  }
+
   @Test
   public void testPropagationJaegerAndB3() {
     System.setProperty(Configuration.JAEGER_PROPAGATION, "jaeger,b3");
@@ -257,6 +285,23 @@ public class ConfigurationTest {
     assertNotNull(textMap.get("uber-trace-id"));
   }
 
+  @Test
+  public void testTraceId128BitFromEnv() {
+    System.setProperty(Configuration.JAEGER_SERVICE_NAME, "Test");
+    System.setProperty(Configuration.JAEGER_TRACEID_128BIT, "true");
+    Configuration config = Configuration.fromEnv();
+    assertTrue(config.isTraceId128Bit());
+
+    JaegerTracer tracer = config.getTracerBuilder().withSampler(new ConstSampler(true)).build();
+    assertTrue(tracer.buildSpan("foo").start().context().getTraceIdHigh() != 0);
+  }
+
+  @Test
+  public void testTraceId64BitByDefault() {
+    System.setProperty(Configuration.JAEGER_SERVICE_NAME, "Test");
+    assertFalse(Configuration.fromEnv().isTraceId128Bit());
+  }
+
   @Test(expected = RuntimeException.class)
   public void testNoServiceName() {
     new Configuration(null);
@@ -319,6 +364,17 @@ public class ConfigurationTest {
     assertTrue(sampler instanceof RateLimitingSampler);
   }
 
+  @Test
+  public void testAdaptiveSampler() {
+    SamplerConfiguration samplerConfiguration = new SamplerConfiguration()
+        .withType(AdaptiveSampler.TYPE)
+        .withParam(10);
+    Sampler sampler = samplerConfiguration.createSampler("name",
+        new Metrics(new InMemoryMetricsFactory()));
+    assertTrue(sampler instanceof RemoteControlledSampler);
+    sampler.close();
+  }
+
   @Test
   public void testMetrics() {
     InMemoryMetricsFactory inMemoryMetricsFactory = new InMemoryMetricsFactory();
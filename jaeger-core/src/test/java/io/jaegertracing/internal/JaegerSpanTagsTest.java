@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class JaegerSpanTagsTest {
+
+  private final JaegerSpanTags tags = new JaegerSpanTags();
+
+  @Test
+  public void testValuesKeepTheirType() {
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("string", "value");
+    expected.put("boolean", true);
+    expected.put("int", 1);
+    expected.put("long", 2L);
+    expected.put("float", 0.1f);
+    expected.put("double", 0.2);
+    expected.put("short", (short) 3);
+    expected.put("decimal", new BigDecimal("4.5"));
+    expected.put("null", null);
+    for (Map.Entry<String, Object> tag : expected.entrySet()) {
+      tags.put(tag.getKey(), tag.getValue());
+    }
+
+    assertEquals(expected.size(), tags.size());
+    assertEquals(expected, tags.toMap());
+    for (Map.Entry<String, Object> tag : expected.entrySet()) {
+      assertEquals(tag.getValue(), tags.get(tag.getKey()));
+    }
+    assertNull(tags.get("missing"));
+  }
+
+  @Test
+  public void testLastWriteWins() {
+    tags.put("key", "value");
+    tags.put("other", 1);
+    tags.put("key", 2L);
+    tags.put("other", "value");
+
+    assertEquals(2, tags.size());
+    assertEquals(2L, tags.get("key"));
+    assertEquals("value", tags.get("other"));
+  }
+
+  @Test
+  public void testGrows() {
+    for (int i = 0; i < 100; i++) {
+      tags.put("key" + i, i);
+    }
+    assertEquals(100, tags.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, tags.get("key" + i));
+    }
+  }
+
+  @Test
+  public void testAcceptVisitsInInsertionOrderWithPrimitives() {
+    tags.put("string", "value");
+    tags.put("boolean", false);
+    tags.put("int", 1);
+    tags.put("long", 2L);
+    tags.put("double", 0.5);
+    tags.put("float", 0.25f);
+
+    final List<String> visited = new ArrayList<>();
+    tags.accept(new JaegerSpanVisitor<RuntimeException>() {
+      @Override
+      public void visitTags(int count) {
+        visited.add("tags " + count);
+      }
+
+      @Override
+      public void visitTag(String key, Object value) {
+        visited.add(key + " object " + value);
+      }
+
+      @Override
+      public void visitTag(String key, boolean value) {
+        visited.add(key + " boolean " + value);
+      }
+
+      @Override
+      public void visitTag(String key, long value) {
+        visited.add(key + " long " + value);
+      }
+
+      @Override
+      public void visitTag(String key, double value) {
+        visited.add(key + " double " + value);
+      }
+
+      @Override
+      public void visitLogs(int count) {
+      }
+
+      @Override
+      public void visitLog(LogData log) {
+      }
+    });
+
+    assertEquals(Arrays.asList("tags 6", "string object value", "boolean boolean false", "int long 1",
+        "long long 2", "double double 0.5", "float object 0.25"), visited);
+  }
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import io.jaegertracing.internal.baggage.DefaultBaggageRestrictionManager;
@@ -39,12 +40,14 @@ import io.opentracing.noop.NoopSpan;
 import io.opentracing.tag.Tags;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -136,6 +139,55 @@ public class JaegerSpanTest {
     assertEquals(expected, jaegerSpan.getTags().get(key));
   }
 
+  @Test
+  public void testAccept() {
+    jaegerSpan.setTag("tag.key", "value");
+    jaegerSpan.setTag("tag.long", 1L);
+    jaegerSpan.setTag("tag.double", 1.5);
+    jaegerSpan.setTag("tag.boolean", true);
+    jaegerSpan.log("event");
+    final Map<String, Object> tags = new HashMap<String, Object>();
+    final List<LogData> logs = new ArrayList<LogData>();
+    jaegerSpan.accept(new JaegerSpanVisitor<RuntimeException>() {
+      @Override
+      public void visitTags(int count) {
+        assertEquals(jaegerSpan.getTags().size(), count);
+      }
+
+      @Override
+      public void visitTag(String key, Object value) {
+        tags.put(key, value);
+      }
+
+      @Override
+      public void visitTag(String key, boolean value) {
+        tags.put(key, value);
+      }
+
+      @Override
+      public void visitTag(String key, long value) {
+        tags.put(key, value);
+      }
+
+      @Override
+      public void visitTag(String key, double value) {
+        tags.put(key, value);
+      }
+
+      @Override
+      public void visitLogs(int count) {
+        assertEquals(1, count);
+      }
+
+      @Override
+      public void visitLog(LogData log) {
+        logs.add(log);
+      }
+    });
+    assertEquals(jaegerSpan.getTags(), tags);
+    assertEquals(jaegerSpan.getLogs(), logs);
+  }
+
   @Test
   public void testWithTimestampAccurateClock() {
     testWithTimestamp(true);
@@ -459,6 +511,69 @@ public class JaegerSpanTest {
     assertEquals(0, reporter.getSpans().size());
   }
 
+  @Test
+  public void testSpanNotSampledDoesNotReadClock() {
+    Clock clock = mock(Clock.class);
+    JaegerTracer tracer = new JaegerTracer.Builder("fo")
+        .withReporter(reporter)
+        .withSampler(new ConstSampler(false))
+        .withClock(clock)
+        .build();
+    JaegerSpan foo = tracer.buildSpan("foo")
+        .withTag("builder.tag", "value")
+        .start();
+    foo.setTag("tag", 1)
+        .log("event")
+        .log(Collections.singletonMap("field", "value"))
+        .finish();
+
+    verifyZeroInteractions(clock);
+    assertTrue(foo.getTags().isEmpty());
+    assertNull(foo.getLogs());
+    assertEquals(0, reporter.getSpans().size());
+  }
+
+  @Test
+  public void testSpanNotSampledReadsClockWhenSampled() {
+    JaegerTracer tracer = new JaegerTracer.Builder("fo")
+        .withReporter(reporter)
+        .withSampler(new ConstSampler(false))
+        .withClock(clock)
+        .build();
+    when(clock.isMicrosAccurate()).thenReturn(true);
+    when(clock.currentTimeMicros()).thenReturn(100L).thenReturn(150L).thenReturn(300L);
+    JaegerSpan foo = tracer.buildSpan("foo").start();
+    foo.setTag("dropped", "value");
+    Tags.SAMPLING_PRIORITY.set(foo, 1);
+    foo.log("event");
+    foo.finish();
+
+    assertEquals(1, reporter.getSpans().size());
+    assertEquals(100, foo.getStart());
+    assertEquals(200, foo.getDuration());
+    assertEquals(150, foo.getLogs().get(0).getTime());
+    assertEquals(Collections.singletonMap(Tags.SAMPLING_PRIORITY.getKey(), 1), foo.getTags());
+  }
+
+  @Test
+  public void testSpanSampledByBuilderTag() {
+    JaegerTracer tracer = new JaegerTracer.Builder("fo")
+        .withReporter(reporter)
+        .withSampler(new ConstSampler(false))
+        .withClock(clock)
+        .build();
+    when(clock.isMicrosAccurate()).thenReturn(true);
+    when(clock.currentTimeMicros()).thenReturn(100L).thenReturn(300L);
+    JaegerSpan foo = tracer.buildSpan("foo")
+        .withTag(Tags.SAMPLING_PRIORITY.getKey(), 1)
+        .start();
+    foo.finish();
+
+    assertEquals(1, reporter.getSpans().size());
+    assertEquals(100, foo.getStart());
+    assertEquals(200, foo.getDuration());
+  }
+
   @Test
   public void testAsChildOfIgnoreUnexpectedContextImpl() {
     JaegerTracer tracer = new JaegerTracer.Builder("foo")
@@ -528,4 +643,89 @@ public class JaegerSpanTest {
       span.setBaggageItem("foo2", "bar");
     }
   }
+
+  @Test
+  public void testSpanOwnedByAnotherThread() throws Exception {
+    final JaegerSpan span = tracer.buildSpan("foo").start();
+    span.setTag("owner", true);
+
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        span.setTag("other", true);
+        span.log("event");
+      }
+    });
+    thread.start();
+    thread.join();
+
+    span.setTag("owner-again", true);
+    span.finish();
+
+    assertEquals(1, reporter.getSpans().size());
+    Map<String, Object> tags = span.getTags();
+    assertEquals(true, tags.get("owner"));
+    assertEquals(true, tags.get("other"));
+    assertEquals(true, tags.get("owner-again"));
+    assertEquals("event", span.getLogs().get(0).getMessage());
+  }
+
+  @Test
+  public void testSpanFinishedByAnotherThread() throws Exception {
+    final JaegerSpan span = tracer.buildSpan("foo").start();
+    span.setTag("foo", "bar");
+
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        span.finish();
+      }
+    });
+    thread.start();
+    thread.join();
+
+    assertEquals(1, reporter.getSpans().size());
+    assertEquals("bar", reporter.getSpans().get(0).getTag("foo"));
+  }
+
+  @Test
+  public void testConcurrentTagsFromOwnerAndOtherThreads() throws Exception {
+    final int threads = 4;
+    final int tagsPerThread = 200;
+    final JaegerSpan span = tracer.buildSpan("foo").start();
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> others = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      Thread other = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < tagsPerThread; i++) {
+            span.setTag("thread" + thread + "-" + i, i);
+          }
+        }
+      });
+      other.start();
+      others.add(other);
+    }
+
+    start.countDown();
+    for (int i = 0; i < tagsPerThread; i++) {
+      span.setTag("owner-" + i, i);
+      span.log("event" + i);
+    }
+    for (Thread other : others) {
+      other.join();
+    }
+    span.finish();
+
+    assertEquals(threads * tagsPerThread + tagsPerThread + 2, span.getTags().size());
+    assertEquals(tagsPerThread, span.getLogs().size());
+    assertEquals(tagsPerThread - 1, span.getTag("thread0-" + (tagsPerThread - 1)));
+  }
 }
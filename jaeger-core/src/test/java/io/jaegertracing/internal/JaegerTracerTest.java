@@ -172,4 +172,27 @@ public class JaegerTracerTest {
     assertEquals(1, metricsFactory.getCounter("jaeger:traces", "sampled=y,state=started"));
     assertEquals(0, metricsFactory.getCounter("jaeger:traces", "sampled=n,state=started"));
   }
+
+  @Test
+  public void testTraceId64BitByDefault() {
+    JaegerSpan span = tracer.buildSpan("foo").start();
+    assertEquals(0, span.context().getTraceIdHigh());
+  }
+
+  @Test
+  public void testTraceId128Bit() {
+    JaegerTracer tracer = new JaegerTracer.Builder("name")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .withTraceId128Bit()
+        .build();
+    JaegerSpan parent = tracer.buildSpan("foo").start();
+    JaegerSpan child = tracer.buildSpan("bar").asChildOf(parent).start();
+
+    assertTrue(parent.context().getTraceIdHigh() != 0);
+    assertEquals(parent.context().getTraceIdHigh(), child.context().getTraceIdHigh());
+    assertEquals(parent.context().getTraceIdLow(), child.context().getTraceIdLow());
+    assertEquals(parent.context().getTraceIdHigh(),
+        child.context().withBaggageItem("foo", "bar").getTraceIdHigh());
+  }
 }
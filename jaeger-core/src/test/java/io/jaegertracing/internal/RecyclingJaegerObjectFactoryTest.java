@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.jaegertracing.internal.reporters.InMemoryReporter;
+import io.jaegertracing.internal.reporters.RemoteReporter;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import io.jaegertracing.internal.senders.InMemorySender;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class RecyclingJaegerObjectFactoryTest {
+
+  private RecyclingJaegerObjectFactory objectFactory = new RecyclingJaegerObjectFactory();
+  private JaegerTracer tracer = newTracer(objectFactory, true);
+
+  private static JaegerTracer newTracer(JaegerObjectFactory objectFactory, boolean sampled) {
+    return new JaegerTracer.Builder("test-recycling", objectFactory)
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(sampled))
+        .build();
+  }
+
+  @Test
+  public void testReusesBuffersOfRecycledSpans() {
+    // spans which aren't sampled don't take buffers themselves
+    JaegerTracer tracer = newTracer(objectFactory, false);
+    JaegerSpan span = tracer.buildSpan("op").start();
+    JaegerSpanTags tags = objectFactory.createTags(span);
+    List<LogData> logs = objectFactory.createLogs(span);
+    tags.put("key", "value");
+    logs.add(new LogData(1, "event", null));
+    objectFactory.recycle(span, tags, logs);
+
+    JaegerSpan next = tracer.buildSpan("op").start();
+    JaegerSpanTags nextTags = objectFactory.createTags(next);
+    List<LogData> nextLogs = objectFactory.createLogs(next);
+    assertSame(tags, nextTags);
+    assertSame(logs, nextLogs);
+    assertEquals(0, nextTags.size());
+    assertTrue(nextLogs.isEmpty());
+  }
+
+  @Test
+  public void testDoesNotReuseLargeBuffers() {
+    JaegerTracer tracer = newTracer(objectFactory, false);
+    JaegerSpan span = tracer.buildSpan("op").start();
+    JaegerSpanTags tags = objectFactory.createTags(span);
+    for (int i = 0; i <= RecyclingJaegerObjectFactory.MAX_RECYCLED_CAPACITY; i++) {
+      tags.put("key" + i, i);
+    }
+    objectFactory.recycle(span, tags, null);
+
+    assertNotSame(tags, objectFactory.createTags(tracer.buildSpan("op").start()));
+  }
+
+  @Test
+  public void testRecycledSpanIgnoresTagsAndLogs() {
+    JaegerSpan span = tracer.buildSpan("op").withTag("builder.tag", "value").start();
+    span.setTag("tag", 1).log("event");
+    span.finish();
+    assertEquals(1, span.getLogs().size());
+
+    span.recycle();
+    assertTrue(span.getTags().isEmpty());
+    assertNull(span.getLogs());
+
+    span.setTag("late", true).log("late event");
+    assertTrue(span.getTags().isEmpty());
+    assertNull(span.getLogs());
+    // recycling twice doesn't put the buffers back twice
+    span.recycle();
+
+    JaegerSpan next = tracer.buildSpan("op").start();
+    next.setTag("next", "value");
+    assertEquals("value", next.getTag("next"));
+    assertEquals(Collections.singletonMap("next", "value"), removeSamplerTags(next));
+  }
+
+  @Test
+  public void testRecycledByRemoteReporter() {
+    InMemorySender sender = new InMemorySender();
+    RemoteReporter reporter = new RemoteReporter.Builder().withSender(sender).build();
+    JaegerTracer tracer = new JaegerTracer.Builder("test-recycling", objectFactory)
+        .withReporter(reporter)
+        .withSampler(new ConstSampler(true))
+        .build();
+    JaegerSpan span = tracer.buildSpan("op").start();
+    span.setTag("tag", "value");
+    span.finish();
+    reporter.close();
+
+    assertEquals(Collections.singletonList(span), sender.getFlushed());
+    assertTrue(span.getTags().isEmpty());
+  }
+
+  @Test
+  public void testRecycleDoesNothingWithoutRecycling() {
+    JaegerSpan span = newTracer(new JaegerObjectFactory(), true).buildSpan("op").start();
+    span.setTag("tag", "value");
+    span.recycle();
+    assertEquals("value", span.getTag("tag"));
+  }
+
+  @Test
+  public void testDetectsLeaks() {
+    final RecyclingJaegerObjectFactory objectFactory = new RecyclingJaegerObjectFactory(16, true);
+    final JaegerTracer tracer = newTracer(objectFactory, true);
+    JaegerSpan recycled = tracer.buildSpan("op").start();
+    recycled.setTag("tag", "value");
+    recycled.recycle();
+    tracer.buildSpan("op").start().setTag("tag", "value");
+
+    // the factory looks for leaks when giving a buffer to a span
+    await().atMost(10, TimeUnit.SECONDS).until(() -> {
+      System.gc();
+      tracer.buildSpan("op").start().setTag("tag", "value");
+      return objectFactory.getLeakedSpanCount() > 0;
+    });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPoolSize() {
+    new RecyclingJaegerObjectFactory(0, false);
+  }
+
+  private static Map<String, Object> removeSamplerTags(JaegerSpan span) {
+    Map<String, Object> tags = new HashMap<>(span.getTags());
+    tags.keySet().removeIf(key -> key.startsWith("sampler."));
+    return tags;
+  }
+}
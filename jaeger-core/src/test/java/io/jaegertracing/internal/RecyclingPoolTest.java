@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RecyclingPoolTest {
+
+  @Test
+  public void testCapacityIsRoundedUp() {
+    assertEquals(16, new RecyclingPool<Object>(10).capacity());
+    assertEquals(16, new RecyclingPool<Object>(16).capacity());
+    assertEquals(8, new RecyclingPool<Object>(1).capacity());
+  }
+
+  @Test
+  public void testTakeWhatWasPut() {
+    RecyclingPool<Object> pool = new RecyclingPool<Object>(16);
+    assertNull(pool.take());
+
+    Object object = new Object();
+    assertTrue(pool.put(object));
+    assertSame(object, pool.take());
+    assertNull(pool.take());
+  }
+
+  @Test
+  public void testPutWhenFull() {
+    RecyclingPool<Object> pool = new RecyclingPool<Object>(8);
+    for (int i = 0; i < 8; i++) {
+      assertTrue(pool.put(new Object()));
+    }
+    assertEquals(false, pool.put(new Object()));
+
+    int taken = 0;
+    while (pool.take() != null) {
+      taken++;
+    }
+    assertEquals(8, taken);
+  }
+}
@@ -16,6 +16,7 @@ package io.jaegertracing.internal.propagation;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import io.jaegertracing.internal.JaegerSpanContext;
@@ -39,8 +40,9 @@ public class B3TextMapCodecTest {
   B3TextMapCodec b3Codec = new B3TextMapCodec.Builder().build();
 
   @Test
-  public void downgrades128BitTraceIdToLower64Bits() {
+  public void extracts128BitTraceId() {
     String hex128Bits = "463ac35c9f6413ad48485a3953bb6124";
+    String upper64Bits = "463ac35c9f6413ad";
     String lower64Bits = "48485a3953bb6124";
 
     DelegatingTextMap textMap = new DelegatingTextMap();
@@ -55,6 +57,7 @@ public class B3TextMapCodecTest {
     JaegerSpanContext context = b3Codec.extract(textMap);
 
     assertNotNull(HexCodec.lowerHexToUnsignedLong(lower64Bits));
+    assertEquals(HexCodec.lowerHexToUnsignedLong(upper64Bits).longValue(), context.getTraceIdHigh());
     assertEquals(HexCodec.lowerHexToUnsignedLong(lower64Bits).longValue(), context.getTraceId());
     assertEquals(HexCodec.lowerHexToUnsignedLong(lower64Bits).longValue(), context.getSpanId());
     assertEquals(0, context.getParentId());
@@ -105,6 +108,37 @@ public class B3TextMapCodecTest {
     assertTrue(textMap.containsKey(B3TextMapCodec.SPAN_ID_NAME));
   }
 
+  @Test
+  public void testInject128BitTraceId() {
+    DelegatingTextMap textMap = new DelegatingTextMap();
+    b3Codec.inject(new JaegerSpanContext(0x463ac35c9f6413adL, 0x48485a3953bb6124L, 1, 0, SAMPLED), textMap);
+
+    assertEquals("463ac35c9f6413ad48485a3953bb6124", textMap.delegate.get(B3TextMapCodec.TRACE_ID_NAME));
+    JaegerSpanContext context = b3Codec.extract(textMap);
+    assertEquals(0x463ac35c9f6413adL, context.getTraceIdHigh());
+    assertEquals(0x48485a3953bb6124L, context.getTraceIdLow());
+  }
+
+  @Test
+  public void testExtractShortTraceIdHasNoHighBits() {
+    DelegatingTextMap textMap = new DelegatingTextMap();
+    textMap.put(B3TextMapCodec.TRACE_ID_NAME, "abc");
+    textMap.put(B3TextMapCodec.SPAN_ID_NAME, "1");
+
+    JaegerSpanContext context = b3Codec.extract(textMap);
+    assertEquals(0, context.getTraceIdHigh());
+    assertEquals(0xabcL, context.getTraceIdLow());
+  }
+
+  @Test
+  public void testExtractInvalidHighBits() {
+    DelegatingTextMap textMap = new DelegatingTextMap();
+    textMap.put(B3TextMapCodec.TRACE_ID_NAME, "x63ac35c9f6413ad48485a3953bb6124");
+    textMap.put(B3TextMapCodec.SPAN_ID_NAME, "1");
+
+    assertNull(b3Codec.extract(textMap));
+  }
+
   static class DelegatingTextMap implements TextMap {
     final Map<String, String> delegate = new LinkedHashMap<>();
 
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.propagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerSpanContext;
+import io.jaegertracing.internal.JaegerTracer;
+import io.jaegertracing.internal.exceptions.MalformedTracerStateBinaryException;
+import io.jaegertracing.internal.reporters.InMemoryReporter;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import io.opentracing.propagation.Format;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+public class BinaryCodecTest {
+  private final BinaryCodec codec = new BinaryCodec.Builder().build();
+
+  @Test
+  public void testInjectExtract() {
+    JaegerSpanContext context = new JaegerSpanContext(1L, 2L, 3L, 4L, (byte) 3)
+        .withBaggageItem("key", "value")
+        .withBaggageItem("ünicode", "välue");
+
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    codec.inject(context, buffer);
+    buffer.flip();
+    JaegerSpanContext extracted = codec.extract(buffer);
+
+    assertEquals(1L, extracted.getTraceIdHigh());
+    assertEquals(2L, extracted.getTraceIdLow());
+    assertEquals(3L, extracted.getSpanId());
+    assertEquals(4L, extracted.getParentId());
+    assertEquals(3, extracted.getFlags());
+    assertEquals("value", extracted.getBaggageItem("key"));
+    assertEquals("välue", extracted.getBaggageItem("ünicode"));
+    assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void testLayout() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    codec.inject(new JaegerSpanContext(1L, 2L, 3L, 4L, (byte) 1).withBaggageItem("k", "v"), buffer);
+
+    assertEquals(8 * 4 + 1 + 4 + (4 + 1) * 2, buffer.position());
+    assertEquals(1L, buffer.getLong(0));
+    assertEquals(2L, buffer.getLong(8));
+    assertEquals(3L, buffer.getLong(16));
+    assertEquals(4L, buffer.getLong(24));
+    assertEquals(1, buffer.get(32));
+    assertEquals(1, buffer.getInt(33));
+    assertEquals(1, buffer.getInt(37));
+    assertEquals('k', buffer.get(41));
+  }
+
+  @Test
+  public void testKeepsByteOrderOfBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+    codec.inject(new JaegerSpanContext(0L, 2L, 3L, 0L, (byte) 1), buffer);
+    buffer.flip();
+
+    assertEquals(2L, codec.extract(buffer).getTraceIdLow());
+    assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+  }
+
+  @Test
+  public void testExtractFromDirectBufferAtOffset() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(128);
+    buffer.put((byte) 42);
+    codec.inject(new JaegerSpanContext(0L, 2L, 3L, 0L, (byte) 1).withBaggageItem("key", "value"), buffer);
+    buffer.flip();
+    buffer.get();
+
+    assertEquals("value", codec.extract(buffer).getBaggageItem("key"));
+  }
+
+  @Test
+  public void testExtractFromSlicedHeapBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(128);
+    buffer.position(10);
+    ByteBuffer slice = buffer.slice();
+    codec.inject(new JaegerSpanContext(0L, 2L, 3L, 0L, (byte) 1).withBaggageItem("key", "value"), slice);
+    slice.flip();
+
+    assertEquals("value", codec.extract(slice).getBaggageItem("key"));
+  }
+
+  @Test
+  public void testExtractEmptyBuffer() {
+    assertNull(codec.extract(ByteBuffer.allocate(0)));
+  }
+
+  @Test(expected = MalformedTracerStateBinaryException.class)
+  public void testExtractTruncated() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    codec.inject(new JaegerSpanContext(0L, 2L, 3L, 0L, (byte) 1).withBaggageItem("key", "value"), buffer);
+    buffer.flip();
+    buffer.limit(buffer.limit() - 1);
+    codec.extract(buffer);
+  }
+
+  @Test(expected = MalformedTracerStateBinaryException.class)
+  public void testExtractInvalidBaggageCount() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    codec.inject(new JaegerSpanContext(0L, 2L, 3L, 0L, (byte) 1), buffer);
+    buffer.putInt(33, Integer.MAX_VALUE);
+    buffer.flip();
+    codec.extract(buffer);
+  }
+
+  @Test
+  public void testRegisteredByDefault() {
+    JaegerTracer tracer = new JaegerTracer.Builder("service")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .build();
+    JaegerSpan span = tracer.buildSpan("foo").start();
+    span.setBaggageItem("key", "value");
+
+    ByteBuffer buffer = ByteBuffer.allocate(128);
+    tracer.inject(span.context(), Format.Builtin.BINARY, buffer);
+    buffer.flip();
+    JaegerSpanContext extracted = tracer.extract(Format.Builtin.BINARY, buffer);
+
+    assertEquals(span.context().getTraceId(), extracted.getTraceId());
+    assertEquals(span.context().getSpanId(), extracted.getSpanId());
+    assertEquals("value", extracted.getBaggageItem("key"));
+  }
+}
@@ -16,7 +16,9 @@ package io.jaegertracing.internal.propagation;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import io.jaegertracing.internal.JaegerSpanContext;
 import io.jaegertracing.internal.exceptions.EmptyTracerStateStringException;
@@ -90,6 +92,120 @@ public class TextMapCodecTest {
     assertEquals(flags, contextFromStr.getFlags());
   }
 
+  @Test
+  public void testContextAsStringWith128BitTraceId() {
+    JaegerSpanContext context = new JaegerSpanContext(0xaL, 0xbL, 0xcL, 0L, (byte) 1);
+    assertEquals("a000000000000000b:c:0:1", TextMapCodec.contextAsString(context));
+
+    JaegerSpanContext contextFromStr = TextMapCodec.contextFromString(context.toString());
+    assertEquals(0xaL, contextFromStr.getTraceIdHigh());
+    assertEquals(0xbL, contextFromStr.getTraceIdLow());
+    assertEquals(0xcL, contextFromStr.getSpanId());
+  }
+
+  @Test
+  public void testContextFromStringWith128BitTraceId() {
+    JaegerSpanContext context = TextMapCodec.contextFromString("fffffffffffffff6fffffffffffffff5:dd:cc:1");
+    assertEquals(-10L, context.getTraceIdHigh());
+    assertEquals(-11L, context.getTraceIdLow());
+    assertEquals(221, context.getSpanId());
+  }
+
+  @Test(expected = MalformedTracerStateStringException.class)
+  public void testContextFromStringTraceIdTooLong() {
+    TextMapCodec.contextFromString("1fffffffffffffff6fffffffffffffff5:dd:cc:1");
+  }
+
+  @Test
+  public void testContextFromStringMalformedFields() {
+    String[] malformed = {
+        "ff:dd:cc", "ff:dd:cc:4:1", "ff:dd:cc:", ":dd:cc:4", "ff::cc:4", "fg:dd:cc:4", "ff:dd:cc:-4",
+        "ff:1ffffffffffffffff:cc:4", "ff:dd:cc:4 ", ":::"
+    };
+    for (String value : malformed) {
+      try {
+        TextMapCodec.contextFromString(value);
+        fail("Expected " + value + " to be malformed");
+      } catch (MalformedTracerStateStringException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testContextFromStringUpperCase() {
+    JaegerSpanContext context = TextMapCodec.contextFromString("FF:Dd:ffffffffffffffff:1");
+    assertEquals(255, context.getTraceId());
+    assertEquals(221, context.getSpanId());
+    assertEquals(-1L, context.getParentId());
+    assertEquals(1, context.getFlags());
+  }
+
+  @Test
+  public void testExtractIgnoresKeyCase() {
+    TextMapCodec codec = new TextMapCodec(true);
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put("Uber-Trace-Id", "ff%3Add%3A0%3A1");
+    headers.put("UberCtx-Some-Key", "some%20value");
+
+    JaegerSpanContext context = codec.extract(new TextMapExtractAdapter(headers));
+    assertEquals(255, context.getTraceId());
+    assertEquals(221, context.getSpanId());
+    assertEquals("some value", context.getBaggageItem("some-key"));
+  }
+
+  @Test
+  public void testInjectExtract128BitTraceId() {
+    TextMapCodec codec = new TextMapCodec(true);
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put("jaeger-baggage", "k1=v1");
+    codec.inject(new JaegerSpanContext(1L, 2L, 3L, 0L, (byte) 1), new TextMapInjectAdapter(headers));
+    JaegerSpanContext context = codec.extract(new TextMapExtractAdapter(headers));
+    assertEquals(1L, context.getTraceIdHigh());
+    assertEquals(2L, context.getTraceIdLow());
+    assertEquals(3L, context.getSpanId());
+    assertEquals("v1", context.getBaggageItem("k1"));
+  }
+
+  @Test
+  public void testInjectReusesEncodedHeaders() {
+    TextMapCodec codec = new TextMapCodec(true);
+    JaegerSpanContext context = new JaegerSpanContext(1L, 2L, 3L, 0L, (byte) 1)
+        .withBaggageItem("key", "some value");
+
+    Map<String, String> first = new HashMap<String, String>();
+    codec.inject(context, new TextMapInjectAdapter(first));
+    Map<String, String> second = new HashMap<String, String>();
+    codec.inject(context, new TextMapInjectAdapter(second));
+
+    assertEquals(first, second);
+    assertEquals("10000000000000002%3A3%3A0%3A1", first.get("uber-trace-id"));
+    assertEquals("some+value", first.get("uberctx-key"));
+    assertSame(first.get("uber-trace-id"), second.get("uber-trace-id"));
+    assertSame(first.get("uberctx-key"), second.get("uberctx-key"));
+  }
+
+  @Test
+  public void testInjectWithOtherCodecEncodesAgain() {
+    TextMapCodec httpCodec = new TextMapCodec(true);
+    TextMapCodec textCodec = new TextMapCodec(false);
+    JaegerSpanContext context = new JaegerSpanContext(0xaL, 0xbL, 0L, (byte) 1)
+        .withBaggageItem("key", "some value");
+
+    Map<String, String> headers = new HashMap<String, String>();
+    httpCodec.inject(context, new TextMapInjectAdapter(headers));
+    assertEquals("a%3Ab%3A0%3A1", headers.get("uber-trace-id"));
+    assertEquals("some+value", headers.get("uberctx-key"));
+
+    textCodec.inject(context, new TextMapInjectAdapter(headers));
+    assertEquals("a:b:0:1", headers.get("uber-trace-id"));
+    assertEquals("some value", headers.get("uberctx-key"));
+
+    JaegerSpanContext changed = context.withBaggageItem("key", "other");
+    textCodec.inject(changed, new TextMapInjectAdapter(headers));
+    assertEquals("other", headers.get("uberctx-key"));
+  }
+
   /**
    * Tests that the codec will include baggage from header "jaeger-baggage".
    */
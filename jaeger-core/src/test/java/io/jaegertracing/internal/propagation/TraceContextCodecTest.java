@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.propagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerSpanContext;
+import io.jaegertracing.internal.JaegerTracer;
+import io.jaegertracing.internal.reporters.InMemoryReporter;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapExtractAdapter;
+import io.opentracing.propagation.TextMapInjectAdapter;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class TraceContextCodecTest {
+  private static final String TRACE_PARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+  private final TraceContextCodec codec = new TraceContextCodec.Builder().build();
+
+  @Test
+  public void testExtract() {
+    JaegerSpanContext context = extract(TRACE_PARENT, "congo=t61rcWkgMzE");
+
+    assertEquals(0x0af7651916cd43ddL, context.getTraceIdHigh());
+    assertEquals(0x8448eb211c80319cL, context.getTraceIdLow());
+    assertEquals(0xb7ad6b7169203331L, context.getSpanId());
+    assertEquals(0, context.getParentId());
+    assertTrue(context.isSampled());
+    assertFalse(context.isDebug());
+    assertEquals("congo=t61rcWkgMzE", context.getTraceState());
+  }
+
+  @Test
+  public void testExtractNotSampled() {
+    JaegerSpanContext context = extract("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-00", null);
+    assertFalse(context.isSampled());
+    assertNull(context.getTraceState());
+  }
+
+  @Test
+  public void testExtractIgnoresKeyCase() {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put("TraceParent", TRACE_PARENT);
+    assertEquals(0xb7ad6b7169203331L, codec.extract(new TextMapExtractAdapter(headers)).getSpanId());
+  }
+
+  @Test
+  public void testExtractLaterVersion() {
+    JaegerSpanContext context = extract("01-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-future", null);
+    assertEquals(0xb7ad6b7169203331L, context.getSpanId());
+  }
+
+  @Test
+  public void testExtractInvalid() {
+    String[] invalid = {
+        "",
+        "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-0",
+        "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-",
+        "00-0AF7651916CD43DD8448EB211C80319C-b7ad6b7169203331-01",
+        "00-0af7651916cd43dd8448eb211c80319c-b7ad6b716920333g-01",
+        "00_0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01",
+        "ff-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01",
+        "01-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01future",
+        "00-00000000000000000000000000000000-b7ad6b7169203331-01",
+        "00-0af7651916cd43dd8448eb211c80319c-0000000000000000-01",
+    };
+    for (String traceParent : invalid) {
+      assertNull(traceParent, extract(traceParent, null));
+    }
+  }
+
+  @Test
+  public void testExtractWithoutTraceParent() {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put("tracestate", "congo=t61rcWkgMzE");
+    assertNull(codec.extract(new TextMapExtractAdapter(headers)));
+  }
+
+  @Test
+  public void testInject() {
+    JaegerSpanContext context = new JaegerSpanContext(0x0af7651916cd43ddL, 0x8448eb211c80319cL,
+        0xb7ad6b7169203331L, 0L, (byte) 1).withTraceState("congo=t61rcWkgMzE");
+
+    Map<String, String> headers = new HashMap<String, String>();
+    codec.inject(context, new TextMapInjectAdapter(headers));
+
+    assertEquals(2, headers.size());
+    assertEquals(TRACE_PARENT, headers.get("traceparent"));
+    assertEquals("congo=t61rcWkgMzE", headers.get("tracestate"));
+  }
+
+  @Test
+  public void testInject64BitTraceIdNotSampled() {
+    Map<String, String> headers = new HashMap<String, String>();
+    codec.inject(new JaegerSpanContext(0xabcL, 0xdefL, 0L, (byte) 0), new TextMapInjectAdapter(headers));
+
+    assertEquals(1, headers.size());
+    assertEquals("00-00000000000000000000000000000abc-0000000000000def-00", headers.get("traceparent"));
+  }
+
+  @Test
+  public void testChildSpanKeepsTraceState() {
+    JaegerTracer tracer = new JaegerTracer.Builder("service")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .registerInjector(Format.Builtin.HTTP_HEADERS, codec)
+        .registerExtractor(Format.Builtin.HTTP_HEADERS, codec)
+        .build();
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put("traceparent", TRACE_PARENT);
+    headers.put("tracestate", "congo=t61rcWkgMzE");
+    JaegerSpanContext parent = tracer.extract(Format.Builtin.HTTP_HEADERS, new TextMapExtractAdapter(headers));
+
+    JaegerSpan span = tracer.buildSpan("foo").asChildOf(parent).start();
+    span.setBaggageItem("key", "value");
+    Map<String, String> injected = new HashMap<String, String>();
+    tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new TextMapInjectAdapter(injected));
+
+    assertTrue(injected.get("traceparent").startsWith("00-0af7651916cd43dd8448eb211c80319c-"));
+    assertFalse(injected.get("traceparent").contains("b7ad6b7169203331"));
+    assertEquals("congo=t61rcWkgMzE", injected.get("tracestate"));
+  }
+
+  private JaegerSpanContext extract(String traceParent, String traceState) {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put("traceparent", traceParent);
+    if (traceState != null) {
+      headers.put("tracestate", traceState);
+    }
+    return codec.extract(new TextMapExtractAdapter(headers));
+  }
+}
@@ -15,11 +15,8 @@
 package io.jaegertracing.internal.reporters;
 
 import static org.awaitility.Awaitility.await;
-import static org.hamcrest.CoreMatchers.anyOf;
-import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import io.jaegertracing.internal.JaegerSpan;
@@ -103,16 +100,43 @@ public class RemoteReporterTest {
   }
 
   @Test
-  public void testRemoteReporterFlushTimerThread() {
+  public void testRemoteReporterQueueProcessorThread() {
     int flushTimerThreadCount = 0;
+    int queueProcessorThreadCount = 0;
     for (Thread thread : Thread.getAllStackTraces().keySet()) {
-      if (!thread.getName().equals("jaeger.RemoteReporter-FlushTimer")) {
-        continue;
+      if (thread.getName().equals("jaeger.RemoteReporter-FlushTimer")) {
+        ++flushTimerThreadCount;
+      }
+      if (thread.getName().equals("jaeger.RemoteReporter-QueueProcessor")) {
+        ++queueProcessorThreadCount;
+        assertTrue(thread.isDaemon());
       }
-      ++flushTimerThreadCount;
-      assertTrue(thread.isDaemon());
     }
-    assertFalse(flushTimerThreadCount == 0);
+    // flushes are driven by the queue processor itself
+    assertEquals(0, flushTimerThreadCount);
+    assertFalse(queueProcessorThreadCount == 0);
+  }
+
+  @Test
+  public void testFlushIntervalUnderLoad() {
+    int shortFlushInterval = 50;
+    reporter = new RemoteReporter.Builder()
+        .withSender(sender)
+        .withFlushInterval(shortFlushInterval)
+        .withMaxQueueSize(maxQueueSize)
+        .withMetrics(metrics)
+        .build();
+
+    // keep the queue busy for several flush intervals, spans must still be flushed in time
+    long deadline = System.currentTimeMillis() + 5 * shortFlushInterval;
+    while (System.currentTimeMillis() < deadline) {
+      reporter.report(newSpan());
+    }
+    await()
+        .with()
+        .pollInterval(1, TimeUnit.MILLISECONDS)
+        .atMost(10 * shortFlushInterval, TimeUnit.MILLISECONDS)
+        .until(() -> sender.getFlushed().size() > 0);
   }
 
   // Starts a number of threads. Each can fill the queue on its own, so they will exceed its
@@ -160,18 +184,21 @@ public class RemoteReporterTest {
     // change sender to blocking mode
     sender.permitAppend(0);
 
+    // wait until the reporter thread is stuck appending the first span
+    reporter.report(newSpan());
+    await().atMost(1, TimeUnit.SECONDS).until(() -> sender.isAppendBlocked());
+
     for (int i = 0; i < maxQueueSize; i++) {
       reporter.report(newSpan());
     }
 
-    // When: at this point the queue is full or there is one slot empty (if the worker thread has
-    // already picked up some command). We add two spans to make sure that we overfill the queue
+    // When: at this point the queue is full. We add two more spans
     reporter.report(newSpan());
     reporter.report(newSpan());
 
-    // Then: one or both spans should be dropped
+    // Then: both spans should be dropped
     long droppedCount = metricsFactory.getCounter("jaeger:reporter_spans", "result=dropped");
-    assertThat(droppedCount, anyOf(equalTo(1L), equalTo(2L)));
+    assertEquals(2, droppedCount);
   }
 
   @Test
@@ -279,6 +306,82 @@ public class RemoteReporterTest {
     assertEquals("mySpan", (sender.getReceived().get(0)).getOperationName());
   }
 
+  @Test
+  public void testRingBufferQueueFlushesOnClose() {
+    reporter = new RemoteReporter.Builder()
+        .withSender(sender)
+        .withFlushInterval(flushInterval)
+        .withQueue(new RingBufferReporterQueue(maxQueueSize))
+        .withMetrics(metrics)
+        .build();
+    tracer = new JaegerTracer.Builder("test-remote-reporter")
+        .withReporter(reporter)
+        .withSampler(new ConstSampler(true))
+        .withMetrics(metrics)
+        .build();
+
+    int numberOfSpans = 100;
+    for (int i = 0; i < numberOfSpans; i++) {
+      tracer.buildSpan("raza").start().finish();
+    }
+    reporter.close();
+
+    assertEquals(0, sender.getAppended().size());
+    assertEquals(numberOfSpans, sender.getFlushed().size());
+    assertEquals(100, metricsFactory.getCounter("jaeger:reporter_spans", "result=ok"));
+  }
+
+  @Test
+  public void testRingBufferQueueDropsWhenFull() {
+    reporter = new RemoteReporter.Builder()
+        .withSender(sender)
+        .withFlushInterval(flushInterval)
+        .withQueue(new RingBufferReporterQueue(maxQueueSize))
+        .withMetrics(metrics)
+        .build();
+    // change sender to blocking mode
+    sender.permitAppend(0);
+
+    reporter.report(newSpan());
+    await().atMost(1, TimeUnit.SECONDS).until(() -> sender.isAppendBlocked());
+
+    for (int i = 0; i < maxQueueSize + 2; i++) {
+      reporter.report(newSpan());
+    }
+
+    long droppedCount = metricsFactory.getCounter("jaeger:reporter_spans", "result=dropped");
+    assertEquals(2, droppedCount);
+  }
+
+  @Test
+  public void testDropsWhenOverMaxQueueSizeBytes() {
+    JaegerSpan span = newSpan();
+    long spanBytes = SpanSizeEstimator.estimate(span);
+    reporter = new RemoteReporter.Builder()
+        .withSender(sender)
+        .withFlushInterval(flushInterval)
+        .withMaxQueueSize(maxQueueSize)
+        .withMaxQueueSizeBytes(3 * spanBytes)
+        .withMetrics(metrics)
+        .build();
+    // change sender to blocking mode
+    sender.permitAppend(0);
+
+    reporter.report(span);
+    await().atMost(1, TimeUnit.SECONDS).until(() -> sender.isAppendBlocked());
+
+    // plenty of room by count, but the large span does not fit next to the 3 small ones
+    JaegerSpan large = newSpan();
+    large.log(new String(new char[(int) spanBytes]));
+    reporter.report(newSpan());
+    reporter.report(newSpan());
+    reporter.report(large);
+    reporter.report(newSpan());
+
+    long droppedCount = metricsFactory.getCounter("jaeger:reporter_spans", "result=dropped");
+    assertEquals(1, droppedCount);
+  }
+
   private JaegerSpan newSpan() {
     return tracer.buildSpan("x").start();
   }
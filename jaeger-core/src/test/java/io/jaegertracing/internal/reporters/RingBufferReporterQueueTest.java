@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.reporters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerTracer;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RingBufferReporterQueueTest {
+  private JaegerTracer tracer;
+
+  @Before
+  public void setUp() {
+    tracer = new JaegerTracer.Builder("test-ring-buffer")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacityTooSmall() {
+    new RingBufferReporterQueue(1);
+  }
+
+  @Test
+  public void testFifoAcrossLaps() {
+    RingBufferReporterQueue queue = new RingBufferReporterQueue(3);
+    for (int lap = 0; lap < 5; lap++) {
+      JaegerSpan first = newSpan();
+      JaegerSpan second = newSpan();
+      assertTrue(queue.offer(first));
+      assertTrue(queue.offer(second));
+      assertEquals(2, queue.size());
+      assertSame(first, queue.poll());
+      assertSame(second, queue.poll());
+      assertNull(queue.poll());
+      assertEquals(0, queue.size());
+    }
+  }
+
+  @Test
+  public void testOfferWhenFull() {
+    RingBufferReporterQueue queue = new RingBufferReporterQueue(2);
+    assertTrue(queue.offer(newSpan()));
+    assertTrue(queue.offer(newSpan()));
+    assertFalse(queue.offer(newSpan()));
+    assertEquals(2, queue.size());
+
+    queue.poll();
+    assertTrue(queue.offer(newSpan()));
+    assertFalse(queue.offer(newSpan()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeMaxBytes() {
+    new RingBufferReporterQueue(2, -1);
+  }
+
+  @Test
+  public void testOfferWhenOverBudget() {
+    JaegerSpan small = newSpan();
+    JaegerSpan large = newSpan();
+    large.log(new String(new char[10000]));
+    long smallBytes = SpanSizeEstimator.estimate(small);
+    long largeBytes = SpanSizeEstimator.estimate(large);
+
+    RingBufferReporterQueue queue = new RingBufferReporterQueue(10, largeBytes + smallBytes);
+    assertTrue(queue.offer(large));
+    assertTrue(queue.offer(small));
+    assertEquals(largeBytes + smallBytes, queue.sizeInBytes());
+    // plenty of free slots, but no memory left
+    assertFalse(queue.offer(newSpan()));
+
+    assertSame(large, queue.poll());
+    assertEquals(smallBytes, queue.sizeInBytes());
+    assertTrue(queue.offer(newSpan()));
+    assertFalse(queue.offer(large));
+
+    queue.poll();
+    queue.poll();
+    assertEquals(0, queue.sizeInBytes());
+  }
+
+  @Test
+  public void testReleasesBytesWhenFull() {
+    RingBufferReporterQueue queue = new RingBufferReporterQueue(2, Long.MAX_VALUE);
+    assertTrue(queue.offer(newSpan()));
+    assertTrue(queue.offer(newSpan()));
+    long bytes = queue.sizeInBytes();
+    assertFalse(queue.offer(newSpan()));
+    assertEquals(bytes, queue.sizeInBytes());
+  }
+
+  @Test
+  public void testDrainTo() {
+    RingBufferReporterQueue queue = new RingBufferReporterQueue(4);
+    JaegerSpan first = newSpan();
+    JaegerSpan second = newSpan();
+    JaegerSpan third = newSpan();
+    queue.offer(first);
+    queue.offer(second);
+    queue.offer(third);
+
+    List<JaegerSpan> drained = new ArrayList<>();
+    assertEquals(2, queue.drainTo(drained, 2));
+    assertEquals(2, drained.size());
+    assertSame(first, drained.get(0));
+    assertSame(second, drained.get(1));
+
+    assertEquals(1, queue.drainTo(drained, 10));
+    assertSame(third, drained.get(2));
+    assertEquals(0, queue.drainTo(drained, 10));
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    final int producers = 8;
+    final int spansPerProducer = 10000;
+    final RingBufferReporterQueue queue = new RingBufferReporterQueue(64);
+    final CyclicBarrier barrier = new CyclicBarrier(producers);
+
+    final JaegerSpan[] spans = new JaegerSpan[producers * spansPerProducer];
+    for (int i = 0; i < spans.length; i++) {
+      spans[i] = newSpan();
+    }
+
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      final int offset = p * spansPerProducer;
+      Thread thread = new Thread(() -> {
+        try {
+          barrier.await();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        for (int i = 0; i < spansPerProducer; i++) {
+          while (!queue.offer(spans[offset + i])) {
+            Thread.yield();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    Set<JaegerSpan> received = new HashSet<>();
+    while (received.size() < spans.length) {
+      JaegerSpan span = queue.poll();
+      if (span != null) {
+        assertTrue("span received twice", received.add(span));
+      }
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(queue.poll());
+  }
+
+  private JaegerSpan newSpan() {
+    return tracer.buildSpan("x").start();
+  }
+}
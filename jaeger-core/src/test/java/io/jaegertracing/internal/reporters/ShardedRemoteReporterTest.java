@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.reporters;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerTracer;
+import io.jaegertracing.internal.metrics.InMemoryMetricsFactory;
+import io.jaegertracing.internal.metrics.Metrics;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import io.jaegertracing.internal.senders.InMemorySender;
+import io.jaegertracing.spi.Sender;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedRemoteReporterTest {
+  private static final int SHARDS = 4;
+
+  private InMemoryMetricsFactory metricsFactory;
+  private Metrics metrics;
+  private List<InMemorySender> senders;
+  private ShardedRemoteReporter reporter;
+  private JaegerTracer tracer;
+
+  @Before
+  public void setUp() {
+    metricsFactory = new InMemoryMetricsFactory();
+    metrics = new Metrics(metricsFactory);
+    senders = new ArrayList<>();
+    for (int i = 0; i < SHARDS; i++) {
+      senders.add(new InMemorySender());
+    }
+    reporter = new ShardedRemoteReporter.Builder()
+        .withSenders(new ArrayList<Sender>(senders))
+        .withFlushInterval(Integer.MAX_VALUE)
+        .withMetrics(metrics)
+        .build();
+    tracer = new JaegerTracer.Builder("test-sharded-remote-reporter")
+        .withReporter(reporter)
+        .withSampler(new ConstSampler(true))
+        .withMetrics(metrics)
+        .build();
+  }
+
+  @Test
+  public void testOneShardPerSender() {
+    assertEquals(SHARDS, reporter.getShards().size());
+  }
+
+  @Test
+  public void testSpansOfATraceGoToTheSameShard() {
+    int traces = 100;
+    for (int i = 0; i < traces; i++) {
+      JaegerSpan root = tracer.buildSpan("root").start();
+      tracer.buildSpan("child").asChildOf(root).start().finish();
+      root.finish();
+    }
+    reporter.close();
+
+    int total = 0;
+    for (InMemorySender sender : senders) {
+      for (JaegerSpan span : sender.getFlushed()) {
+        int shard = ShardedRemoteReporter.shardIndex(span.context().getTraceId(), SHARDS);
+        assertEquals(sender, senders.get(shard));
+      }
+      total += sender.getFlushed().size();
+    }
+    assertEquals(2 * traces, total);
+    assertEquals(2 * traces, metricsFactory.getCounter("jaeger:reporter_spans", "result=ok"));
+  }
+
+  @Test
+  public void testQueueLengthIsAggregated() {
+    for (int i = 0; i < SHARDS; i++) {
+      // change senders to blocking mode, and block every reporter thread on a span
+      senders.get(i).permitAppend(0);
+      reporter.getShards().get(i).report(tracer.buildSpan("blocked").start());
+    }
+    for (final InMemorySender sender : senders) {
+      await().atMost(1, TimeUnit.SECONDS).until(() -> sender.isAppendBlocked());
+    }
+    for (int i = 0; i < 100; i++) {
+      tracer.buildSpan("span").start().finish();
+    }
+
+    for (RemoteReporter shard : reporter.getShards()) {
+      shard.flush();
+    }
+
+    long queueLength = metricsFactory.getGauge("jaeger:reporter_queue_length", "");
+    assertEquals(100, queueLength);
+  }
+
+  @Test
+  public void testShardIndexInRange() {
+    long[] traceIds = {0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE, 0x123456789abcdefL};
+    for (long traceId : traceIds) {
+      int shard = ShardedRemoteReporter.shardIndex(traceId, 3);
+      assertTrue(shard >= 0 && shard < 3);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.reporters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerTracer;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpanSizeEstimatorTest {
+  private JaegerTracer tracer;
+
+  @Before
+  public void setUp() {
+    tracer = new JaegerTracer.Builder("test-size-estimator")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .build();
+  }
+
+  @Test
+  public void testBareSpan() {
+    JaegerSpan span = tracer.buildSpan("op").start();
+    // the sampler tags are set on root spans
+    long tags = SpanSizeEstimator.estimate(span) - SpanSizeEstimator.SPAN_OVERHEAD
+        - SpanSizeEstimator.STRING_OVERHEAD - 2 * "op".length();
+    assertTrue(tags > 0);
+  }
+
+  @Test
+  public void testStringsCountTwoBytesPerChar() {
+    JaegerSpan span = tracer.buildSpan("op").start();
+    long before = SpanSizeEstimator.estimate(span);
+    span.setTag("key", "value");
+    assertEquals(before + SpanSizeEstimator.ENTRY_OVERHEAD + 2 * SpanSizeEstimator.STRING_OVERHEAD
+        + 2 * "keyvalue".length(), SpanSizeEstimator.estimate(span));
+
+    before = SpanSizeEstimator.estimate(span);
+    span.setTag("number", 42);
+    assertEquals(before + SpanSizeEstimator.ENTRY_OVERHEAD + SpanSizeEstimator.STRING_OVERHEAD
+        + 2 * "number".length(), SpanSizeEstimator.estimate(span));
+  }
+
+  @Test
+  public void testLogs() {
+    JaegerSpan span = tracer.buildSpan("op").start();
+    long before = SpanSizeEstimator.estimate(span);
+    span.log("message");
+    span.log(Collections.singletonMap("stack", "trace"));
+    assertEquals(before
+        + 2 * SpanSizeEstimator.LOG_OVERHEAD
+        + SpanSizeEstimator.STRING_OVERHEAD + 2 * "message".length()
+        + SpanSizeEstimator.ENTRY_OVERHEAD + 2 * SpanSizeEstimator.STRING_OVERHEAD + 2 * "stacktrace".length(),
+        SpanSizeEstimator.estimate(span));
+  }
+
+  @Test
+  public void testExceptionCountsMessageAndStackFrames() {
+    JaegerSpan span = tracer.buildSpan("op").start();
+    long before = SpanSizeEstimator.estimate(span);
+    Exception exception = new IllegalStateException("failure", new RuntimeException("cause"));
+    span.log(Collections.singletonMap("error.object", exception));
+
+    long frames = exception.getStackTrace().length + exception.getCause().getStackTrace().length;
+    assertTrue(frames > 0);
+    assertEquals(before
+        + SpanSizeEstimator.LOG_OVERHEAD
+        + SpanSizeEstimator.ENTRY_OVERHEAD + SpanSizeEstimator.STRING_OVERHEAD + 2 * "error.object".length()
+        + 2 * SpanSizeEstimator.STRING_OVERHEAD + 2 * "failurecause".length()
+        + frames * SpanSizeEstimator.FRAME_OVERHEAD,
+        SpanSizeEstimator.estimate(span));
+  }
+
+  @Test
+  public void testObjectsCountTheirStringForm() {
+    JaegerSpan span = tracer.buildSpan("op").start();
+    long before = SpanSizeEstimator.estimate(span);
+    span.log(Collections.singletonMap("list", Collections.singletonList("value")));
+    assertEquals(before
+        + SpanSizeEstimator.LOG_OVERHEAD
+        + SpanSizeEstimator.ENTRY_OVERHEAD + 2 * SpanSizeEstimator.STRING_OVERHEAD + 2 * "list[value]".length(),
+        SpanSizeEstimator.estimate(span));
+  }
+
+  @Test
+  public void testReferences() {
+    JaegerSpan parent = tracer.buildSpan("op").start();
+    JaegerSpan child = tracer.buildSpan("op").asChildOf(parent).start();
+    assertEquals(SpanSizeEstimator.SPAN_OVERHEAD + SpanSizeEstimator.STRING_OVERHEAD + 2 * "op".length()
+        + SpanSizeEstimator.REFERENCE_OVERHEAD, SpanSizeEstimator.estimate(child));
+  }
+}
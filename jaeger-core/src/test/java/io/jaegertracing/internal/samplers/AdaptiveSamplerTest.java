@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.samplers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.jaegertracing.internal.clock.Clock;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveSamplerTest {
+  private static final double TARGET_TRACES_PER_SECOND = 10.0;
+  private static final double DELTA = 0.0001;
+
+  private MockClock clock;
+  private AdaptiveSampler undertest;
+
+  private static class MockClock implements Clock {
+    long timeNanos;
+    int nanoTicksReads;
+
+    @Override
+    public long currentTimeMicros() {
+      return 0;
+    }
+
+    @Override
+    public long currentNanoTicks() {
+      nanoTicksReads++;
+      return timeNanos;
+    }
+
+    @Override
+    public boolean isMicrosAccurate() {
+      return false;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    clock = new MockClock();
+    undertest = new AdaptiveSampler(TARGET_TRACES_PER_SECOND, 1.0, 2, clock);
+  }
+
+  @After
+  public void tearDown() {
+    undertest.close();
+  }
+
+  @Test
+  public void testInitialSamplingRate() {
+    undertest.sample("op", 1L);
+    assertEquals(ProbabilisticSampler.DEFAULT_SAMPLING_PROBABILITY, undertest.getSamplingRate("op"), DELTA);
+  }
+
+  @Test
+  public void testSamplingRateTargetsTracesPerSecond() {
+    sampleForOneSecond("op", 1000);
+    assertEquals(TARGET_TRACES_PER_SECOND / 1000, undertest.getSamplingRate("op"), DELTA);
+  }
+
+  @Test
+  public void testSamplesEverythingBelowTarget() {
+    sampleForOneSecond("op", 5);
+    assertEquals(1.0, undertest.getSamplingRate("op"), DELTA);
+  }
+
+  @Test
+  public void testRateIsSmoothed() {
+    sampleForOneSecond("op", 1000);
+    sampleForOneSecond("op", 3000);
+    // the average of both windows is 2000 calls per second
+    assertEquals(TARGET_TRACES_PER_SECOND / 2000, undertest.getSamplingRate("op"), DELTA);
+  }
+
+  @Test
+  public void testClockIsReadEveryFewCallsOfBusyOperation() {
+    sampleForOneSecond("op", 6400);
+    clock.nanoTicksReads = 0;
+    for (int i = 0; i < 640; i++) {
+      undertest.sample("op", 1L);
+    }
+    assertEquals(10, clock.nanoTicksReads);
+
+    // the rate is still measured over the whole window
+    clock.timeNanos += TimeUnit.SECONDS.toNanos(1);
+    for (int i = 0; i < 64; i++) {
+      undertest.sample("op", 1L);
+    }
+    assertEquals(TARGET_TRACES_PER_SECOND / ((6400 + 704) / 2), undertest.getSamplingRate("op"), DELTA);
+  }
+
+  @Test
+  public void testOperationsBeyondMaxShareTheirRate() {
+    undertest.sample("first", 1L);
+    undertest.sample("second", 1L);
+    for (int i = 0; i < 500; i++) {
+      undertest.sample("third", 1L);
+      undertest.sample("fourth", 1L);
+    }
+    clock.timeNanos += TimeUnit.SECONDS.toNanos(1);
+    undertest.sample("fifth", 1L);
+
+    assertEquals(TARGET_TRACES_PER_SECOND / 1001, undertest.getSamplingRate("third"), DELTA);
+    assertEquals(TARGET_TRACES_PER_SECOND / 1001, undertest.getSamplingRate("fifth"), DELTA);
+  }
+
+  @Test
+  public void testLowerBoundIsSampled() {
+    // the lower bound of 1 trace per second allows one trace, even though the probability is tiny
+    assertTrue(undertest.sample("op", Long.MAX_VALUE).isSampled());
+    assertFalse(undertest.sample("op", Long.MAX_VALUE).isSampled());
+  }
+
+  @Test
+  public void testUpdate() {
+    assertFalse(undertest.update(1.0));
+    assertTrue(undertest.update(2.0));
+    assertEquals(2.0, undertest.getLowerBound(), DELTA);
+    assertEquals(new AdaptiveSampler(TARGET_TRACES_PER_SECOND, 2.0, 2), undertest);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTarget() {
+    new AdaptiveSampler(0, 1.0);
+  }
+
+  /**
+   * Samples the operation the given number of times over a window, the last call ending it. After the
+   * first window, the clock is only read every few calls, so the number of calls must be a multiple of them.
+   */
+  private void sampleForOneSecond(String operation, int calls) {
+    for (int i = 0; i < calls - 1; i++) {
+      undertest.sample(operation, 1L);
+    }
+    clock.timeNanos += TimeUnit.SECONDS.toNanos(1);
+    undertest.sample(operation, 1L);
+  }
+}
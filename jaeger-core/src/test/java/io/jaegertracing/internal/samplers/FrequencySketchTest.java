@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.samplers;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FrequencySketchTest {
+
+  @Test
+  public void testFrequency() {
+    FrequencySketch sketch = new FrequencySketch(100);
+    assertEquals(0, sketch.frequency("operation"));
+    for (int i = 0; i < 5; i++) {
+      sketch.increment("operation");
+    }
+    sketch.increment("other operation");
+
+    assertEquals(5, sketch.frequency("operation"));
+    assertEquals(1, sketch.frequency("other operation"));
+  }
+
+  @Test
+  public void testFrequencySaturates() {
+    FrequencySketch sketch = new FrequencySketch(100);
+    for (int i = 0; i < 100; i++) {
+      sketch.increment("operation");
+    }
+    assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency("operation"));
+  }
+
+  @Test
+  public void testAgeHalvesFrequency() {
+    FrequencySketch sketch = new FrequencySketch(100);
+    for (int i = 0; i < 10; i++) {
+      sketch.increment("operation");
+    }
+    sketch.increment("other operation");
+
+    sketch.age();
+    assertEquals(5, sketch.frequency("operation"));
+    assertEquals(0, sketch.frequency("other operation"));
+  }
+}
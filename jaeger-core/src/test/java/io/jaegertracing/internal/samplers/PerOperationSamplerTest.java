@@ -17,18 +17,24 @@ package io.jaegertracing.internal.samplers;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
+import io.jaegertracing.internal.metrics.InMemoryMetricsFactory;
+import io.jaegertracing.internal.metrics.Metrics;
 import io.jaegertracing.internal.samplers.http.OperationSamplingParameters;
 import io.jaegertracing.internal.samplers.http.PerOperationSamplingParameters;
 import io.jaegertracing.internal.samplers.http.ProbabilisticSamplingStrategy;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -48,7 +54,7 @@ public class PerOperationSamplerTest {
   private static final String OPERATION = "some OPERATION";
 
   @Mock private ProbabilisticSampler defaultProbabilisticSampler;
-  private HashMap<String, GuaranteedThroughputSampler> operationToSamplers = new HashMap<>();
+  private ConcurrentHashMap<String, GuaranteedThroughputSampler> operationToSamplers = new ConcurrentHashMap<>();
   private PerOperationSampler undertest;
 
   @Before
@@ -85,7 +91,7 @@ public class PerOperationSamplerTest {
 
   @Test
   public void testPerOperationSamplerWithKnownOperation() {
-    GuaranteedThroughputSampler sampler = mock(GuaranteedThroughputSampler.class);
+    GuaranteedThroughputSampler sampler = mockGuaranteedThroughputSampler();
     operationToSamplers.put(OPERATION, sampler);
 
     when(sampler.sample(OPERATION, TRACE_ID)).thenReturn(SamplingStatus.of(true, new HashMap<String, Object>()));
@@ -98,7 +104,7 @@ public class PerOperationSamplerTest {
 
   @Test
   public void testUpdate() {
-    GuaranteedThroughputSampler guaranteedThroughputSampler = mock(GuaranteedThroughputSampler.class);
+    GuaranteedThroughputSampler guaranteedThroughputSampler = mockGuaranteedThroughputSampler();
     operationToSamplers.put(OPERATION, guaranteedThroughputSampler);
 
     PerOperationSamplingParameters perOperationSamplingParameters =
@@ -138,7 +144,7 @@ public class PerOperationSamplerTest {
 
   @Test
   public void testUpdateIgnoreGreaterThanMax() {
-    GuaranteedThroughputSampler guaranteedThroughputSampler = mock(GuaranteedThroughputSampler.class);
+    GuaranteedThroughputSampler guaranteedThroughputSampler = mockGuaranteedThroughputSampler();
     operationToSamplers.put(OPERATION, guaranteedThroughputSampler);
 
     PerOperationSampler undertest = new PerOperationSampler(1, operationToSamplers,
@@ -175,4 +181,172 @@ public class PerOperationSamplerTest {
                  operationToSamplers.get(OPERATION));
   }
 
+  @Test
+  public void testConcurrentSamplingAddsAtMostMaxOperations() throws Exception {
+    final int threadCount = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = 0; j < 2 * MAX_OPERATIONS; j++) {
+            undertest.sample("operation " + j, TRACE_ID);
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(MAX_OPERATIONS, operationToSamplers.size());
+  }
+
+  @Test
+  public void testEvictLeastFrequentOperation() {
+    InMemoryMetricsFactory metricsFactory = new InMemoryMetricsFactory();
+    undertest = new PerOperationSampler(2, operationToSamplers, new ProbabilisticSampler(DEFAULT_SAMPLING_PROBABILITY),
+        DEFAULT_LOWER_BOUND_TRACES_PER_SECOND, new Metrics(metricsFactory));
+
+    for (int i = 0; i < 5; i++) {
+      undertest.sample("frequent", TRACE_ID);
+    }
+    undertest.sample("rare", TRACE_ID);
+    assertEquals(2, operationToSamplers.size());
+
+    // seen once, not admitted yet
+    undertest.sample("new", TRACE_ID);
+    assertNull(operationToSamplers.get("new"));
+    assertEquals(0, metricsFactory.getCounter("jaeger:sampler_operation_evictions", ""));
+
+    // now more frequent than the rare operation
+    undertest.sample("new", TRACE_ID);
+    assertNotNull(operationToSamplers.get("frequent"));
+    assertNotNull(operationToSamplers.get("new"));
+    assertNull(operationToSamplers.get("rare"));
+    assertEquals(1, metricsFactory.getCounter("jaeger:sampler_operation_evictions", ""));
+    // hits are only counted on updates
+    assertEquals(0, metricsFactory.getCounter("jaeger:sampler_operations", "result=hit"));
+    undertest.update(strategies());
+    assertEquals(4, metricsFactory.getCounter("jaeger:sampler_operations", "result=hit"));
+    assertEquals(4, metricsFactory.getCounter("jaeger:sampler_operations", "result=miss"));
+  }
+
+  @Test
+  public void testUniqueOperationsDoNotEvict() {
+    InMemoryMetricsFactory metricsFactory = new InMemoryMetricsFactory();
+    undertest = new PerOperationSampler(10, operationToSamplers, new ProbabilisticSampler(DEFAULT_SAMPLING_PROBABILITY),
+        DEFAULT_LOWER_BOUND_TRACES_PER_SECOND, new Metrics(metricsFactory));
+
+    for (int i = 0; i < 1000; i++) {
+      if (i % 10 == 0) {
+        for (int j = 0; j < 10; j++) {
+          undertest.sample("operation " + j, TRACE_ID);
+        }
+      }
+      undertest.sample("unique " + i, TRACE_ID);
+    }
+
+    assertEquals(10, operationToSamplers.size());
+    for (int j = 0; j < 10; j++) {
+      assertNotNull(operationToSamplers.get("operation " + j));
+    }
+    assertEquals(0, metricsFactory.getCounter("jaeger:sampler_operation_evictions", ""));
+  }
+
+  @Test
+  public void testStrategyOperationIsNotEvicted() {
+    undertest = new PerOperationSampler(2, operationToSamplers, new ProbabilisticSampler(DEFAULT_SAMPLING_PROBABILITY),
+        DEFAULT_LOWER_BOUND_TRACES_PER_SECOND);
+    undertest.update(strategies("strategy"));
+    undertest.sample("other", TRACE_ID);
+
+    for (int i = 0; i < 10; i++) {
+      undertest.sample("new " + i, TRACE_ID);
+      undertest.sample("new " + i, TRACE_ID);
+      assertNotNull(operationToSamplers.get("new " + i));
+    }
+    assertEquals(2, operationToSamplers.size());
+    assertNotNull(operationToSamplers.get("strategy"));
+  }
+
+  @Test
+  public void testUpdateAdmitsStrategyOperation() {
+    InMemoryMetricsFactory metricsFactory = new InMemoryMetricsFactory();
+    undertest = new PerOperationSampler(1, operationToSamplers, new ProbabilisticSampler(DEFAULT_SAMPLING_PROBABILITY),
+        DEFAULT_LOWER_BOUND_TRACES_PER_SECOND, new Metrics(metricsFactory));
+    for (int i = 0; i < 5; i++) {
+      undertest.sample("frequent", TRACE_ID);
+    }
+
+    assertTrue(undertest.update(strategies("strategy")));
+    assertEquals(1, operationToSamplers.size());
+    assertEquals(new GuaranteedThroughputSampler(SAMPLING_RATE, DEFAULT_LOWER_BOUND_TRACES_PER_SECOND),
+        operationToSamplers.get("strategy"));
+    assertEquals(1, metricsFactory.getCounter("jaeger:sampler_operation_evictions", ""));
+  }
+
+  @Test
+  public void testUpdateHalvesUsage() {
+    undertest = new PerOperationSampler(1, operationToSamplers, new ProbabilisticSampler(DEFAULT_SAMPLING_PROBABILITY),
+        DEFAULT_LOWER_BOUND_TRACES_PER_SECOND);
+    for (int i = 0; i < 9; i++) {
+      undertest.sample("old", TRACE_ID);
+    }
+    // sampled less often than the old operation
+    for (int i = 0; i < 4; i++) {
+      undertest.sample("new", TRACE_ID);
+    }
+    assertNull(operationToSamplers.get("new"));
+
+    undertest.update(strategies());
+    for (int i = 0; i < 3; i++) {
+      undertest.sample("new", TRACE_ID);
+    }
+    assertNull(operationToSamplers.get("old"));
+    assertNotNull(operationToSamplers.get("new"));
+  }
+
+  @Test
+  public void testHitsOfEvictedOperationsAreCounted() {
+    InMemoryMetricsFactory metricsFactory = new InMemoryMetricsFactory();
+    undertest = new PerOperationSampler(1, operationToSamplers, new ProbabilisticSampler(DEFAULT_SAMPLING_PROBABILITY),
+        DEFAULT_LOWER_BOUND_TRACES_PER_SECOND, new Metrics(metricsFactory));
+    undertest.sample("old", TRACE_ID);
+    undertest.sample("old", TRACE_ID);
+    undertest.update(strategies());
+    assertEquals(1, metricsFactory.getCounter("jaeger:sampler_operations", "result=hit"));
+
+    undertest.sample("old", TRACE_ID);
+    for (int i = 0; i < 3; i++) {
+      undertest.sample("new", TRACE_ID);
+    }
+    assertNull(operationToSamplers.get("old"));
+    assertEquals(2, metricsFactory.getCounter("jaeger:sampler_operations", "result=hit"));
+  }
+
+  // constructed, so that the usage counter is initialized
+  private static GuaranteedThroughputSampler mockGuaranteedThroughputSampler() {
+    return mock(GuaranteedThroughputSampler.class, withSettings()
+        .useConstructor(SAMPLING_RATE, DEFAULT_LOWER_BOUND_TRACES_PER_SECOND));
+  }
+
+  private static OperationSamplingParameters strategies(String... operations) {
+    List<PerOperationSamplingParameters> parametersList = new ArrayList<>();
+    for (String operation : operations) {
+      parametersList.add(
+          new PerOperationSamplingParameters(operation, new ProbabilisticSamplingStrategy(SAMPLING_RATE)));
+    }
+    return new OperationSamplingParameters(DEFAULT_SAMPLING_PROBABILITY, DEFAULT_LOWER_BOUND_TRACES_PER_SECOND,
+        parametersList);
+  }
 }
@@ -16,6 +16,7 @@ package io.jaegertracing.internal.samplers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -33,6 +34,13 @@ import io.jaegertracing.spi.Sampler;
 import io.jaegertracing.spi.SamplingManager;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -170,4 +178,84 @@ public class RemoteControlledSamplerTest {
     assertEquals(new ProbabilisticSampler(0.001), undertest.getSampler());
   }
 
+  @Test
+  public void testSampleDoesNotTakeTheMonitor() throws Exception {
+    undertest = new RemoteControlledSampler.Builder(SERVICE_NAME)
+        .withSamplingManager(samplingManager)
+        .withInitialSampler(new ConstSampler(true))
+        .withMetrics(metrics)
+        .build();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      synchronized (undertest) {
+        Future<SamplingStatus> status = executor.submit(new Callable<SamplingStatus>() {
+          @Override
+          public SamplingStatus call() {
+            return undertest.sample("op", 1L);
+          }
+        });
+        assertTrue(status.get(5, TimeUnit.SECONDS).isSampled());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSampleWhileSamplerIsReplaced() throws Exception {
+    when(samplingManager.getSamplingStrategy(SERVICE_NAME)).thenReturn(
+        new SamplingStrategyResponse(new ProbabilisticSamplingStrategy(1.0), null, null),
+        new SamplingStrategyResponse(new ProbabilisticSamplingStrategy(0.5), null, null));
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicInteger samples = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (running.get()) {
+            undertest.sample("op", samples.incrementAndGet());
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    for (int i = 0; i < 100; i++) {
+      undertest.updateSampler();
+    }
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(new ProbabilisticSampler(0.5), undertest.getSampler());
+  }
+
+  @Test
+  public void testAdaptiveSamplingKeepsLowerBoundOfStrategies() throws Exception {
+    undertest.close();
+    OperationSamplingParameters parameters =
+        new OperationSamplingParameters(0.001, 2.0, new ArrayList<PerOperationSamplingParameters>());
+    when(samplingManager.getSamplingStrategy(SERVICE_NAME)).thenReturn(
+        new SamplingStrategyResponse(null, null, parameters));
+    undertest = new RemoteControlledSampler.Builder(SERVICE_NAME)
+        .withSamplingManager(samplingManager)
+        .withAdaptiveSampling(10.0)
+        .withMetrics(metrics)
+        .withPollingInterval(Integer.MAX_VALUE)
+        .build();
+
+    undertest.updateSampler();
+    assertEquals(new AdaptiveSampler(10.0, 2.0), undertest.getSampler());
+
+    // the probabilities are computed locally
+    when(samplingManager.getSamplingStrategy(SERVICE_NAME)).thenReturn(
+        new SamplingStrategyResponse(new ProbabilisticSamplingStrategy(0.5), null, null));
+    undertest.updateSampler();
+    assertEquals(new AdaptiveSampler(10.0, 2.0), undertest.getSampler());
+  }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.internal.samplers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class StripedCounterTest {
+
+  @Test
+  public void testSumsIncrementsOfAllThreads() throws Exception {
+    final StripedCounter counter = new StripedCounter();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            counter.increment();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(8000, counter.sum());
+  }
+
+  @Test
+  public void testHalve() {
+    StripedCounter counter = new StripedCounter();
+    for (int i = 0; i < 7; i++) {
+      counter.increment();
+    }
+    assertEquals(7, counter.halve());
+    assertEquals(3, counter.sum());
+
+    counter.increment();
+    assertEquals(1, counter.incrementsSinceHalved());
+    assertEquals(1, counter.halve());
+    assertEquals(2, counter.sum());
+  }
+}
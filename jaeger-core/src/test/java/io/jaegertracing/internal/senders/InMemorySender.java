@@ -78,6 +78,14 @@ public class InMemorySender implements Sender {
     return flush();
   }
 
+  /**
+   * @return true if a thread is currently blocked in {@link #append(JaegerSpan)} waiting for a
+   * permit
+   */
+  public boolean isAppendBlocked() {
+    return semaphore.hasQueuedThreads();
+  }
+
   /**
    * Removes previously granted "append" permits and grants
    * a new number of permits
@@ -15,10 +15,15 @@
 package io.jaegertracing.internal.utils;
 
 import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import io.jaegertracing.internal.clock.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 
 public class RateLimiterTest {
@@ -127,4 +132,75 @@ public class RateLimiterTest {
     assertTrue(limiter.checkCredit(1.0));
     assertFalse(limiter.checkCredit(1.0));
   }
+
+  @Test
+  public void testRateLimiterHighRate() {
+    MockClock clock = new MockClock();
+    RateLimiter limiter = new RateLimiter(1.0e6, 10.0, clock);
+
+    clock.timeNanos = TimeUnit.MILLISECONDS.toNanos(1);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(limiter.checkCredit(1.0));
+    }
+    assertFalse(limiter.checkCredit(1.0));
+
+    // a credit accumulates every microsecond
+    clock.timeNanos += TimeUnit.MICROSECONDS.toNanos(3);
+    assertTrue(limiter.checkCredit(1.0));
+    assertTrue(limiter.checkCredit(1.0));
+    assertTrue(limiter.checkCredit(1.0));
+    assertFalse(limiter.checkCredit(1.0));
+  }
+
+  @Test
+  public void testRateLimiterDeniedChecksDontConsumeCredits() {
+    MockClock clock = new MockClock();
+    RateLimiter limiter = new RateLimiter(1.0, 1.0, clock);
+
+    clock.timeNanos = TimeUnit.SECONDS.toNanos(1);
+    assertTrue(limiter.checkCredit(1.0));
+    for (int i = 1; i < 10; i++) {
+      clock.timeNanos += TimeUnit.MILLISECONDS.toNanos(100);
+      assertFalse(limiter.checkCredit(1.0));
+    }
+    clock.timeNanos += TimeUnit.MILLISECONDS.toNanos(100);
+    assertTrue(limiter.checkCredit(1.0));
+  }
+
+  @Test
+  public void testRateLimiterConcurrentChecks() throws Exception {
+    MockClock clock = new MockClock();
+    clock.timeNanos = TimeUnit.SECONDS.toNanos(1);
+    final RateLimiter limiter = new RateLimiter(1.0, 1000.0, clock);
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger granted = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = 0; j < 500; j++) {
+            if (limiter.checkCredit(1.0)) {
+              granted.incrementAndGet();
+            }
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // the clock doesn't move, so exactly the initial balance is granted
+    assertEquals(1000, granted.get());
+  }
 }
@@ -60,6 +60,8 @@ public class MicrometerTest {
     expectedMetricCounts.put("jaeger:started_spans", 2L);
     expectedMetricCounts.put("jaeger:baggage_updates", 2L);
     expectedMetricCounts.put("jaeger:sampler_queries", 2L);
+    expectedMetricCounts.put("jaeger:sampler_operations", 2L);
+    expectedMetricCounts.put("jaeger:sampler_operation_evictions", 1L);
     expectedMetricCounts.put("jaeger:baggage_truncations", 1L);
     expectedMetricCounts.put("jaeger:reporter_spans", 3L);
     expectedMetricCounts.put("jaeger:traces", 4L);
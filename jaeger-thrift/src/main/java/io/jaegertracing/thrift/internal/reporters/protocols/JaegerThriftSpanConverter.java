@@ -16,6 +16,7 @@ package io.jaegertracing.thrift.internal.reporters.protocols;
 
 import io.jaegertracing.internal.JaegerSpan;
 import io.jaegertracing.internal.JaegerSpanContext;
+import io.jaegertracing.internal.JaegerSpanVisitor;
 import io.jaegertracing.internal.LogData;
 import io.jaegertracing.internal.Reference;
 import io.jaegertracing.thriftjava.Log;
@@ -43,9 +44,12 @@ public class JaegerThriftSpanConverter {
         ? Collections.<SpanRef>emptyList()
         : buildReferences(jaegerSpan.getReferences());
 
+    ThriftListsBuilder lists = new ThriftListsBuilder();
+    jaegerSpan.accept(lists);
+
     return new io.jaegertracing.thriftjava.Span(
-        context.getTraceId(),
-        0, // TraceIdHigh is currently not supported
+        context.getTraceIdLow(),
+        context.getTraceIdHigh(),
         context.getSpanId(),
         oneChildOfParent ? context.getParentId() : 0,
         jaegerSpan.getOperationName(),
@@ -54,8 +58,8 @@ public class JaegerThriftSpanConverter {
         jaegerSpan.getDuration()
     )
         .setReferences(references)
-        .setTags(buildTags(jaegerSpan.getTags()))
-        .setLogs(buildLogs(jaegerSpan.getLogs()));
+        .setTags(lists.tags)
+        .setLogs(lists.logs);
   }
 
   static List<SpanRef> buildReferences(List<Reference> references) {
@@ -63,8 +67,8 @@ public class JaegerThriftSpanConverter {
     for (Reference reference: references) {
       SpanRefType thriftRefType = References.CHILD_OF.equals(reference.getType()) ? SpanRefType.CHILD_OF :
               SpanRefType.FOLLOWS_FROM;
-      thriftReferences.add(new SpanRef(thriftRefType, reference.getSpanContext().getTraceId(),
-              0, reference.getSpanContext().getSpanId()));
+      thriftReferences.add(new SpanRef(thriftRefType, reference.getSpanContext().getTraceIdLow(),
+              reference.getSpanContext().getTraceIdHigh(), reference.getSpanContext().getSpanId()));
     }
 
     return thriftReferences;
@@ -74,23 +78,27 @@ public class JaegerThriftSpanConverter {
     List<Log> thriftLogs = new ArrayList<Log>();
     if (logs != null) {
       for (LogData logData : logs) {
-        Log thriftLog = new Log();
-        thriftLog.setTimestamp(logData.getTime());
-        if (logData.getFields() != null) {
-          thriftLog.setFields(buildTags(logData.getFields()));
-        } else {
-          List<Tag> tags = new ArrayList<Tag>();
-          if (logData.getMessage() != null) {
-            tags.add(buildTag("event", logData.getMessage()));
-          }
-          thriftLog.setFields(tags);
-        }
-        thriftLogs.add(thriftLog);
+        thriftLogs.add(buildLog(logData));
       }
     }
     return thriftLogs;
   }
 
+  static Log buildLog(LogData logData) {
+    Log thriftLog = new Log();
+    thriftLog.setTimestamp(logData.getTime());
+    if (logData.getFields() != null) {
+      thriftLog.setFields(buildTags(logData.getFields()));
+    } else {
+      List<Tag> tags = new ArrayList<Tag>();
+      if (logData.getMessage() != null) {
+        tags.add(buildTag("event", logData.getMessage()));
+      }
+      thriftLog.setFields(tags);
+    }
+    return thriftLog;
+  }
+
   public static List<Tag> buildTags(Map<String, ?> tags) {
     List<Tag> thriftTags = new ArrayList<Tag>();
     if (tags != null) {
@@ -125,4 +133,48 @@ public class JaegerThriftSpanConverter {
     tag.setVType(TagType.STRING);
     tag.setVStr(String.valueOf(tagValue));
   }
+
+  /**
+   * Builds the tags and logs of a span in the order they are stored in, which is also the order
+   * {@link JaegerThriftSpanEncoder} writes them in.
+   */
+  private static class ThriftListsBuilder implements JaegerSpanVisitor<RuntimeException> {
+    private List<Tag> tags;
+    private List<Log> logs;
+
+    @Override
+    public void visitTags(int count) {
+      tags = new ArrayList<Tag>(count);
+    }
+
+    @Override
+    public void visitTag(String key, Object value) {
+      tags.add(buildTag(key, value));
+    }
+
+    @Override
+    public void visitTag(String key, boolean value) {
+      tags.add(new Tag(key, TagType.BOOL).setVBool(value));
+    }
+
+    @Override
+    public void visitTag(String key, long value) {
+      tags.add(new Tag(key, TagType.LONG).setVLong(value));
+    }
+
+    @Override
+    public void visitTag(String key, double value) {
+      tags.add(new Tag(key, TagType.DOUBLE).setVDouble(value));
+    }
+
+    @Override
+    public void visitLogs(int count) {
+      logs = new ArrayList<Log>(count);
+    }
+
+    @Override
+    public void visitLog(LogData log) {
+      logs.add(buildLog(log));
+    }
+  }
 }
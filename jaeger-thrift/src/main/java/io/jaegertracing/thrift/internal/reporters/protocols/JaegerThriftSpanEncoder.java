@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.thrift.internal.reporters.protocols;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerSpanContext;
+import io.jaegertracing.internal.JaegerSpanVisitor;
+import io.jaegertracing.internal.LogData;
+import io.jaegertracing.internal.Reference;
+import io.jaegertracing.thriftjava.SpanRefType;
+import io.jaegertracing.thriftjava.TagType;
+import io.opentracing.References;
+import java.util.List;
+import java.util.Map;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+
+/**
+ * Writes a {@link JaegerSpan} straight into a {@link TProtocol}, producing the same bytes as writing
+ * the {@link io.jaegertracing.thriftjava.Span} built by {@link JaegerThriftSpanConverter}, but without
+ * building it.
+ *
+ * <p>Not thread-safe, each sender uses its own encoder.</p>
+ */
+public class JaegerThriftSpanEncoder implements JaegerSpanVisitor<TException> {
+  private static final TStruct SPAN_STRUCT = new TStruct("Span");
+  private static final TField SPAN_TRACE_ID_LOW_FIELD = new TField("traceIdLow", TType.I64, (short) 1);
+  private static final TField SPAN_TRACE_ID_HIGH_FIELD = new TField("traceIdHigh", TType.I64, (short) 2);
+  private static final TField SPAN_SPAN_ID_FIELD = new TField("spanId", TType.I64, (short) 3);
+  private static final TField SPAN_PARENT_SPAN_ID_FIELD = new TField("parentSpanId", TType.I64, (short) 4);
+  private static final TField SPAN_OPERATION_NAME_FIELD = new TField("operationName", TType.STRING, (short) 5);
+  private static final TField SPAN_REFERENCES_FIELD = new TField("references", TType.LIST, (short) 6);
+  private static final TField SPAN_FLAGS_FIELD = new TField("flags", TType.I32, (short) 7);
+  private static final TField SPAN_START_TIME_FIELD = new TField("startTime", TType.I64, (short) 8);
+  private static final TField SPAN_DURATION_FIELD = new TField("duration", TType.I64, (short) 9);
+  private static final TField SPAN_TAGS_FIELD = new TField("tags", TType.LIST, (short) 10);
+  private static final TField SPAN_LOGS_FIELD = new TField("logs", TType.LIST, (short) 11);
+
+  private static final TStruct SPAN_REF_STRUCT = new TStruct("SpanRef");
+  private static final TField SPAN_REF_REF_TYPE_FIELD = new TField("refType", TType.I32, (short) 1);
+  private static final TField SPAN_REF_TRACE_ID_LOW_FIELD = new TField("traceIdLow", TType.I64, (short) 2);
+  private static final TField SPAN_REF_TRACE_ID_HIGH_FIELD = new TField("traceIdHigh", TType.I64, (short) 3);
+  private static final TField SPAN_REF_SPAN_ID_FIELD = new TField("spanId", TType.I64, (short) 4);
+
+  private static final TStruct TAG_STRUCT = new TStruct("Tag");
+  private static final TField TAG_KEY_FIELD = new TField("key", TType.STRING, (short) 1);
+  private static final TField TAG_V_TYPE_FIELD = new TField("vType", TType.I32, (short) 2);
+  private static final TField TAG_V_STR_FIELD = new TField("vStr", TType.STRING, (short) 3);
+  private static final TField TAG_V_DOUBLE_FIELD = new TField("vDouble", TType.DOUBLE, (short) 4);
+  private static final TField TAG_V_BOOL_FIELD = new TField("vBool", TType.BOOL, (short) 5);
+  private static final TField TAG_V_LONG_FIELD = new TField("vLong", TType.I64, (short) 6);
+
+  private static final TStruct LOG_STRUCT = new TStruct("Log");
+  private static final TField LOG_TIMESTAMP_FIELD = new TField("timestamp", TType.I64, (short) 1);
+  private static final TField LOG_FIELDS_FIELD = new TField("fields", TType.LIST, (short) 2);
+
+  // list headers are immutable, so the ones of short lists are shared
+  private static final TList[] STRUCT_LISTS = new TList[32];
+
+  static {
+    for (int i = 0; i < STRUCT_LISTS.length; i++) {
+      STRUCT_LISTS[i] = new TList(TType.STRUCT, i);
+    }
+  }
+
+  // the protocol of the span being encoded, for the visitor methods
+  private TProtocol protocol;
+
+  /**
+   * Writes the span as a {@code Span} struct.
+   */
+  public void encode(JaegerSpan span, TProtocol protocol) throws TException {
+    JaegerSpanContext context = span.context();
+    String operationName = span.getOperationName();
+    if (operationName == null) {
+      throw new TProtocolException("Required field 'operationName' was not present!");
+    }
+    List<Reference> references = span.getReferences();
+    boolean oneChildOfParent = references.size() == 1
+        && References.CHILD_OF.equals(references.get(0).getType());
+
+    protocol.writeStructBegin(SPAN_STRUCT);
+    writeI64(protocol, SPAN_TRACE_ID_LOW_FIELD, context.getTraceIdLow());
+    writeI64(protocol, SPAN_TRACE_ID_HIGH_FIELD, context.getTraceIdHigh());
+    writeI64(protocol, SPAN_SPAN_ID_FIELD, context.getSpanId());
+    writeI64(protocol, SPAN_PARENT_SPAN_ID_FIELD, oneChildOfParent ? context.getParentId() : 0);
+    protocol.writeFieldBegin(SPAN_OPERATION_NAME_FIELD);
+    protocol.writeString(operationName);
+    protocol.writeFieldEnd();
+
+    protocol.writeFieldBegin(SPAN_REFERENCES_FIELD);
+    if (oneChildOfParent) {
+      protocol.writeListBegin(structList(0));
+    } else {
+      protocol.writeListBegin(structList(references.size()));
+      for (int i = 0; i < references.size(); i++) {
+        writeReference(protocol, references.get(i));
+      }
+    }
+    protocol.writeListEnd();
+    protocol.writeFieldEnd();
+
+    protocol.writeFieldBegin(SPAN_FLAGS_FIELD);
+    protocol.writeI32(context.getFlags());
+    protocol.writeFieldEnd();
+    writeI64(protocol, SPAN_START_TIME_FIELD, span.getStart());
+    writeI64(protocol, SPAN_DURATION_FIELD, span.getDuration());
+
+    // writes the tags and logs, see the visitor methods below
+    this.protocol = protocol;
+    try {
+      span.accept(this);
+    } finally {
+      this.protocol = null;
+    }
+    protocol.writeListEnd();
+    protocol.writeFieldEnd();
+
+    protocol.writeFieldStop();
+    protocol.writeStructEnd();
+  }
+
+  @Override
+  public void visitTags(int count) throws TException {
+    protocol.writeFieldBegin(SPAN_TAGS_FIELD);
+    protocol.writeListBegin(structList(count));
+  }
+
+  @Override
+  public void visitTag(String key, Object value) throws TException {
+    writeTag(protocol, key, value);
+  }
+
+  @Override
+  public void visitTag(String key, boolean value) throws TException {
+    writeBoolTag(protocol, key, value);
+  }
+
+  @Override
+  public void visitTag(String key, long value) throws TException {
+    writeLongTag(protocol, key, value);
+  }
+
+  @Override
+  public void visitTag(String key, double value) throws TException {
+    writeDoubleTag(protocol, key, value);
+  }
+
+  @Override
+  public void visitLogs(int count) throws TException {
+    // ends the tags
+    protocol.writeListEnd();
+    protocol.writeFieldEnd();
+
+    protocol.writeFieldBegin(SPAN_LOGS_FIELD);
+    protocol.writeListBegin(structList(count));
+  }
+
+  @Override
+  public void visitLog(LogData log) throws TException {
+    protocol.writeStructBegin(LOG_STRUCT);
+    writeI64(protocol, LOG_TIMESTAMP_FIELD, log.getTime());
+    protocol.writeFieldBegin(LOG_FIELDS_FIELD);
+    Map<String, ?> fields = log.getFields();
+    if (fields != null) {
+      writeTags(protocol, fields);
+    } else if (log.getMessage() != null) {
+      protocol.writeListBegin(structList(1));
+      writeTag(protocol, "event", log.getMessage());
+      protocol.writeListEnd();
+    } else {
+      protocol.writeListBegin(structList(0));
+      protocol.writeListEnd();
+    }
+    protocol.writeFieldEnd();
+    protocol.writeFieldStop();
+    protocol.writeStructEnd();
+  }
+
+  private static void writeTags(TProtocol protocol, Map<String, ?> tags) throws TException {
+    protocol.writeListBegin(structList(tags.size()));
+    for (Map.Entry<String, ?> tag : tags.entrySet()) {
+      writeTag(protocol, tag.getKey(), tag.getValue());
+    }
+    protocol.writeListEnd();
+  }
+
+  private static void writeReference(TProtocol protocol, Reference reference) throws TException {
+    SpanRefType refType = References.CHILD_OF.equals(reference.getType())
+        ? SpanRefType.CHILD_OF : SpanRefType.FOLLOWS_FROM;
+    protocol.writeStructBegin(SPAN_REF_STRUCT);
+    protocol.writeFieldBegin(SPAN_REF_REF_TYPE_FIELD);
+    protocol.writeI32(refType.getValue());
+    protocol.writeFieldEnd();
+    writeI64(protocol, SPAN_REF_TRACE_ID_LOW_FIELD, reference.getSpanContext().getTraceIdLow());
+    writeI64(protocol, SPAN_REF_TRACE_ID_HIGH_FIELD, reference.getSpanContext().getTraceIdHigh());
+    writeI64(protocol, SPAN_REF_SPAN_ID_FIELD, reference.getSpanContext().getSpanId());
+    protocol.writeFieldStop();
+    protocol.writeStructEnd();
+  }
+
+  private static void writeTag(TProtocol protocol, String key, Object value) throws TException {
+    // the same types as JaegerThriftSpanConverter#buildTag
+    if (value instanceof Integer || value instanceof Short || value instanceof Long) {
+      writeLongTag(protocol, key, ((Number) value).longValue());
+    } else if (value instanceof Double || value instanceof Float) {
+      writeDoubleTag(protocol, key, ((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      writeBoolTag(protocol, key, (Boolean) value);
+    } else {
+      writeTagBegin(protocol, key, TagType.STRING);
+      protocol.writeFieldBegin(TAG_V_STR_FIELD);
+      protocol.writeString(String.valueOf(value));
+      protocol.writeFieldEnd();
+      writeTagEnd(protocol);
+    }
+  }
+
+  private static void writeLongTag(TProtocol protocol, String key, long value) throws TException {
+    writeTagBegin(protocol, key, TagType.LONG);
+    writeI64(protocol, TAG_V_LONG_FIELD, value);
+    writeTagEnd(protocol);
+  }
+
+  private static void writeDoubleTag(TProtocol protocol, String key, double value) throws TException {
+    writeTagBegin(protocol, key, TagType.DOUBLE);
+    protocol.writeFieldBegin(TAG_V_DOUBLE_FIELD);
+    protocol.writeDouble(value);
+    protocol.writeFieldEnd();
+    writeTagEnd(protocol);
+  }
+
+  private static void writeBoolTag(TProtocol protocol, String key, boolean value) throws TException {
+    writeTagBegin(protocol, key, TagType.BOOL);
+    protocol.writeFieldBegin(TAG_V_BOOL_FIELD);
+    protocol.writeBool(value);
+    protocol.writeFieldEnd();
+    writeTagEnd(protocol);
+  }
+
+  private static void writeTagBegin(TProtocol protocol, String key, TagType type) throws TException {
+    if (key == null) {
+      throw new TProtocolException("Required field 'key' was not present!");
+    }
+    protocol.writeStructBegin(TAG_STRUCT);
+    protocol.writeFieldBegin(TAG_KEY_FIELD);
+    protocol.writeString(key);
+    protocol.writeFieldEnd();
+    protocol.writeFieldBegin(TAG_V_TYPE_FIELD);
+    protocol.writeI32(type.getValue());
+    protocol.writeFieldEnd();
+  }
+
+  private static void writeTagEnd(TProtocol protocol) throws TException {
+    protocol.writeFieldStop();
+    protocol.writeStructEnd();
+  }
+
+  private static void writeI64(TProtocol protocol, TField field, long value) throws TException {
+    protocol.writeFieldBegin(field);
+    protocol.writeI64(value);
+    protocol.writeFieldEnd();
+  }
+
+  private static TList structList(int size) {
+    return size < STRUCT_LISTS.length ? STRUCT_LISTS[size] : new TList(TType.STRUCT, size);
+  }
+}
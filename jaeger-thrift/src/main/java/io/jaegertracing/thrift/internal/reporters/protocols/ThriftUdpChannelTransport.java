@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.thrift.internal.reporters.protocols;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import lombok.ToString;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * A thrift transport which sends each flushed message as one UDP packet.
+ *
+ * <p>Unlike {@link ThriftUdpTransport} it does not allocate per message: messages are written into a
+ * single direct buffer, which a connected {@link DatagramChannel} sends without copying it.</p>
+ */
+@ToString
+public class ThriftUdpChannelTransport extends TTransport implements Closeable {
+  public static final int MAX_PACKET_SIZE = ThriftUdpTransport.MAX_PACKET_SIZE;
+
+  @ToString.Exclude private final DatagramChannel channel;
+  @ToString.Exclude private final ByteBuffer writeBuffer;
+
+  // Create a UDP client for sending data to specific host and port
+  public static ThriftUdpChannelTransport newThriftUdpClient(String host, int port) {
+    DatagramChannel channel = null;
+    try {
+      channel = DatagramChannel.open();
+      channel.connect(new InetSocketAddress(host, port));
+    } catch (IOException e) {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+          // already failing
+        }
+      }
+      throw new RuntimeException("TUDPTransport cannot connect: ", e);
+    }
+    return new ThriftUdpChannelTransport(channel);
+  }
+
+  private ThriftUdpChannelTransport(DatagramChannel channel) {
+    this.channel = channel;
+    this.writeBuffer = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
+  }
+
+  int getPort() {
+    return channel.socket().getLocalPort();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  // noop as opened in constructor
+  @Override
+  public void open() throws TTransportException {}
+
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // nothing left to release
+    }
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int len) throws TTransportException {
+    throw new TTransportException(TTransportException.UNKNOWN, "Reading is not supported by a client transport");
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int len) throws TTransportException {
+    if (!isOpen()) {
+      throw new TTransportException(TTransportException.NOT_OPEN);
+    }
+    if (len > writeBuffer.remaining()) {
+      // drops the partial message, so that the next one starts from an empty buffer
+      writeBuffer.clear();
+      throw new TTransportException(
+          TTransportException.UNKNOWN, "Message size too large: " + len + " > " + MAX_PACKET_SIZE);
+    }
+    writeBuffer.put(bytes, offset, len);
+  }
+
+  @Override
+  public void flush() throws TTransportException {
+    if (writeBuffer.position() == 0) {
+      return;
+    }
+    writeBuffer.flip();
+    try {
+      channel.write(writeBuffer);
+    } catch (IOException e) {
+      throw new TTransportException(
+          TTransportException.UNKNOWN, "Cannot flush closed transport", e);
+    } finally {
+      writeBuffer.clear();
+    }
+  }
+}
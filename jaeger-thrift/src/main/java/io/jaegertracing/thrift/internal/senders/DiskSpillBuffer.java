@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.thrift.internal.senders;
+
+import io.jaegertracing.thriftjava.Batch;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+
+/**
+ * Bounded overflow buffer which keeps batches a {@link ThriftSender} could not send in memory-mapped
+ * segment files, so that they can be replayed once the sender succeeds again.
+ *
+ * <p>Batches are appended to fixed size segment files in the given directory, which must not be
+ * shared with other buffers. When the buffer would grow beyond its maximum size, the oldest segment
+ * is evicted together with all the batches in it. Segment files survive restarts: a new buffer picks
+ * up the batches left behind in its directory, and continues replaying where the previous one
+ * stopped.</p>
+ *
+ * <p>Replays are spaced out with an exponential backoff, see
+ * {@link Builder#withReplayBackoff(long, long)}.</p>
+ *
+ * <p>This class is not thread-safe, it is meant to be used by the reporter thread only.</p>
+ */
+@ToString
+@Slf4j
+public class DiskSpillBuffer {
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  public static final int DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+  public static final long DEFAULT_MIN_REPLAY_BACKOFF_MS = 1000;
+  public static final long DEFAULT_MAX_REPLAY_BACKOFF_MS = 60000;
+
+  static final String SEGMENT_FILE_PREFIX = "spans-";
+  static final String SEGMENT_FILE_SUFFIX = ".spill";
+  // the segment header holds the offset of the next record to replay
+  private static final int SEGMENT_HEADER_BYTES = 4;
+  // each record is prefixed with its length and the number of spans in it
+  private static final int RECORD_HEADER_BYTES = 8;
+
+  private final File directory;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final long minReplayBackoffMillis;
+  private final long maxReplayBackoffMillis;
+
+  @ToString.Exclude private final TSerializer serializer = new TSerializer(new TCompactProtocol.Factory());
+  @ToString.Exclude private final TDeserializer deserializer = new TDeserializer(new TCompactProtocol.Factory());
+  // oldest first, the last one is the segment batches are appended to
+  @ToString.Exclude private final LinkedList<Segment> segments = new LinkedList<Segment>();
+  @ToString.Exclude private long nextSegmentId;
+  @ToString.Exclude private long replayBackoffMillis;
+  @ToString.Exclude private long nextReplayMillis;
+
+  private DiskSpillBuffer(Builder builder) throws IOException {
+    this.directory = builder.directory;
+    this.segmentBytes = builder.segmentBytes;
+    this.maxSegments = (int) Math.min(Integer.MAX_VALUE, builder.maxBytes / builder.segmentBytes);
+    this.minReplayBackoffMillis = builder.minReplayBackoffMillis;
+    this.maxReplayBackoffMillis = builder.maxReplayBackoffMillis;
+    this.replayBackoffMillis = minReplayBackoffMillis;
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create spill directory " + directory);
+    }
+    recoverSegments();
+  }
+
+  /**
+   * @return the maximum size of an encoded batch which fits into a segment
+   */
+  int getMaxBatchBytes() {
+    return segmentBytes - SEGMENT_HEADER_BYTES - RECORD_HEADER_BYTES;
+  }
+
+  /**
+   * Appends a batch after the batches already in the buffer, evicting the oldest segments when the
+   * buffer is full.
+   *
+   * @return the number of spans evicted to make room for the batch
+   * @throws IOException if the batch could not be written, e.g. because it is larger than a segment
+   */
+  public int append(Batch batch) throws IOException {
+    byte[] bytes;
+    try {
+      bytes = serializer.serialize(batch);
+    } catch (TException e) {
+      throw new IOException("Could not serialize batch", e);
+    }
+    if (bytes.length > getMaxBatchBytes()) {
+      throw new IOException(String.format("Batch of %d bytes does not fit into a segment of %d bytes",
+          bytes.length, segmentBytes));
+    }
+
+    int recordBytes = RECORD_HEADER_BYTES + bytes.length;
+    int evicted = 0;
+    Segment segment = segments.peekLast();
+    if (segment == null || !segment.hasRoomFor(recordBytes)) {
+      while (segments.size() >= maxSegments) {
+        Segment oldest = segments.removeFirst();
+        evicted += oldest.spanCount;
+        oldest.delete();
+      }
+      segment = Segment.create(newSegmentFile(), segmentBytes);
+      segments.addLast(segment);
+    }
+    segment.write(bytes, batch.getSpansSize());
+    if (evicted > 0) {
+      log.warn("Spill buffer is full, evicted {} spans", evicted);
+    }
+    return evicted;
+  }
+
+  /**
+   * @return the oldest batch in the buffer, or null when the buffer is empty
+   */
+  public Batch peek() {
+    while (true) {
+      Segment segment = segments.peekFirst();
+      if (segment == null) {
+        return null;
+      }
+      byte[] bytes = segment.peek();
+      if (bytes == null) {
+        // fully replayed
+        segments.removeFirst();
+        segment.delete();
+        continue;
+      }
+
+      Batch batch = new Batch();
+      try {
+        deserializer.deserialize(batch, bytes);
+        return batch;
+      } catch (TException e) {
+        log.error("Dropping corrupted batch from spill file " + segment.file, e);
+        segment.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes the batch returned by the last call to {@link #peek()}.
+   */
+  public void remove() {
+    Segment segment = segments.peekFirst();
+    if (segment == null) {
+      return;
+    }
+    segment.remove();
+    if (segment.spanCount == 0 && segment.isExhausted()) {
+      segments.removeFirst();
+      segment.delete();
+    }
+  }
+
+  public boolean isEmpty() {
+    for (Segment segment : segments) {
+      if (!segment.isExhausted()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of spans in the buffer
+   */
+  public int getSpanCount() {
+    int spans = 0;
+    for (Segment segment : segments) {
+      spans += segment.spanCount;
+    }
+    return spans;
+  }
+
+  /**
+   * @return true when the backoff after the last failed replay has expired
+   */
+  public boolean isReplayDue() {
+    return System.currentTimeMillis() >= nextReplayMillis;
+  }
+
+  public void replaySucceeded() {
+    replayBackoffMillis = minReplayBackoffMillis;
+    nextReplayMillis = 0;
+  }
+
+  public void replayFailed() {
+    nextReplayMillis = System.currentTimeMillis() + replayBackoffMillis;
+    replayBackoffMillis = Math.min(replayBackoffMillis * 2, maxReplayBackoffMillis);
+  }
+
+  /**
+   * Releases the segments. Batches which were not replayed stay on disk, and are picked up by the
+   * next buffer created on the same directory.
+   */
+  public void close() {
+    // there is no way to unmap a buffer before Java 9, the mappings are released when collected
+    segments.clear();
+  }
+
+  private void recoverSegments() throws IOException {
+    File[] files = directory.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX);
+      }
+    });
+    if (files == null) {
+      throw new IOException("Could not list spill directory " + directory);
+    }
+    // segment ids are zero padded, so the names sort oldest first
+    Arrays.sort(files);
+    for (File file : files) {
+      long id = parseSegmentId(file.getName());
+      nextSegmentId = Math.max(nextSegmentId, id + 1);
+      if (file.length() != segmentBytes) {
+        log.warn("Deleting spill file {} of unexpected size {}", file, file.length());
+        deleteFile(file);
+        continue;
+      }
+      Segment segment = Segment.open(file, segmentBytes);
+      if (segment.spanCount == 0) {
+        segment.delete();
+      } else {
+        segments.addLast(segment);
+      }
+    }
+    while (segments.size() > maxSegments) {
+      segments.removeFirst().delete();
+    }
+  }
+
+  private File newSegmentFile() {
+    return new File(directory, String.format("%s%019d%s", SEGMENT_FILE_PREFIX, nextSegmentId++, SEGMENT_FILE_SUFFIX));
+  }
+
+  private static long parseSegmentId(String name) {
+    try {
+      return Long.parseLong(
+          name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void deleteFile(File file) {
+    if (!file.delete()) {
+      log.warn("Could not delete spill file {}", file);
+    }
+  }
+
+  /**
+   * A memory-mapped file of records {@code [length][span count][batch]}, terminated by a zero
+   * length. The length of a record is written last, so a record interrupted by a crash is never
+   * read.
+   */
+  private static final class Segment {
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private int readPosition;
+    private int writePosition;
+    private int spanCount;
+
+    private Segment(File file, MappedByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    static Segment create(File file, int segmentBytes) throws IOException {
+      Segment segment = new Segment(file, map(file, segmentBytes));
+      segment.readPosition = SEGMENT_HEADER_BYTES;
+      segment.writePosition = SEGMENT_HEADER_BYTES;
+      segment.buffer.putInt(0, SEGMENT_HEADER_BYTES);
+      return segment;
+    }
+
+    static Segment open(File file, int segmentBytes) throws IOException {
+      Segment segment = new Segment(file, map(file, segmentBytes));
+      MappedByteBuffer buffer = segment.buffer;
+      int readPosition = buffer.getInt(0);
+      int position = SEGMENT_HEADER_BYTES;
+      while (position + RECORD_HEADER_BYTES <= segmentBytes) {
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + RECORD_HEADER_BYTES + length > segmentBytes) {
+          break;
+        }
+        if (position >= readPosition) {
+          segment.spanCount += buffer.getInt(position + 4);
+        }
+        position += RECORD_HEADER_BYTES + length;
+      }
+      segment.writePosition = position;
+      segment.readPosition = Math.max(SEGMENT_HEADER_BYTES, Math.min(readPosition, position));
+      return segment;
+    }
+
+    private static MappedByteBuffer map(File file, int segmentBytes) throws IOException {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      try {
+        randomAccessFile.setLength(segmentBytes);
+        // the mapping stays valid after the file is closed
+        return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+      } finally {
+        randomAccessFile.close();
+      }
+    }
+
+    boolean hasRoomFor(int recordBytes) {
+      // keep room for the zero length which terminates the records
+      return writePosition + recordBytes + 4 <= buffer.capacity();
+    }
+
+    void write(byte[] bytes, int spans) {
+      buffer.position(writePosition + RECORD_HEADER_BYTES);
+      buffer.put(bytes);
+      buffer.putInt(writePosition + 4, spans);
+      buffer.putInt(writePosition, bytes.length);
+      writePosition += RECORD_HEADER_BYTES + bytes.length;
+      spanCount += spans;
+    }
+
+    byte[] peek() {
+      if (isExhausted()) {
+        return null;
+      }
+      byte[] bytes = new byte[buffer.getInt(readPosition)];
+      buffer.position(readPosition + RECORD_HEADER_BYTES);
+      buffer.get(bytes);
+      return bytes;
+    }
+
+    void remove() {
+      if (isExhausted()) {
+        return;
+      }
+      spanCount -= buffer.getInt(readPosition + 4);
+      readPosition += RECORD_HEADER_BYTES + buffer.getInt(readPosition);
+      buffer.putInt(0, readPosition);
+    }
+
+    boolean isExhausted() {
+      return readPosition >= writePosition;
+    }
+
+    void delete() {
+      deleteFile(file);
+    }
+  }
+
+  public static class Builder {
+    private final File directory;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private int segmentBytes = DEFAULT_SEGMENT_BYTES;
+    private long minReplayBackoffMillis = DEFAULT_MIN_REPLAY_BACKOFF_MS;
+    private long maxReplayBackoffMillis = DEFAULT_MAX_REPLAY_BACKOFF_MS;
+
+    /**
+     * @param directory the directory to keep the segment files in, created when missing
+     */
+    public Builder(File directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * @param maxBytes the maximum size of all segment files, defaults to
+     *     {@value DiskSpillBuffer#DEFAULT_MAX_BYTES}
+     */
+    public Builder withMaxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * @param segmentBytes the size of each segment file, which must hold the largest batch. Defaults to
+     *     {@value DiskSpillBuffer#DEFAULT_SEGMENT_BYTES}
+     */
+    public Builder withSegmentBytes(int segmentBytes) {
+      this.segmentBytes = segmentBytes;
+      return this;
+    }
+
+    /**
+     * @param minBackoffMs the time to wait before replaying again after the first failed replay
+     * @param maxBackoffMs the maximum time to wait, the backoff doubles after each failed replay
+     */
+    public Builder withReplayBackoff(long minBackoffMs, long maxBackoffMs) {
+      this.minReplayBackoffMillis = minBackoffMs;
+      this.maxReplayBackoffMillis = maxBackoffMs;
+      return this;
+    }
+
+    public DiskSpillBuffer build() throws IOException {
+      if (segmentBytes <= SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES) {
+        throw new IllegalArgumentException("Segment size is too small: " + segmentBytes);
+      }
+      if (maxBytes < segmentBytes) {
+        throw new IllegalArgumentException("Maximum size must hold at least one segment");
+      }
+      if (minReplayBackoffMillis < 0 || maxReplayBackoffMillis < minReplayBackoffMillis) {
+        throw new IllegalArgumentException("Invalid replay backoff");
+      }
+      return new DiskSpillBuffer(this);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.thrift.internal.senders;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses byte arrays to the gzip format, reusing its {@link Deflater} and output buffer, unlike
+ * {@link java.util.zip.GZIPOutputStream}, which allocates them for every stream.
+ * Not thread-safe.
+ */
+class GzipCompressor {
+  // magic number, deflate method, no flags, no modification time, no extra flags, unknown OS
+  private static final byte[] HEADER = {
+      (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+  private static final int TRAILER_SIZE = 8;
+
+  private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private final CRC32 crc = new CRC32();
+  private byte[] buffer;
+
+  GzipCompressor(int initialBufferSize) {
+    buffer = new byte[Math.max(initialBufferSize, HEADER.length + TRAILER_SIZE)];
+  }
+
+  /**
+   * @return the length of the compressed bytes, which start the array returned by {@link #getBuffer()}
+   */
+  int compress(byte[] bytes, int offset, int length) {
+    deflater.reset();
+    deflater.setInput(bytes, offset, length);
+    deflater.finish();
+    crc.reset();
+    crc.update(bytes, offset, length);
+
+    System.arraycopy(HEADER, 0, buffer, 0, HEADER.length);
+    int pos = HEADER.length;
+    while (!deflater.finished()) {
+      if (pos == buffer.length) {
+        grow(pos + 1);
+      }
+      pos += deflater.deflate(buffer, pos, buffer.length - pos);
+    }
+
+    if (pos + TRAILER_SIZE > buffer.length) {
+      grow(pos + TRAILER_SIZE);
+    }
+    pos = writeIntLittleEndian((int) crc.getValue(), pos);
+    return writeIntLittleEndian(length, pos);
+  }
+
+  /**
+   * @return the buffer holding the result of the last call to {@link #compress(byte[], int, int)},
+   *     until the next call
+   */
+  byte[] getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Releases the native memory of the compressor, which can't be used afterwards.
+   */
+  void close() {
+    deflater.end();
+  }
+
+  private void grow(int minSize) {
+    byte[] grown = new byte[Math.max(minSize, buffer.length * 2)];
+    System.arraycopy(buffer, 0, grown, 0, buffer.length);
+    buffer = grown;
+  }
+
+  private int writeIntLittleEndian(int value, int pos) {
+    buffer[pos] = (byte) value;
+    buffer[pos + 1] = (byte) (value >>> 8);
+    buffer[pos + 2] = (byte) (value >>> 16);
+    buffer[pos + 3] = (byte) (value >>> 24);
+    return pos + 4;
+  }
+}
@@ -14,14 +14,26 @@
 
 package io.jaegertracing.thrift.internal.senders;
 
+import io.jaegertracing.internal.JaegerSpan;
 import io.jaegertracing.internal.exceptions.SenderException;
 import io.jaegertracing.thriftjava.Batch;
 import io.jaegertracing.thriftjava.Process;
 import io.jaegertracing.thriftjava.Span;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Credentials;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
@@ -29,44 +41,304 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.AutoExpandingBufferWriteTransport;
 
 @ToString
+@Slf4j
 public class HttpSender extends ThriftSender {
   private static final String HTTP_COLLECTOR_JAEGER_THRIFT_FORMAT_PARAM = "format=jaeger.thrift";
+  private static final String HTTP_COLLECTOR_JAEGER_THRIFT_COMPACT_FORMAT_PARAM = "format=jaeger.thrift.compact";
   private static final int ONE_MB_IN_BYTES = 1048576;
   private static final MediaType MEDIA_TYPE_THRIFT = MediaType.parse("application/x-thrift");
+  private static final MediaType MEDIA_TYPE_THRIFT_COMPACT = MediaType.parse("application/vnd.apache.thrift.compact");
+  private static final int CLOSE_TIMEOUT_SECONDS = 10;
+  // bounds the batches built from an estimated compression ratio
+  private static final int MAX_COMPRESSION_RATIO = 8;
 
   @ToString.Exclude private final OkHttpClient httpClient;
   @ToString.Exclude private final Request.Builder requestBuilder;
+  private final MediaType mediaType;
+  @ToString.Exclude private final AutoExpandingBufferWriteTransport batchBuffer;
+  @ToString.Exclude private final TProtocol batchProtocol;
+  // null unless the batches are compressed
+  @ToString.Exclude private final GzipCompressor compressor;
+  private int maxBatchBytes;
+  // batches which fail are spilled uncompressed, so they must still fit into a segment
+  private final int maxSpilledBatchBytes;
+
+  // only used when sending asynchronously
+  private final int maxInFlightRequests;
+  @ToString.Exclude private final Semaphore inFlightRequests;
+  @ToString.Exclude private final ExecutorService executor;
+  @ToString.Exclude private final AtomicInteger sentSpans = new AtomicInteger();
+  @ToString.Exclude private final AtomicInteger failedSpans = new AtomicInteger();
 
   protected HttpSender(Builder builder) {
-    super(ProtocolType.Binary, builder.maxPacketSize);
-    HttpUrl collectorUrl = HttpUrl
-        .parse(String.format("%s?%s", builder.endpoint, HTTP_COLLECTOR_JAEGER_THRIFT_FORMAT_PARAM));
+    super(builder.protocolType, builder.maxPacketSize, builder.spillBuffer);
+    boolean compact = builder.protocolType == ProtocolType.Compact;
+    HttpUrl collectorUrl = HttpUrl.parse(String.format("%s?%s", builder.endpoint,
+        compact ? HTTP_COLLECTOR_JAEGER_THRIFT_COMPACT_FORMAT_PARAM : HTTP_COLLECTOR_JAEGER_THRIFT_FORMAT_PARAM));
     if (collectorUrl == null) {
       throw new IllegalArgumentException("Could not parse url.");
     }
+    this.mediaType = compact ? MEDIA_TYPE_THRIFT_COMPACT : MEDIA_TYPE_THRIFT;
+    this.maxInFlightRequests = builder.maxInFlightRequests;
+    if (maxInFlightRequests > 0) {
+      this.inFlightRequests = new Semaphore(maxInFlightRequests);
+      this.executor = newExecutor();
+      Dispatcher dispatcher = new Dispatcher(executor);
+      dispatcher.setMaxRequests(maxInFlightRequests);
+      dispatcher.setMaxRequestsPerHost(maxInFlightRequests);
+      builder.clientBuilder.dispatcher(dispatcher);
+    } else {
+      this.inFlightRequests = null;
+      this.executor = null;
+    }
     this.httpClient = builder.clientBuilder.build();
     this.requestBuilder = new Request.Builder().url(collectorUrl);
+    this.batchBuffer = new AutoExpandingBufferWriteTransport(INITIAL_BUFFER_SIZE, 2);
+    this.batchProtocol = protocolFactory.getProtocol(batchBuffer);
+    if (builder.gzip) {
+      this.compressor = new GzipCompressor(INITIAL_BUFFER_SIZE);
+      this.requestBuilder.header("Content-Encoding", "gzip");
+    } else {
+      this.compressor = null;
+    }
+    this.maxBatchBytes = getMaxSpanBytes();
+    // leaves room for the spilled batch, encoded with the compact protocol, being a bit larger
+    this.maxSpilledBatchBytes = builder.spillBuffer != null
+        ? builder.spillBuffer.getMaxBatchBytes() / 10 * 9 : Integer.MAX_VALUE;
+  }
+
+  private static ExecutorService newExecutor() {
+    // like OkHttp's default, but with daemon threads so they don't keep the application alive
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "jaeger.HttpSender");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  @Override
+  protected void sendBuffered(int spanCount) throws SenderException {
+    batchBuffer.reset();
+    try {
+      writeBatch(batchProtocol);
+    } catch (TException e) {
+      throw new SenderException(String.format("Failed to serialize %d spans", spanCount), e, spanCount);
+    }
+
+    byte[] bytes = batchBuffer.getBuf().array();
+    int length = batchBuffer.getPos();
+    if (compressor != null) {
+      int compressedLength = compress(bytes, length);
+      if (compressedLength > getMaxSpanBytes() && spanCount > 1) {
+        // the batch compressed worse than estimated, so it is sent in smaller ones
+        sendSplit(getProcess(), decodeBufferedSpans(), inFlightRequests != null);
+        return;
+      }
+      bytes = compressor.getBuffer();
+      length = compressedLength;
+    }
+    sendBytes(bytes, length, spanCount, inFlightRequests != null);
+  }
+
+  /**
+   * Sends the spans in batches whose compressed size is within the maximum packet size, halving them
+   * until they are. A single span is sent whatever its compressed size, since it fit uncompressed.
+   */
+  private void sendSplit(Process process, List<Span> spans, boolean async) throws SenderException {
+    byte[] bytes = serialize(process, spans);
+    int length = compress(bytes, bytes.length);
+    if (length > getMaxSpanBytes() && spans.size() > 1) {
+      int half = spans.size() / 2;
+      sendSplit(process, spans.subList(0, half), async);
+      sendSplit(process, spans.subList(half, spans.size()), async);
+      return;
+    }
+    sendBytes(compressor.getBuffer(), length, spans.size(), async);
+  }
+
+  /**
+   * Sends the bytes of a batch. The body of a synchronous request uses the given array, since it
+   * is written before the call returns, while an asynchronous request gets a copy.
+   */
+  private void sendBytes(byte[] bytes, int length, int spanCount, boolean async) throws SenderException {
+    if (!async) {
+      send(RequestBody.create(mediaType, bytes, 0, length), spanCount);
+      return;
+    }
+
+    try {
+      // blocks the reporter thread while the window is full, so requests can't pile up
+      inFlightRequests.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SenderException(String.format("Interrupted before sending %d spans", spanCount), e, spanCount);
+    }
+    byte[] copy = new byte[length];
+    System.arraycopy(bytes, 0, copy, 0, length);
+    Request request = requestBuilder.post(RequestBody.create(mediaType, copy, 0, length)).build();
+    httpClient.newCall(request).enqueue(new BatchCallback(spanCount));
+  }
+
+  /**
+   * Compresses the batch into the buffer of the compressor, and adapts the size of the next batches
+   * to how well it compressed.
+   *
+   * @return the compressed length
+   */
+  private int compress(byte[] bytes, int length) {
+    int compressedLength = compressor.compress(bytes, 0, length);
+    updateMaxBatchBytes(length, compressedLength);
+    return compressedLength;
+  }
+
+  /**
+   * Lets the next batch grow so that it compresses to about the maximum packet size, assuming it
+   * compresses like the last one, with some headroom in case it compresses worse.
+   */
+  private void updateMaxBatchBytes(int length, int compressedLength) {
+    long maxBytes = (long) getMaxSpanBytes() * length / Math.max(compressedLength, 1) * 4 / 5;
+    maxBytes = Math.min(maxBytes, (long) getMaxSpanBytes() * MAX_COMPRESSION_RATIO);
+    maxBytes = Math.min(maxBytes, maxSpilledBatchBytes);
+    maxBatchBytes = (int) Math.max(Math.min(maxBytes, Integer.MAX_VALUE), getMaxSpanBytes());
+  }
+
+  /**
+   * When compressing, the maximum packet size applies to the compressed batches. The batches are
+   * allowed to grow according to the ratio of the previous ones, and split if they compress worse.
+   */
+  @Override
+  protected int getMaxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  /**
+   * When sending asynchronously, a full batch is only enqueued, so this returns 0 and the spans
+   * are counted by the flush after their request completes.
+   */
+  @Override
+  public int append(JaegerSpan span) throws SenderException {
+    int n = super.append(span);
+    return inFlightRequests == null ? n : 0;
+  }
+
+  /**
+   * When sending asynchronously, returns the number of spans whose requests completed successfully
+   * since the last flush, or throws if requests failed meanwhile. The spans appended since the last
+   * flush are sent, but their outcome is only reported by a later flush, or by {@link #close()}.
+   */
+  @Override
+  public int flush() throws SenderException {
+    int n = super.flush();
+    if (inFlightRequests == null) {
+      return n;
+    }
+    return collectResults();
+  }
+
+  /**
+   * When sending asynchronously, also waits up to {@value #CLOSE_TIMEOUT_SECONDS} seconds for the
+   * requests in flight to complete.
+   */
+  @Override
+  public int close() throws SenderException {
+    try {
+      if (inFlightRequests == null) {
+        return super.close();
+      }
+      super.flush();
+      try {
+        if (inFlightRequests.tryAcquire(maxInFlightRequests, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          inFlightRequests.release(maxInFlightRequests);
+        } else {
+          log.warn("Requests still in flight after {} seconds, closing anyway", CLOSE_TIMEOUT_SECONDS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return collectResults();
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+      if (compressor != null) {
+        compressor.close();
+      }
+    }
+  }
+
+  private int collectResults() throws SenderException {
+    int failed = failedSpans.getAndSet(0);
+    if (failed > 0) {
+      // spans sent successfully meanwhile are reported by the next flush
+      throw new SenderException(String.format("Could not send %d spans", failed), failed);
+    }
+    return sentSpans.getAndSet(0);
+  }
+
+  private class BatchCallback implements Callback {
+    private final int spanCount;
+
+    BatchCallback(int spanCount) {
+      this.spanCount = spanCount;
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+      log.warn("Could not send {} spans", spanCount, e);
+      failedSpans.addAndGet(spanCount);
+      inFlightRequests.release();
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) {
+      try {
+        if (response.isSuccessful()) {
+          sentSpans.addAndGet(spanCount);
+        } else {
+          log.warn("Could not send {} spans, response {}", spanCount, response.code());
+          failedSpans.addAndGet(spanCount);
+        }
+      } finally {
+        response.close();
+        inFlightRequests.release();
+      }
+    }
   }
 
   @Override
   public void send(Process process, List<Span> spans) throws SenderException {
-    Batch batch = new Batch(process, spans);
-    byte[] bytes = null;
+    if (compressor != null) {
+      sendSplit(process, spans, false);
+      return;
+    }
+    byte[] bytes = serialize(process, spans);
+    sendBytes(bytes, bytes.length, spans.size(), false);
+  }
+
+  private byte[] serialize(Process process, List<Span> spans) throws SenderException {
     try {
-      bytes = serialize(batch);
+      return serialize(new Batch(process, spans));
     } catch (Exception e) {
       throw new SenderException(String.format("Failed to serialize %d spans", spans.size()), e, spans.size());
     }
+  }
 
-    RequestBody body = RequestBody.create(MEDIA_TYPE_THRIFT, bytes);
+  private void send(RequestBody body, int spanCount) throws SenderException {
     Request request = requestBuilder.post(body).build();
     Response response;
     try {
       response = httpClient.newCall(request).execute();
     } catch (IOException e) {
-      throw new SenderException(String.format("Could not send %d spans", spans.size()), e, spans.size());
+      throw new SenderException(String.format("Could not send %d spans", spanCount), e, spanCount);
     }
 
     if (!response.isSuccessful()) {
@@ -78,15 +350,19 @@ public class HttpSender extends ThriftSender {
       }
 
       String exceptionMessage = String.format("Could not send %d spans, response %d: %s",
-          spans.size(), response.code(), responseBody);
-      throw new SenderException(exceptionMessage, null, spans.size());
+          spanCount, response.code(), responseBody);
+      throw new SenderException(exceptionMessage, null, spanCount);
     }
   }
 
   public static class Builder {
     private final String endpoint;
     private int maxPacketSize = ONE_MB_IN_BYTES;
+    private ProtocolType protocolType = ProtocolType.Binary;
     private Interceptor authInterceptor;
+    private DiskSpillBuffer spillBuffer;
+    private int maxInFlightRequests;
+    private boolean gzip;
     private OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
 
     /**
@@ -106,6 +382,15 @@ public class HttpSender extends ThriftSender {
       return this;
     }
 
+    /**
+     * Encodes the batches with the given protocol, {@link ProtocolType#Binary} by default.
+     * Compact batches are smaller, so more spans fit in a packet.
+     */
+    public Builder withProtocolType(ProtocolType protocolType) {
+      this.protocolType = protocolType;
+      return this;
+    }
+
     public Builder withAuth(String username, String password) {
       this.authInterceptor = getAuthInterceptor(Credentials.basic(username, password));
       return this;
@@ -116,7 +401,51 @@ public class HttpSender extends ThriftSender {
       return this;
     }
 
+    /**
+     * Keeps batches which could not be sent to the collector on disk, and replays them once the
+     * collector is reachable again. By default such batches are dropped.
+     */
+    public Builder withSpillBuffer(DiskSpillBuffer spillBuffer) {
+      this.spillBuffer = spillBuffer;
+      return this;
+    }
+
+    /**
+     * Compresses the batches with gzip, and sends them with {@code Content-Encoding: gzip}.
+     * The maximum packet size then applies to the compressed batches, so each request carries
+     * more spans. A batch which compresses worse than the previous ones is split to stay within it.
+     *
+     * <p>With a spill buffer, the batches are also kept small enough to be spilled uncompressed
+     * into a segment.</p>
+     */
+    public Builder withGzip() {
+      this.gzip = true;
+      return this;
+    }
+
+    /**
+     * Sends batches asynchronously, so that the reporter thread can go on encoding spans while
+     * requests are in flight. The reporter thread only blocks when this many requests are in flight.
+     * By default, or when 0, batches are sent synchronously on the reporter thread.
+     *
+     * <p>Can't be combined with {@link #withSpillBuffer(DiskSpillBuffer)}, since the outcome of a
+     * request is only known after the batch has left the reporter thread.</p>
+     */
+    public Builder withMaxInFlightRequests(int maxInFlightRequests) {
+      this.maxInFlightRequests = maxInFlightRequests;
+      return this;
+    }
+
     public HttpSender build() {
+      if (protocolType == null) {
+        throw new IllegalArgumentException("Protocol type must not be null");
+      }
+      if (maxInFlightRequests < 0) {
+        throw new IllegalArgumentException("Maximum number of requests in flight must not be negative");
+      }
+      if (maxInFlightRequests > 0 && spillBuffer != null) {
+        throw new IllegalArgumentException("A spill buffer can only be used when sending synchronously");
+      }
       if (authInterceptor != null) {
         clientBuilder.addInterceptor(authInterceptor);
       }
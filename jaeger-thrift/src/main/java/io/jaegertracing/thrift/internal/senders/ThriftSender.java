@@ -19,28 +19,67 @@ import io.jaegertracing.internal.exceptions.SenderException;
 import io.jaegertracing.spi.Sender;
 import io.jaegertracing.thrift.internal.reporters.protocols.JaegerThriftSpanConverter;
 import io.jaegertracing.thrift.internal.reporters.protocols.ThriftUdpTransport;
+import io.jaegertracing.thriftjava.Batch;
 import io.jaegertracing.thriftjava.Process;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.AutoExpandingBufferWriteTransport;
+import org.apache.thrift.transport.TMemoryInputTransport;
 
+/**
+ * Base class of the senders which send spans as thrift {@link Batch}es.
+ *
+ * <p>Each span is encoded only once, when it is appended: its bytes are kept in a reusable buffer, and
+ * at flush the batch is assembled around them with {@link #writeBatch(TProtocol)}.</p>
+ */
 @ToString
+@Slf4j
 public abstract class ThriftSender extends ThriftSenderBase implements Sender {
+  // bounds the time a flush spends catching up on spilled batches
+  static final int MAX_REPLAYED_BATCHES_PER_FLUSH = 10;
+
+  private static final TStruct BATCH_STRUCT = new TStruct("Batch");
+  private static final TField BATCH_PROCESS_FIELD = new TField("process", TType.STRUCT, (short) 1);
+  private static final TField BATCH_SPANS_FIELD = new TField("spans", TType.LIST, (short) 2);
 
   private Process process;
+  @ToString.Exclude private byte[] processBytes;
   private int processBytesSize;
   private int byteBufferSize;
+  private int spanCount;
 
-  @ToString.Exclude private List<io.jaegertracing.thriftjava.Span> spanBuffer;
+  // the spans appended since the last flush, encoded with the protocol of this sender
+  @ToString.Exclude private final AutoExpandingBufferWriteTransport spanBuffer;
+  private final DiskSpillBuffer spillBuffer;
 
   /**
    * @param protocolType protocol type (compact or binary)
    * @param maxPacketSize if 0 it will use default value {@value ThriftUdpTransport#MAX_PACKET_SIZE}
    */
   public ThriftSender(ProtocolType protocolType, int maxPacketSize) {
+    this(protocolType, maxPacketSize, null);
+  }
+
+  /**
+   * @param protocolType protocol type (compact or binary)
+   * @param maxPacketSize if 0 it will use default value {@value ThriftUdpTransport#MAX_PACKET_SIZE}
+   * @param spillBuffer keeps the batches which could not be sent and replays them once sending
+   *     succeeds again, or null to drop them
+   */
+  protected ThriftSender(ProtocolType protocolType, int maxPacketSize, DiskSpillBuffer spillBuffer) {
     super(protocolType, maxPacketSize);
 
-    spanBuffer = new ArrayList<io.jaegertracing.thriftjava.Span>();
+    spanBuffer = new AutoExpandingBufferWriteTransport(INITIAL_BUFFER_SIZE, 2);
+    this.spillBuffer = spillBuffer;
   }
 
   @Override
@@ -49,38 +88,59 @@ public abstract class ThriftSender extends ThriftSenderBase implements Sender {
       process = new Process(span.getTracer().getServiceName());
       process.setTags(JaegerThriftSpanConverter.buildTags(span.getTracer().tags()));
       processBytesSize = calculateProcessSize(process);
+      processBytes = new byte[processBytesSize];
+      System.arraycopy(getEncodedBytes(), 0, processBytes, 0, processBytesSize);
       byteBufferSize += processBytesSize;
     }
 
-    io.jaegertracing.thriftjava.Span thriftSpan = JaegerThriftSpanConverter.convertSpan(span);
-    int spanSize = calculateSpanSize(thriftSpan);
+    // the encoded bytes are copied to the span buffer below
+    int spanSize = encodeSpan(span);
     if (spanSize > getMaxSpanBytes()) {
       throw new SenderException(String.format("ThriftSender received a span that was too large, size = %d, max = %d",
           spanSize, getMaxSpanBytes()), null, 1);
     }
 
+    int maxBatchBytes = getMaxBatchBytes();
     byteBufferSize += spanSize;
-    if (byteBufferSize <= getMaxSpanBytes()) {
-      spanBuffer.add(thriftSpan);
-      if (byteBufferSize < getMaxSpanBytes()) {
+    if (byteBufferSize <= maxBatchBytes) {
+      bufferEncodedSpan(spanSize);
+      if (byteBufferSize < maxBatchBytes) {
         return 0;
       }
-      return flush();
+      return flushBuffered();
     }
 
     int n;
     try {
-      n = flush();
+      n = flushBuffered();
     } catch (SenderException e) {
       // +1 for the span not submitted in the buffer above
       throw new SenderException(e.getMessage(), e.getCause(), e.getDroppedSpanCount() + 1);
     }
 
-    spanBuffer.add(thriftSpan);
+    // flushing does not touch the encoded span
+    bufferEncodedSpan(spanSize);
     byteBufferSize = processBytesSize + spanSize;
     return n;
   }
 
+  /**
+   * @return the number of encoded bytes after which the appended spans are flushed, which is
+   *     {@link #getMaxSpanBytes()} unless the batches are compressed before being sent
+   */
+  protected int getMaxBatchBytes() {
+    return getMaxSpanBytes();
+  }
+
+  private void bufferEncodedSpan(int spanSize) throws SenderException {
+    try {
+      spanBuffer.write(getEncodedBytes(), 0, spanSize);
+    } catch (TException e) {
+      throw new SenderException("ThriftSender failed writing Span to memory buffer.", e, 1);
+    }
+    spanCount++;
+  }
+
   protected int calculateProcessSize(Process proc) throws SenderException {
     try {
       return getSize(proc);
@@ -97,29 +157,177 @@ public abstract class ThriftSender extends ThriftSenderBase implements Sender {
     }
   }
 
+  private int encodeSpan(JaegerSpan span) throws SenderException {
+    try {
+      return getSize(span);
+    } catch (Exception e) {
+      throw new SenderException("ThriftSender failed writing Span to memory buffer.", e, 1);
+    }
+  }
+
   public abstract void send(Process process, List<io.jaegertracing.thriftjava.Span> spans) throws SenderException;
 
+  /**
+   * Sends the spans appended since the last flush. Subclasses override this to send the batch written
+   * by {@link #writeBatch(TProtocol)}, which reuses the encoded spans. The default implementation
+   * decodes the spans and calls {@link #send(Process, List)}.
+   *
+   * @param spanCount the number of spans in the batch
+   */
+  protected void sendBuffered(int spanCount) throws SenderException {
+    send(process, decodeBufferedSpans());
+  }
+
+  /**
+   * Writes the spans appended since the last flush as a {@link Batch}, without encoding them again.
+   * The bytes are the same as those of {@code new Batch(process, spans).write(protocol)}.
+   *
+   * @param protocol a protocol of the type of this sender
+   */
+  protected void writeBatch(TProtocol protocol) throws TException {
+    protocol.writeStructBegin(BATCH_STRUCT);
+    protocol.writeFieldBegin(BATCH_PROCESS_FIELD);
+    // a struct is encoded the same way on its own and as a field
+    protocol.getTransport().write(processBytes, 0, processBytes.length);
+    protocol.writeFieldEnd();
+    protocol.writeFieldBegin(BATCH_SPANS_FIELD);
+    protocol.writeListBegin(new TList(TType.STRUCT, spanCount));
+    protocol.getTransport().write(spanBuffer.getBuf().array(), 0, spanBuffer.getPos());
+    protocol.writeListEnd();
+    protocol.writeFieldEnd();
+    protocol.writeFieldStop();
+    protocol.writeStructEnd();
+  }
+
+  /**
+   * @return the process of the spans appended since the last flush
+   */
+  protected Process getProcess() {
+    return process;
+  }
+
+  /**
+   * @return the spans appended since the last flush, decoded from their buffered bytes
+   */
+  protected List<io.jaegertracing.thriftjava.Span> decodeBufferedSpans() throws SenderException {
+    List<io.jaegertracing.thriftjava.Span> spans = new ArrayList<io.jaegertracing.thriftjava.Span>(spanCount);
+    TProtocol protocol = protocolFactory.getProtocol(
+        new TMemoryInputTransport(spanBuffer.getBuf().array(), 0, spanBuffer.getPos()));
+    try {
+      for (int i = 0; i < spanCount; i++) {
+        io.jaegertracing.thriftjava.Span span = new io.jaegertracing.thriftjava.Span();
+        span.read(protocol);
+        spans.add(span);
+      }
+    } catch (TException e) {
+      throw new SenderException("ThriftSender failed reading Spans from memory buffer.", e, spanCount);
+    }
+    return spans;
+  }
+
   @Override
   public int flush() throws SenderException {
-    if (spanBuffer.isEmpty()) {
+    return flushBuffered();
+  }
+
+  // also used by append when a batch is full, so it is not affected by subclasses overriding flush
+  private int flushBuffered() throws SenderException {
+    if (spillBuffer != null) {
+      return flushWithSpill();
+    }
+    if (spanCount == 0) {
       return 0;
     }
 
-    int n = spanBuffer.size();
+    int n = spanCount;
     try {
-      send(process, spanBuffer);
+      sendBuffered(n);
     } catch (SenderException e) {
       throw new SenderException("Failed to flush spans.", e, n);
     } finally {
-      spanBuffer.clear();
-      byteBufferSize = processBytesSize;
+      resetBuffer();
     }
     return n;
   }
 
+  private void resetBuffer() {
+    spanBuffer.reset();
+    spanCount = 0;
+    byteBufferSize = processBytesSize;
+  }
+
+  /**
+   * Sends the buffered spans, or spills them to disk when they can't be sent, then replays spilled
+   * batches if sending succeeds. While a replay is backing off the buffered spans are spilled right
+   * away, so a collector outage doesn't block the reporter thread on every flush.
+   */
+  private int flushWithSpill() throws SenderException {
+    int sent = 0;
+    if (spanCount > 0) {
+      int n = spanCount;
+      try {
+        if (spillBuffer.isEmpty() || spillBuffer.isReplayDue()) {
+          try {
+            sendBuffered(n);
+            spillBuffer.replaySucceeded();
+            sent = n;
+          } catch (SenderException e) {
+            log.warn("Could not send {} spans, spilling them to disk", n, e);
+            spillBuffer.replayFailed();
+            spill(e, n);
+          }
+        } else {
+          spill(null, n);
+        }
+      } finally {
+        resetBuffer();
+      }
+    }
+    return sent + replay();
+  }
+
+  private void spill(SenderException cause, int n) throws SenderException {
+    int evicted;
+    try {
+      evicted = spillBuffer.append(new Batch(process, decodeBufferedSpans()));
+    } catch (IOException e) {
+      throw new SenderException("Failed to flush spans.", cause != null ? cause : e, n);
+    }
+    if (evicted > 0) {
+      throw new SenderException(String.format("Spill buffer is full, evicted %d spans", evicted), cause, evicted);
+    }
+  }
+
+  private int replay() {
+    int sent = 0;
+    for (int i = 0; i < MAX_REPLAYED_BATCHES_PER_FLUSH && spillBuffer.isReplayDue(); i++) {
+      Batch batch = spillBuffer.peek();
+      if (batch == null) {
+        break;
+      }
+      try {
+        send(batch.getProcess(), batch.getSpans());
+      } catch (SenderException e) {
+        log.warn("Could not replay {} spilled spans", batch.getSpansSize(), e);
+        spillBuffer.replayFailed();
+        break;
+      }
+      spillBuffer.replaySucceeded();
+      spillBuffer.remove();
+      sent += batch.getSpansSize();
+    }
+    return sent;
+  }
+
   @Override
   public int close() throws SenderException {
-    return flush();
+    try {
+      return flush();
+    } finally {
+      if (spillBuffer != null) {
+        spillBuffer.close();
+      }
+    }
   }
 
 }
@@ -14,6 +14,8 @@
 
 package io.jaegertracing.thrift.internal.senders;
 
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.thrift.internal.reporters.protocols.JaegerThriftSpanEncoder;
 import io.jaegertracing.thrift.internal.reporters.protocols.ThriftUdpTransport;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +23,7 @@ import org.apache.thrift.TBase;
 import org.apache.thrift.TSerializer;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.transport.AutoExpandingBufferWriteTransport;
 
@@ -35,11 +38,16 @@ public abstract class ThriftSenderBase {
 
   public static final int EMIT_BATCH_OVERHEAD = 33;
 
+  // the reusable buffers start small and grow to the size of the largest batch
+  static final int INITIAL_BUFFER_SIZE = 4096;
+
   protected final TProtocolFactory protocolFactory;
   private final TSerializer serializer;
   private final int maxSpanBytes;
 
   @ToString.Exclude private AutoExpandingBufferWriteTransport memoryTransport;
+  @ToString.Exclude private final TProtocol memoryProtocol;
+  @ToString.Exclude private final JaegerThriftSpanEncoder spanEncoder = new JaegerThriftSpanEncoder();
 
   /**
    * @param protocolType protocol type (compact or binary)
@@ -65,6 +73,7 @@ public abstract class ThriftSenderBase {
 
     maxSpanBytes = maxPacketSize - EMIT_BATCH_OVERHEAD;
     memoryTransport = new AutoExpandingBufferWriteTransport(maxPacketSize, 2);
+    memoryProtocol = protocolFactory.getProtocol(memoryTransport);
     serializer = new TSerializer(protocolFactory);
   }
 
@@ -82,4 +91,23 @@ public abstract class ThriftSenderBase {
     return memoryTransport.getPos();
   }
 
+  /**
+   * Encodes the span without converting it to a {@link io.jaegertracing.thriftjava.Span} first.
+   */
+  public int getSize(JaegerSpan span) throws Exception {
+    memoryTransport.reset();
+    // clears any state left behind by a failed write
+    memoryProtocol.reset();
+    spanEncoder.encode(span, memoryProtocol);
+    return memoryTransport.getPos();
+  }
+
+  /**
+   * @return a buffer which starts with the bytes of the object passed to the last call of
+   *     {@code getSize}, until the next call
+   */
+  protected byte[] getEncodedBytes() {
+    return memoryTransport.getBuf().array();
+  }
+
 }
@@ -16,19 +16,31 @@ package io.jaegertracing.thrift.internal.senders;
 
 import io.jaegertracing.agent.thrift.Agent;
 import io.jaegertracing.internal.exceptions.SenderException;
+import io.jaegertracing.thrift.internal.reporters.protocols.ThriftUdpChannelTransport;
 import io.jaegertracing.thrift.internal.reporters.protocols.ThriftUdpTransport;
 import io.jaegertracing.thriftjava.Batch;
 import io.jaegertracing.thriftjava.Process;
 import java.util.List;
 import lombok.ToString;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
 
 @ToString
 public class UdpSender extends ThriftSender {
   public static final String DEFAULT_AGENT_UDP_HOST = "localhost";
   public static final int DEFAULT_AGENT_UDP_COMPACT_PORT = 6831;
 
+  private static final String EMIT_BATCH_METHOD = "emitBatch";
+  private static final TStruct EMIT_BATCH_ARGS_STRUCT = new TStruct("emitBatch_args");
+  private static final TField EMIT_BATCH_ARGS_BATCH_FIELD = new TField("batch", TType.STRUCT, (short) 1);
+
   @ToString.Exclude private Agent.Client agentClient;
-  @ToString.Exclude private ThriftUdpTransport udpTransport;
+  @ToString.Exclude private ThriftUdpChannelTransport udpTransport;
+  @ToString.Exclude private int seqId;
 
   /**
    * This constructor expects Jaeger running running on {@value #DEFAULT_AGENT_UDP_HOST}
@@ -54,7 +66,7 @@ public class UdpSender extends ThriftSender {
       port = DEFAULT_AGENT_UDP_COMPACT_PORT;
     }
 
-    udpTransport = ThriftUdpTransport.newThriftUdpClient(host, port);
+    udpTransport = ThriftUdpChannelTransport.newThriftUdpClient(host, port);
     agentClient = new Agent.Client(protocolFactory.getProtocol(udpTransport));
   }
 
@@ -67,6 +79,30 @@ public class UdpSender extends ThriftSender {
     }
   }
 
+  /**
+   * Writes the same message as {@link Agent.Client#emitBatch(Batch)}, but reuses the spans encoded
+   * when they were appended.
+   */
+  @Override
+  protected void sendBuffered(int spanCount) throws SenderException {
+    TProtocol protocol = agentClient.getOutputProtocol();
+    try {
+      // clears any state left behind by a failed write
+      protocol.reset();
+      protocol.writeMessageBegin(new TMessage(EMIT_BATCH_METHOD, TMessageType.ONEWAY, ++seqId));
+      protocol.writeStructBegin(EMIT_BATCH_ARGS_STRUCT);
+      protocol.writeFieldBegin(EMIT_BATCH_ARGS_BATCH_FIELD);
+      writeBatch(protocol);
+      protocol.writeFieldEnd();
+      protocol.writeFieldStop();
+      protocol.writeStructEnd();
+      protocol.writeMessageEnd();
+      protocol.getTransport().flush();
+    } catch (Exception e) {
+      throw new SenderException(String.format("Could not send %d spans", spanCount), e, spanCount);
+    }
+  }
+
   @Override
   public int close() throws SenderException {
     try {
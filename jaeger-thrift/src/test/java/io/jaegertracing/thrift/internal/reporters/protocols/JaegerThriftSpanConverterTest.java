@@ -192,6 +192,21 @@ public class JaegerThriftSpanConverterTest {
     assertEquals(buildReference(parent2.context(), References.CHILD_OF),span.getReferences().get(1));
   }
 
+  @Test
+  public void testConvertSpanTraceId128Bit() {
+    JaegerSpanContext parentContext = new JaegerSpanContext(1L, 2L, 3L, 0L, (byte) 1);
+    JaegerSpan child = tracer.buildSpan("foo")
+        .addReference(References.FOLLOWS_FROM, parentContext)
+        .start();
+
+    io.jaegertracing.thriftjava.Span span = JaegerThriftSpanConverter.convertSpan(child);
+
+    assertEquals(1L, span.getTraceIdHigh());
+    assertEquals(2L, span.getTraceIdLow());
+    assertEquals(1L, span.getReferences().get(0).getTraceIdHigh());
+    assertEquals(2L, span.getReferences().get(0).getTraceIdLow());
+  }
+
   private static SpanRef buildReference(JaegerSpanContext context, String referenceType) {
     return JaegerThriftSpanConverter.buildReferences(
         Collections.singletonList(new Reference(context, referenceType)))
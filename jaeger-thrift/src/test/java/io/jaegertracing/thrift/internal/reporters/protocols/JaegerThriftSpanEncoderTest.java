@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.thrift.internal.reporters.protocols;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerTracer;
+import io.jaegertracing.internal.reporters.InMemoryReporter;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import io.opentracing.References;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.AutoExpandingBufferWriteTransport;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JaegerThriftSpanEncoderTest {
+  private JaegerTracer tracer;
+  private JaegerThriftSpanEncoder encoder;
+
+  @Before
+  public void setUp() {
+    tracer = new JaegerTracer.Builder("test-service-name")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .build();
+    encoder = new JaegerThriftSpanEncoder();
+  }
+
+  @Test
+  public void testRootSpan() throws Exception {
+    JaegerSpan span = tracer.buildSpan("root").start();
+    span.finish();
+    assertSameAsConverter(span);
+  }
+
+  @Test
+  public void testTagsOfAllTypes() throws Exception {
+    JaegerSpan span = tracer.buildSpan("tags").start();
+    span.setTag("string", "value");
+    span.setTag("int", 1);
+    span.setTag("long", 2L);
+    span.setTag("short", (short) 3);
+    span.setTag("double", 4.5);
+    span.setTag("float", 5.5f);
+    span.setTag("true", true);
+    span.setTag("false", false);
+    span.setTag("byte", (byte) 6);
+    span.setTag("unicode", "été");
+    span.finish();
+    assertSameAsConverter(span);
+  }
+
+  @Test
+  public void testManyTags() throws Exception {
+    JaegerSpan span = tracer.buildSpan("many-tags").start();
+    for (int i = 0; i < 100; i++) {
+      span.setTag("tag" + i, i);
+    }
+    span.finish();
+    assertSameAsConverter(span);
+  }
+
+  @Test
+  public void testLogs() throws Exception {
+    JaegerSpan span = tracer.buildSpan("logs").start();
+    span.log("message");
+    Map<String, Object> fields = new HashMap<String, Object>();
+    fields.put("event", "error");
+    fields.put("count", 3);
+    span.log(fields);
+    span.log(1, new HashMap<String, Object>());
+    span.log(2, (String) null);
+    span.finish();
+    assertSameAsConverter(span);
+  }
+
+  @Test
+  public void testChildOfParent() throws Exception {
+    JaegerSpan parent = tracer.buildSpan("parent").start();
+    JaegerSpan child = tracer.buildSpan("child").asChildOf(parent).start();
+    child.finish();
+    assertSameAsConverter(child);
+  }
+
+  @Test
+  public void testReferences() throws Exception {
+    JaegerSpan parent = tracer.buildSpan("parent").start();
+    JaegerSpan other = tracer.buildSpan("other").start();
+    JaegerSpan followsFrom = tracer.buildSpan("follows-from")
+        .addReference(References.FOLLOWS_FROM, parent.context())
+        .start();
+    assertSameAsConverter(followsFrom);
+
+    JaegerSpan twoParents = tracer.buildSpan("two-parents")
+        .asChildOf(parent)
+        .asChildOf(other)
+        .start();
+    assertSameAsConverter(twoParents);
+  }
+
+  @Test
+  public void testTraceId128Bit() throws Exception {
+    JaegerTracer tracer = new JaegerTracer.Builder("test-service-name")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .withTraceId128Bit()
+        .build();
+    JaegerSpan parent = tracer.buildSpan("parent").start();
+    JaegerSpan followsFrom = tracer.buildSpan("follows-from")
+        .addReference(References.FOLLOWS_FROM, parent.context())
+        .start();
+    assertSameAsConverter(parent);
+    assertSameAsConverter(followsFrom);
+  }
+
+  @Test(expected = TProtocolException.class)
+  public void testNullOperationName() throws Exception {
+    JaegerSpan span = tracer.buildSpan("op").start();
+    span.setOperationName(null);
+    encode(span, new TCompactProtocol.Factory());
+  }
+
+  private void assertSameAsConverter(JaegerSpan span) throws TException {
+    TProtocolFactory[] protocolFactories = {new TCompactProtocol.Factory(), new TBinaryProtocol.Factory()};
+    for (TProtocolFactory protocolFactory : protocolFactories) {
+      AutoExpandingBufferWriteTransport transport = new AutoExpandingBufferWriteTransport(1024, 2);
+      JaegerThriftSpanConverter.convertSpan(span).write(protocolFactory.getProtocol(transport));
+      assertArrayEquals(bytes(transport), encode(span, protocolFactory));
+    }
+  }
+
+  private byte[] encode(JaegerSpan span, TProtocolFactory protocolFactory) throws TException {
+    AutoExpandingBufferWriteTransport transport = new AutoExpandingBufferWriteTransport(1024, 2);
+    encoder.encode(span, protocolFactory.getProtocol(transport));
+    return bytes(transport);
+  }
+
+  private static byte[] bytes(AutoExpandingBufferWriteTransport transport) {
+    byte[] bytes = new byte[transport.getPos()];
+    System.arraycopy(transport.getBuf().array(), 0, bytes, 0, bytes.length);
+    return bytes;
+  }
+}
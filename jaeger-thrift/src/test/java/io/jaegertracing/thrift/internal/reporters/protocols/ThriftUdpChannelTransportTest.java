@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.thrift.internal.reporters.protocols;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Arrays;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThriftUdpChannelTransportTest {
+  private DatagramSocket server;
+  private ThriftUdpChannelTransport transport;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new DatagramSocket(0, InetAddress.getByName("localhost"));
+    server.setSoTimeout(5000);
+    transport = ThriftUdpChannelTransport.newThriftUdpClient("localhost", server.getLocalPort());
+  }
+
+  @After
+  public void tearDown() {
+    transport.close();
+    server.close();
+  }
+
+  @Test
+  public void testSendsOnePacketPerFlush() throws Exception {
+    transport.write(new byte[] {1, 2}, 0, 2);
+    transport.write(new byte[] {0, 3, 4}, 1, 2);
+    transport.flush();
+    assertArrayEquals(new byte[] {1, 2, 3, 4}, receive());
+
+    transport.write(new byte[] {5}, 0, 1);
+    transport.flush();
+    assertArrayEquals(new byte[] {5}, receive());
+  }
+
+  @Test
+  public void testMessageTooLargeIsDropped() throws Exception {
+    transport.write(new byte[] {1}, 0, 1);
+    try {
+      transport.write(new byte[ThriftUdpChannelTransport.MAX_PACKET_SIZE], 0, ThriftUdpChannelTransport.MAX_PACKET_SIZE);
+      fail();
+    } catch (TTransportException expected) {
+      // the partial message is dropped
+    }
+
+    transport.write(new byte[] {2}, 0, 1);
+    transport.flush();
+    assertArrayEquals(new byte[] {2}, receive());
+  }
+
+  @Test(expected = TTransportException.class)
+  public void testWriteWhenClosed() throws Exception {
+    transport.close();
+    assertFalse(transport.isOpen());
+    transport.write(new byte[] {1}, 0, 1);
+  }
+
+  private byte[] receive() throws Exception {
+    byte[] buffer = new byte[ThriftUdpChannelTransport.MAX_PACKET_SIZE];
+    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+    server.receive(packet);
+    return Arrays.copyOf(buffer, packet.getLength());
+  }
+}
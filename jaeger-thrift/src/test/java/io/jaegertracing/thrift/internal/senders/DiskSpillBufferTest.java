@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.thrift.internal.senders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.jaegertracing.thriftjava.Batch;
+import io.jaegertracing.thriftjava.Process;
+import io.jaegertracing.thriftjava.Span;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskSpillBufferTest {
+  private static final int SEGMENT_BYTES = 1024;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testFifo() throws Exception {
+    DiskSpillBuffer buffer = newBuffer(4 * SEGMENT_BYTES);
+    assertTrue(buffer.isEmpty());
+    assertNull(buffer.peek());
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals(0, buffer.append(batch(i, 2)));
+    }
+    assertEquals(40, buffer.getSpanCount());
+    // spread over several segments
+    assertTrue(segmentFiles().length > 1);
+
+    for (int i = 0; i < 20; i++) {
+      Batch batch = buffer.peek();
+      assertEquals(batch(i, 2), batch);
+      buffer.remove();
+    }
+    assertTrue(buffer.isEmpty());
+    assertEquals(0, buffer.getSpanCount());
+    assertEquals(0, segmentFiles().length);
+  }
+
+  @Test
+  public void testEvictsOldestSegment() throws Exception {
+    DiskSpillBuffer buffer = newBuffer(2 * SEGMENT_BYTES);
+    int evicted = 0;
+    int batches = 0;
+    while (evicted == 0) {
+      evicted = buffer.append(batch(batches++, 1));
+    }
+    assertEquals(2, segmentFiles().length);
+
+    // the batches of the first segment are gone, the rest is still in order
+    Batch oldest = buffer.peek();
+    assertEquals(batch(evicted, 1), oldest);
+    assertEquals(batches - evicted, buffer.getSpanCount());
+  }
+
+  @Test
+  public void testRecoversAfterRestart() throws Exception {
+    DiskSpillBuffer buffer = newBuffer(4 * SEGMENT_BYTES);
+    for (int i = 0; i < 10; i++) {
+      buffer.append(batch(i, 1));
+    }
+    buffer.peek();
+    buffer.remove();
+    buffer.peek();
+    buffer.remove();
+    buffer.close();
+
+    buffer = newBuffer(4 * SEGMENT_BYTES);
+    assertEquals(8, buffer.getSpanCount());
+    assertEquals(batch(2, 1), buffer.peek());
+
+    // new batches go after the recovered ones
+    buffer.append(batch(10, 1));
+    for (int i = 2; i <= 10; i++) {
+      assertEquals(batch(i, 1), buffer.peek());
+      buffer.remove();
+    }
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void testBatchLargerThanSegment() throws Exception {
+    newBuffer(4 * SEGMENT_BYTES).append(batch(0, 100));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaxBytesSmallerThanSegment() throws Exception {
+    newBuffer(SEGMENT_BYTES - 1);
+  }
+
+  @Test
+  public void testReplayBackoff() throws Exception {
+    DiskSpillBuffer buffer = new DiskSpillBuffer.Builder(folder.getRoot())
+        .withReplayBackoff(60000, 120000)
+        .build();
+    assertTrue(buffer.isReplayDue());
+    buffer.replayFailed();
+    assertFalse(buffer.isReplayDue());
+    buffer.replaySucceeded();
+    assertTrue(buffer.isReplayDue());
+  }
+
+  private DiskSpillBuffer newBuffer(long maxBytes) throws IOException {
+    return new DiskSpillBuffer.Builder(folder.getRoot())
+        .withMaxBytes(maxBytes)
+        .withSegmentBytes(SEGMENT_BYTES)
+        .build();
+  }
+
+  private File[] segmentFiles() {
+    return folder.getRoot().listFiles();
+  }
+
+  private static Batch batch(int id, int spans) {
+    List<Span> spanList = new ArrayList<Span>();
+    for (int i = 0; i < spans; i++) {
+      spanList.add(new Span(id, 0, i, 0, "operation-" + id, 0, 1, 2));
+    }
+    return new Batch(new Process("service"), spanList);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.thrift.internal.senders;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Test;
+
+public class GzipCompressorTest {
+
+  private GzipCompressor compressor = new GzipCompressor(16);
+
+  @After
+  public void tearDown() {
+    compressor.close();
+  }
+
+  @Test
+  public void testCompressRepetitiveBytes() throws Exception {
+    byte[] bytes = new byte[10000];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i % 10);
+    }
+    int length = compressor.compress(bytes, 0, bytes.length);
+    assertTrue(length < bytes.length / 10);
+    assertArrayEquals(bytes, decompress(compressor.getBuffer(), length));
+  }
+
+  @Test
+  public void testCompressRandomBytes() throws Exception {
+    // random bytes don't compress, so the buffer has to grow past the input size
+    byte[] bytes = new byte[10000];
+    new Random(1).nextBytes(bytes);
+    int length = compressor.compress(bytes, 0, bytes.length);
+    assertArrayEquals(bytes, decompress(compressor.getBuffer(), length));
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    byte[] bytes = "the first batch".getBytes("UTF-8");
+    compressor.compress(bytes, 0, bytes.length);
+
+    bytes = "[the second batch]".getBytes("UTF-8");
+    int length = compressor.compress(bytes, 1, bytes.length - 2);
+    assertArrayEquals("the second batch".getBytes("UTF-8"), decompress(compressor.getBuffer(), length));
+  }
+
+  @Test
+  public void testCompressEmpty() throws Exception {
+    int length = compressor.compress(new byte[0], 0, 0);
+    assertArrayEquals(new byte[0], decompress(compressor.getBuffer(), length));
+  }
+
+  static byte[] decompress(byte[] bytes, int length) throws IOException {
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes, 0, length));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+}
@@ -14,17 +14,32 @@
 
 package io.jaegertracing.thrift.internal.senders;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import io.jaegertracing.Configuration;
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerTracer;
 import io.jaegertracing.internal.exceptions.SenderException;
+import io.jaegertracing.internal.reporters.InMemoryReporter;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import io.jaegertracing.thrift.internal.senders.ThriftSenderBase.ProtocolType;
+import io.jaegertracing.thriftjava.Batch;
 import io.jaegertracing.thriftjava.Process;
 import io.jaegertracing.thriftjava.Span;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -32,10 +47,16 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.Response;
 import okhttp3.OkHttpClient;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.test.JerseyTest;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * This class tests that HttpSender can be configured to make requests
@@ -44,6 +65,10 @@ import org.junit.Test;
  */
 public class HttpSenderTest extends JerseyTest {
 
+  private static volatile CountDownLatch slowResponses = new CountDownLatch(0);
+  private static final AtomicInteger maxGzipBodyBytes = new AtomicInteger();
+  private static final AtomicInteger gzipSpans = new AtomicInteger();
+
   @Before
   public void reset() {
     System.clearProperty(Configuration.JAEGER_AGENT_HOST);
@@ -139,6 +164,247 @@ public class HttpSenderTest extends JerseyTest {
     }
   }
 
+  @Test
+  public void sendCompact() throws Exception {
+    HttpSender sender = new HttpSender.Builder(target("/api/traces-compact").getUri().toString())
+        .withProtocolType(ProtocolType.Compact)
+        .build();
+    sender.send(new Process("robotrock"), generateSpans());
+
+    sender.append(newSpan(newTracer()));
+    assertEquals(1, sender.flush());
+  }
+
+  @Test
+  public void compactBatchesPackMoreSpans() throws Exception {
+    JaegerTracer tracer = newTracer();
+    assertTrue(spansPerBatch(ProtocolType.Compact, tracer) > spansPerBatch(ProtocolType.Binary, tracer));
+  }
+
+  private int spansPerBatch(ProtocolType protocolType, JaegerTracer tracer) throws Exception {
+    HttpSender sender = new HttpSender.Builder(target("/api/traces").getUri().toString())
+        .withProtocolType(protocolType)
+        .withMaxPacketSize(2000)
+        .build();
+    int sent = 0;
+    while (sent == 0) {
+      sent = sender.append(newSpan(tracer));
+    }
+    return sent;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nullProtocolType() throws Exception {
+    new HttpSender.Builder(target("/api/traces").getUri().toString())
+        .withProtocolType(null)
+        .build();
+  }
+
+  @Test
+  public void sendGzip() throws Exception {
+    HttpSender sender = new HttpSender.Builder(target("/api/traces-gzip").getUri().toString())
+        .withGzip()
+        .build();
+    sender.send(new Process("robotrock"), generateSpans());
+
+    JaegerTracer tracer = newTracer();
+    sender.append(newSpan(tracer));
+    assertEquals(1, sender.flush());
+    sender.close();
+  }
+
+  @Test
+  public void gzipMaxPacketSizeAppliesToCompressedBatches() throws Exception {
+    HttpSender sender = new HttpSender.Builder(target("/api/traces-gzip").getUri().toString())
+        .withGzip()
+        .withMaxPacketSize(2000)
+        .build();
+    JaegerTracer tracer = newTracer();
+    assertEquals(sender.getMaxSpanBytes(), sender.getMaxBatchBytes());
+
+    int sent = 0;
+    int appended = 0;
+    while (sent == 0) {
+      sent = sender.append(newSpan(tracer));
+      appended++;
+    }
+    // the spans compress well, so the next batches may be larger than the maximum packet size
+    assertTrue(sender.getMaxBatchBytes() > sender.getMaxSpanBytes());
+    sent = 0;
+    int appendedToSecondBatch = 0;
+    while (sent == 0) {
+      sent = sender.append(newSpan(tracer));
+      appendedToSecondBatch++;
+    }
+    assertTrue(appendedToSecondBatch > appended);
+    sender.close();
+  }
+
+  @Test
+  public void gzipBatchesCompressingWorseAreSplit() throws Exception {
+    maxGzipBodyBytes.set(0);
+    gzipSpans.set(0);
+    HttpSender sender = new HttpSender.Builder(target("/api/traces-gzip").getUri().toString())
+        .withGzip()
+        .withMaxPacketSize(2000)
+        .build();
+    JaegerTracer tracer = newTracer();
+
+    int appended = 0;
+    int sent = 0;
+    while (sent == 0) {
+      sent = sender.append(newSpan(tracer));
+      appended++;
+    }
+    assertTrue(sender.getMaxBatchBytes() > sender.getMaxSpanBytes());
+
+    // random tags compress much worse than the spans of the first batch
+    Random random = new Random(42);
+    int sentRandom = 0;
+    while (sentRandom == 0) {
+      byte[] bytes = new byte[200];
+      random.nextBytes(bytes);
+      JaegerSpan span = tracer.buildSpan("boomerang").withTag("random", Base64.getEncoder().encodeToString(bytes))
+          .start();
+      span.finish();
+      sentRandom = sender.append(span);
+      appended++;
+    }
+    sent += sentRandom + sender.close();
+
+    assertEquals(appended, sent);
+    assertEquals(appended, gzipSpans.get());
+    assertTrue(maxGzipBodyBytes.get() <= sender.getMaxSpanBytes());
+  }
+
+  @Test
+  public void gzipBatchesFitIntoSpillSegments() throws Exception {
+    TemporaryFolder folder = new TemporaryFolder();
+    folder.create();
+    try {
+      DiskSpillBuffer spillBuffer = new DiskSpillBuffer.Builder(folder.getRoot())
+          .withSegmentBytes(4096)
+          .build();
+      HttpSender sender = new HttpSender.Builder(target("/api/traces-gzip").getUri().toString())
+          .withGzip()
+          .withMaxPacketSize(2000)
+          .withSpillBuffer(spillBuffer)
+          .build();
+      JaegerTracer tracer = newTracer();
+
+      int sent = 0;
+      while (sent == 0) {
+        sent = sender.append(newSpan(tracer));
+      }
+      assertTrue(sender.getMaxBatchBytes() > sender.getMaxSpanBytes());
+      assertTrue(sender.getMaxBatchBytes() <= spillBuffer.getMaxBatchBytes());
+      sender.close();
+    } finally {
+      folder.delete();
+    }
+  }
+
+  @Test
+  public void sendAsync() throws Exception {
+    HttpSender sender = new HttpSender.Builder(target("/api/traces").getUri().toString())
+        .withMaxInFlightRequests(2)
+        .build();
+    JaegerTracer tracer = newTracer();
+
+    int sent = 0;
+    for (int i = 0; i < 3; i++) {
+      sent += sender.append(newSpan(tracer));
+      sent += sender.flush();
+    }
+    assertEquals(3, sent + sender.close());
+  }
+
+  @Test
+  public void sendAsyncServerError() throws Exception {
+    HttpSender sender = new HttpSender.Builder(target("/api/tracesErr").getUri().toString())
+        .withMaxInFlightRequests(2)
+        .build();
+    JaegerTracer tracer = newTracer();
+
+    sender.append(newSpan(tracer));
+    sender.append(newSpan(tracer));
+    try {
+      // enqueues the request, the failure is reported when it completes
+      sender.flush();
+      sender.close();
+      fail("expecting exception");
+    } catch (SenderException e) {
+      assertEquals(2, e.getDroppedSpanCount());
+    }
+  }
+
+  @Test
+  public void sendAsyncBlocksWhenTooManyRequestsInFlight() throws Exception {
+    slowResponses = new CountDownLatch(1);
+    final HttpSender sender = new HttpSender.Builder(target("/api/tracesSlow").getUri().toString())
+        .withMaxInFlightRequests(1)
+        .build();
+    final JaegerTracer tracer = newTracer();
+
+    sender.append(newSpan(tracer));
+    final AtomicInteger sent = new AtomicInteger(sender.flush());
+
+    final CountDownLatch secondFlushed = new CountDownLatch(1);
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          sender.append(newSpan(tracer));
+          sent.addAndGet(sender.flush());
+          secondFlushed.countDown();
+        } catch (SenderException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    thread.start();
+    assertFalse(secondFlushed.await(200, TimeUnit.MILLISECONDS));
+
+    slowResponses.countDown();
+    assertTrue(secondFlushed.await(5, TimeUnit.SECONDS));
+    thread.join();
+    assertEquals(2, sent.get() + sender.close());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void asyncWithSpillBuffer() throws Exception {
+    TemporaryFolder folder = new TemporaryFolder();
+    folder.create();
+    try {
+      new HttpSender.Builder(target("/api/traces").getUri().toString())
+          .withMaxInFlightRequests(1)
+          .withSpillBuffer(new DiskSpillBuffer.Builder(folder.getRoot()).build())
+          .build();
+    } finally {
+      folder.delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeMaxInFlightRequests() throws Exception {
+    new HttpSender.Builder(target("/api/traces").getUri().toString())
+        .withMaxInFlightRequests(-1)
+        .build();
+  }
+
+  private JaegerTracer newTracer() {
+    return new JaegerTracer.Builder("test-async")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .build();
+  }
+
+  private JaegerSpan newSpan(JaegerTracer tracer) {
+    JaegerSpan span = tracer.buildSpan("boomerang").start();
+    span.finish();
+    return span;
+  }
+
   private List<Span> generateSpans() {
     ArrayList<Span> spans = new ArrayList<>();
     Span span = new Span();
@@ -187,6 +453,49 @@ public class HttpSenderTest extends JerseyTest {
     public void postHappy(@QueryParam("format") String format, String data) {
     }
 
+    @Path("tracesSlow")
+    @POST
+    public void postSlow(@QueryParam("format") String format, String data) throws InterruptedException {
+      slowResponses.await(10, TimeUnit.SECONDS);
+    }
+
+    @Path("traces-compact")
+    @POST
+    public Response postCompact(@QueryParam("format") String format, @HeaderParam("Content-Type") String contentType,
+        byte[] data) {
+      if (!"jaeger.thrift.compact".equals(format) || !"application/vnd.apache.thrift.compact".equals(contentType)) {
+        return Response.status(Response.Status.BAD_REQUEST).build();
+      }
+      Batch batch = new Batch();
+      try {
+        new TDeserializer(new TCompactProtocol.Factory()).deserialize(batch, data);
+      } catch (TException e) {
+        return Response.status(Response.Status.BAD_REQUEST).build();
+      }
+      return Response.ok().build();
+    }
+
+    @Path("traces-gzip")
+    @POST
+    public Response postGzip(@HeaderParam("Content-Encoding") String encoding, byte[] data) throws IOException {
+      if (!"gzip".equals(encoding)) {
+        return Response.status(Response.Status.BAD_REQUEST).build();
+      }
+      Batch batch = new Batch();
+      try {
+        batch.read(new TBinaryProtocol(new TIOStreamTransport(
+            new GZIPInputStream(new ByteArrayInputStream(data)))));
+      } catch (TException e) {
+        return Response.status(Response.Status.BAD_REQUEST).build();
+      }
+      gzipSpans.addAndGet(batch.getSpansSize());
+      int max;
+      do {
+        max = maxGzipBodyBytes.get();
+      } while (data.length > max && !maxGzipBodyBytes.compareAndSet(max, data.length));
+      return Response.ok().build();
+    }
+
     @Path("tracesErr")
     @POST()
     public Response postErr(@QueryParam("format") String format, String data) {
@@ -14,18 +14,36 @@
 
 package io.jaegertracing.thrift.internal.senders;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.JaegerTracer;
 import io.jaegertracing.internal.exceptions.SenderException;
+import io.jaegertracing.internal.reporters.InMemoryReporter;
+import io.jaegertracing.internal.samplers.ConstSampler;
 import io.jaegertracing.thrift.internal.senders.ThriftSenderBase.ProtocolType;
+import io.jaegertracing.thriftjava.Batch;
 import io.jaegertracing.thriftjava.Process;
 import io.jaegertracing.thriftjava.Span;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.AutoExpandingBufferWriteTransport;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * This class tests the abstract ThriftSender.
  */
 public class ThriftSenderTest {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Test(expected = SenderException.class)
   public void calculateProcessSizeNull() throws Exception {
     ThriftSender sender = new ThriftSender(ProtocolType.Compact, 0) {
@@ -48,4 +66,133 @@ public class ThriftSenderTest {
     sender.calculateSpanSize(null);
   }
 
+  @Test
+  public void writeBatchMatchesBatchSerialization() throws Exception {
+    for (ProtocolType protocolType : ProtocolType.values()) {
+      JaegerTracer tracer = new JaegerTracer.Builder("test-write-batch")
+          .withReporter(new InMemoryReporter())
+          .withSampler(new ConstSampler(true))
+          .withTag("hostname", "localhost")
+          .build();
+      ComparingSender sender = new ComparingSender(protocolType);
+      for (int i = 0; i < 3; i++) {
+        JaegerSpan span = tracer.buildSpan("op" + i).withTag("index", i).start();
+        span.log(Collections.singletonMap("event", "test"));
+        span.finish();
+        sender.append(span);
+      }
+      assertEquals(3, sender.flush());
+      assertEquals(1, sender.comparedBatches);
+    }
+  }
+
+  @Test
+  public void spillsAndReplaysFailedBatches() throws Exception {
+    DiskSpillBuffer spillBuffer = new DiskSpillBuffer.Builder(folder.getRoot())
+        .withReplayBackoff(0, 0)
+        .build();
+    FailingSender sender = new FailingSender(spillBuffer);
+    JaegerTracer tracer = new JaegerTracer.Builder("test-spill")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .build();
+
+    sender.failing = true;
+    sender.append(tracer.buildSpan("first").start());
+    assertEquals(0, sender.flush());
+    sender.append(tracer.buildSpan("second").start());
+    sender.append(tracer.buildSpan("third").start());
+    assertEquals(0, sender.flush());
+    assertEquals(3, spillBuffer.getSpanCount());
+    assertTrue(sender.sent.isEmpty());
+
+    sender.failing = false;
+    sender.append(tracer.buildSpan("fourth").start());
+    assertEquals(4, sender.flush());
+    assertTrue(spillBuffer.isEmpty());
+    List<String> operations = new ArrayList<String>();
+    for (Span span : sender.sent) {
+      operations.add(span.getOperationName());
+    }
+    // the new batch goes first, then the spilled batches oldest first
+    assertEquals("[fourth, first, second, third]", operations.toString());
+  }
+
+  @Test
+  public void spillsWithoutSendingDuringBackoff() throws Exception {
+    DiskSpillBuffer spillBuffer = new DiskSpillBuffer.Builder(folder.getRoot())
+        .withReplayBackoff(60000, 60000)
+        .build();
+    FailingSender sender = new FailingSender(spillBuffer);
+    JaegerTracer tracer = new JaegerTracer.Builder("test-spill")
+        .withReporter(new InMemoryReporter())
+        .withSampler(new ConstSampler(true))
+        .build();
+
+    sender.failing = true;
+    sender.append(tracer.buildSpan("first").start());
+    assertEquals(0, sender.flush());
+    sender.failing = false;
+    sender.append(tracer.buildSpan("second").start());
+    assertEquals(0, sender.flush());
+
+    assertEquals(1, sender.attempts);
+    assertEquals(2, spillBuffer.getSpanCount());
+  }
+
+  private static class FailingSender extends ThriftSender {
+    private final List<Span> sent = new ArrayList<Span>();
+    private boolean failing;
+    private int attempts;
+
+    FailingSender(DiskSpillBuffer spillBuffer) {
+      super(ProtocolType.Compact, 0, spillBuffer);
+    }
+
+    @Override
+    public void send(Process process, List<Span> spans) throws SenderException {
+      attempts++;
+      if (failing) {
+        throw new SenderException("collector unavailable", null, spans.size());
+      }
+      sent.addAll(spans);
+    }
+  }
+
+  /**
+   * Checks that the batch written around the encoded spans is the same as the serialized batch.
+   */
+  private static class ComparingSender extends ThriftSender {
+    private int comparedBatches;
+    private byte[] serialized;
+
+    ComparingSender(ProtocolType protocolType) {
+      super(protocolType, 0);
+    }
+
+    @Override
+    protected void sendBuffered(int spanCount) throws SenderException {
+      AutoExpandingBufferWriteTransport transport = new AutoExpandingBufferWriteTransport(1024, 2);
+      try {
+        writeBatch(protocolFactory.getProtocol(transport));
+      } catch (TException e) {
+        throw new SenderException("Failed to write batch", e, spanCount);
+      }
+      byte[] written = new byte[transport.getPos()];
+      System.arraycopy(transport.getBuf().array(), 0, written, 0, written.length);
+      // decodes the spans and calls send
+      super.sendBuffered(spanCount);
+      assertArrayEquals(serialized, written);
+      comparedBatches++;
+    }
+
+    @Override
+    public void send(Process process, List<Span> spans) throws SenderException {
+      try {
+        serialized = serialize(new Batch(process, spans));
+      } catch (Exception e) {
+        throw new SenderException("Failed to serialize batch", e, spans.size());
+      }
+    }
+  }
 }
@@ -22,7 +22,7 @@ import io.opentracing.tag.Tags;
  */
 public class ConverterUtil {
   public static boolean isRpcServer(JaegerSpan jaegerSpan) {
-    return Tags.SPAN_KIND_SERVER.equals(jaegerSpan.getTags().get(Tags.SPAN_KIND.getKey()));
+    return Tags.SPAN_KIND_SERVER.equals(jaegerSpan.getTag(Tags.SPAN_KIND.getKey()));
   }
 
   public static boolean isRpc(JaegerSpan jaegerSpan) {
@@ -30,6 +30,6 @@ public class ConverterUtil {
   }
 
   public static boolean isRpcClient(JaegerSpan jaegerSpan) {
-    return Tags.SPAN_KIND_CLIENT.equals(jaegerSpan.getTags().get(Tags.SPAN_KIND.getKey()));
+    return Tags.SPAN_KIND_CLIENT.equals(jaegerSpan.getTag(Tags.SPAN_KIND.getKey()));
   }
 }
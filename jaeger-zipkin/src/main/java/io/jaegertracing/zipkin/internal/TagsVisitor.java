@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018, The Jaeger Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.jaegertracing.zipkin.internal;
+
+import io.jaegertracing.internal.JaegerSpanVisitor;
+import io.jaegertracing.internal.LogData;
+
+/**
+ * Visits the tags of a span as strings, since zipkin tags are strings. Logs are ignored.
+ */
+abstract class TagsVisitor implements JaegerSpanVisitor<RuntimeException> {
+
+  abstract void visitTag(String key, String value);
+
+  @Override
+  public void visitTags(int count) {
+  }
+
+  @Override
+  public void visitTag(String key, Object value) {
+    visitTag(key, String.valueOf(value));
+  }
+
+  @Override
+  public void visitTag(String key, boolean value) {
+    visitTag(key, String.valueOf(value));
+  }
+
+  @Override
+  public void visitTag(String key, long value) {
+    visitTag(key, String.valueOf(value));
+  }
+
+  @Override
+  public void visitTag(String key, double value) {
+    visitTag(key, String.valueOf(value));
+  }
+
+  @Override
+  public void visitLogs(int count) {
+  }
+
+  @Override
+  public void visitLog(LogData log) {
+  }
+}
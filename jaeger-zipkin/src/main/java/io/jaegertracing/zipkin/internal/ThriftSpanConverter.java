@@ -41,8 +41,8 @@ public class ThriftSpanConverter {
     Endpoint host = new Endpoint(tracer.getIpv4(), (short) 0, tracer.getServiceName());
 
     JaegerSpanContext context = jaegerSpan.context();
-    return new com.twitter.zipkin.thriftjava.Span(
-            context.getTraceId(),
+    com.twitter.zipkin.thriftjava.Span span = new com.twitter.zipkin.thriftjava.Span(
+            context.getTraceIdLow(),
             jaegerSpan.getOperationName(),
             context.getSpanId(),
             buildAnnotations(jaegerSpan, host),
@@ -51,6 +51,10 @@ public class ThriftSpanConverter {
         .setDebug(context.isDebug())
         .setTimestamp(jaegerSpan.getStart())
         .setDuration(jaegerSpan.getDuration());
+    if (context.getTraceIdHigh() != 0) {
+      span.setTrace_id_high(context.getTraceIdHigh());
+    }
+    return span;
   }
 
   private static List<Annotation> buildAnnotations(JaegerSpan jaegerSpan, Endpoint host) {
@@ -85,8 +89,7 @@ public class ThriftSpanConverter {
   }
 
   private static List<BinaryAnnotation> buildBinaryAnnotations(JaegerSpan jaegerSpan, Endpoint host) {
-    List<BinaryAnnotation> binaryAnnotations = new ArrayList<BinaryAnnotation>();
-    Map<String, Object> tags = jaegerSpan.getTags();
+    final List<BinaryAnnotation> binaryAnnotations = new ArrayList<BinaryAnnotation>();
     boolean isRpc = ConverterUtil.isRpc(jaegerSpan);
     boolean isClient = ConverterUtil.isRpcClient(jaegerSpan);
     boolean firstSpanInProcess = jaegerSpan.getReferences().isEmpty() || ConverterUtil.isRpcServer(jaegerSpan);
@@ -105,7 +108,8 @@ public class ThriftSpanConverter {
       }
     }
 
-    Endpoint peerEndpoint = extractPeerEndpoint(tags);
+    Endpoint peerEndpoint = extractPeerEndpoint(jaegerSpan.getTag(Tags.PEER_HOST_IPV4.getKey()),
+        jaegerSpan.getTag(Tags.PEER_PORT.getKey()), jaegerSpan.getTag(Tags.PEER_SERVICE.getKey()));
     if (peerEndpoint != null && isClient) {
       String key =
           isClient ? zipkincoreConstants.SERVER_ADDR : zipkincoreConstants.CLIENT_ADDR;
@@ -120,7 +124,7 @@ public class ThriftSpanConverter {
 
     if (!isRpc) {
       byte[] componentName;
-      Object componentTag = tags.get(Tags.COMPONENT.getKey());
+      Object componentTag = jaegerSpan.getTag(Tags.COMPONENT.getKey());
       if (componentTag instanceof String) {
         componentName = componentTag.toString().getBytes(UTF_8);
       } else {
@@ -136,15 +140,14 @@ public class ThriftSpanConverter {
               .setHost(host));
     }
 
-    if (tags != null) {
-      for (Map.Entry<String, Object> entry : tags.entrySet()) {
-        String tagKey = entry.getKey();
-        // Every value is converted to string because zipkin search doesn't
-        // work well with ints, and bytes.
-        Object tagValue = entry.getValue();
-        binaryAnnotations.add(buildBinaryAnnotation(tagKey, tagValue));
+    // Every value is converted to string because zipkin search doesn't
+    // work well with ints, and bytes.
+    jaegerSpan.accept(new TagsVisitor() {
+      @Override
+      void visitTag(String key, String value) {
+        binaryAnnotations.add(buildBinaryAnnotation(key, value));
       }
-    }
+    });
     return binaryAnnotations;
   }
 
@@ -161,10 +164,11 @@ public class ThriftSpanConverter {
    * @return null or peer endpoint
    */
   public static Endpoint extractPeerEndpoint(Map<String, Object> tags) {
-    Object peerIpv4 = tags.get(Tags.PEER_HOST_IPV4.getKey());
-    Object peerPort = tags.get(Tags.PEER_PORT.getKey());
-    Object peerService = tags.get(Tags.PEER_SERVICE.getKey());
+    return extractPeerEndpoint(tags.get(Tags.PEER_HOST_IPV4.getKey()), tags.get(Tags.PEER_PORT.getKey()),
+        tags.get(Tags.PEER_SERVICE.getKey()));
+  }
 
+  private static Endpoint extractPeerEndpoint(Object peerIpv4, Object peerPort, Object peerService) {
     if (peerIpv4 == null && peerPort == null && peerService == null) {
       return null;
     }
@@ -40,18 +40,19 @@ public class V2SpanConverter {
       host.parseIp(convertIp(tracer.getIpv4()));
     }
 
-    zipkin2.Endpoint peerEndpoint = extractPeerEndpoint(span.getTags());
+    zipkin2.Endpoint peerEndpoint = extractPeerEndpoint(span.getTag(Tags.PEER_HOST_IPV4.getKey()),
+        span.getTag(Tags.PEER_PORT.getKey()), span.getTag(Tags.PEER_SERVICE.getKey()));
 
     JaegerSpanContext context = span.context();
     zipkin2.Span.Builder builder = zipkin2.Span.newBuilder()
             .id(Long.toHexString(context.getSpanId()))
-            .traceId(Long.toHexString(context.getTraceId()))
+            .traceId(context.getTraceIdHigh(), context.getTraceIdLow())
             .name(span.getOperationName())
             .parentId(Long.toHexString(context.getParentId()))
             .debug(context.isDebug())
             .localEndpoint(host.build())
             .remoteEndpoint(peerEndpoint)
-            .kind(convertKind(span.getTags().get(Tags.SPAN_KIND.getKey())))
+            .kind(convertKind(span.getTag(Tags.SPAN_KIND.getKey())))
             .timestamp(span.getStart())
             .duration(span.getDuration());
 
@@ -90,8 +91,7 @@ public class V2SpanConverter {
     }
   }
 
-  private static void buildTags(JaegerSpan jaegerSpan, zipkin2.Span.Builder builder) {
-    Map<String, Object> tags = jaegerSpan.getTags();
+  private static void buildTags(JaegerSpan jaegerSpan, final zipkin2.Span.Builder builder) {
     boolean firstSpanInProcess = jaegerSpan.getReferences().isEmpty() || ConverterUtil.isRpcServer(jaegerSpan);
 
     if (firstSpanInProcess) {
@@ -108,15 +108,14 @@ public class V2SpanConverter {
       }
     }
 
-    if (tags != null) {
-      for (Map.Entry<String, Object> entry : tags.entrySet()) {
-        String tagKey = entry.getKey();
-        // Every value is converted to string because zipkin search doesn't
-        // work well with ints, and bytes.
-        Object tagValue = entry.getValue();
-        builder.putTag(tagKey, tagValue.toString());
+    // Every value is converted to string because zipkin search doesn't
+    // work well with ints, and bytes.
+    jaegerSpan.accept(new TagsVisitor() {
+      @Override
+      void visitTag(String key, String value) {
+        builder.putTag(key, value);
       }
-    }
+    });
   }
 
   private static byte[] convertIp(int ipv4) {
@@ -135,10 +134,11 @@ public class V2SpanConverter {
    * @return null or peer endpoint
    */
   public static zipkin2.Endpoint extractPeerEndpoint(Map<String, Object> tags) {
-    Object peerIpv4 = tags.get(Tags.PEER_HOST_IPV4.getKey());
-    Object peerPort = tags.get(Tags.PEER_PORT.getKey());
-    Object peerService = tags.get(Tags.PEER_SERVICE.getKey());
+    return extractPeerEndpoint(tags.get(Tags.PEER_HOST_IPV4.getKey()), tags.get(Tags.PEER_PORT.getKey()),
+        tags.get(Tags.PEER_SERVICE.getKey()));
+  }
 
+  private static zipkin2.Endpoint extractPeerEndpoint(Object peerIpv4, Object peerPort, Object peerService) {
     if (peerIpv4 == null && peerPort == null && peerService == null) {
       return null;
     }
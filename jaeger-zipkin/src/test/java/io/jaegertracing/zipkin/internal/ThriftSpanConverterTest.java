@@ -162,6 +162,25 @@ public class ThriftSpanConverterTest {
     return null;
   }
 
+  @Test
+  public void testTraceId128Bit() {
+    JaegerSpan span = tracer.buildSpan("operation-name")
+        .asChildOf(new JaegerSpanContext(1L, 2L, 3L, 0L, (byte) 1))
+        .start();
+
+    com.twitter.zipkin.thriftjava.Span zipkinSpan = ThriftSpanConverter.convertSpan(span);
+    assertEquals(1L, zipkinSpan.getTrace_id_high());
+    assertEquals(2L, zipkinSpan.getTrace_id());
+  }
+
+  @Test
+  public void testTraceId64BitLeavesHighBitsUnset() {
+    JaegerSpan span = tracer.buildSpan("operation-name").start();
+
+    com.twitter.zipkin.thriftjava.Span zipkinSpan = ThriftSpanConverter.convertSpan(span);
+    assertFalse(zipkinSpan.isSetTrace_id_high());
+  }
+
   @Test
   public void testSpanKindServerCreatesAnnotations() {
     JaegerSpan span = tracer.buildSpan("operation-name").start();
@@ -215,8 +234,12 @@ public class ThriftSpanConverterTest {
     Tags.COMPONENT.set(span, expectedComponentName);
 
     com.twitter.zipkin.thriftjava.Span zipkinSpan = ThriftSpanConverter.convertSpan(span);
-    String actualComponent =
-        new String(zipkinSpan.getBinary_annotations().get(3).getValue(), StandardCharsets.UTF_8);
+    String actualComponent = null;
+    for (BinaryAnnotation annotation : zipkinSpan.getBinary_annotations()) {
+      if (zipkincoreConstants.LOCAL_COMPONENT.equals(annotation.getKey())) {
+        actualComponent = new String(annotation.getValue(), StandardCharsets.UTF_8);
+      }
+    }
     assertEquals(expectedComponentName, actualComponent);
   }
 
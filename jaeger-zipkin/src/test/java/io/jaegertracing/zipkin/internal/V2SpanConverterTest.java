@@ -183,6 +183,26 @@ public class V2SpanConverterTest {
     }
   }
 
+  @Test
+  public void testTraceId128Bit() {
+    JaegerSpan span = tracer.buildSpan("operation-name")
+        .asChildOf(new JaegerSpanContext(0x463ac35c9f6413adL, 0x48485a3953bb6124L, 1L, 0L, (byte) 1))
+        .start();
+
+    zipkin2.Span zipkinSpan = V2SpanConverter.convertSpan(span);
+    assertEquals("463ac35c9f6413ad48485a3953bb6124", zipkinSpan.traceId());
+  }
+
+  @Test
+  public void testTraceId64Bit() {
+    JaegerSpan span = tracer.buildSpan("operation-name")
+        .asChildOf(new JaegerSpanContext(0xabcL, 1L, 0L, (byte) 1))
+        .start();
+
+    zipkin2.Span zipkinSpan = V2SpanConverter.convertSpan(span);
+    assertEquals("0000000000000abc", zipkinSpan.traceId());
+  }
+
   @Test
   public void testSpanKindConsumerHasCorrectKind() {
     JaegerSpan span = tracer.buildSpan("operation-name").start();